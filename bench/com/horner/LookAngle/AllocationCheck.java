@@ -0,0 +1,127 @@
+package com.horner.LookAngle;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that the steady-state look angle path does not allocate. Each
+ * primitive {@link SatMathCore} method is warmed up until it is compiled,
+ * then called over the global sites while the HotSpot per-thread allocation
+ * counter is read before and after. Exits with status 1 if any method
+ * allocates, or with status 2 if the JVM has no allocation counter. Not part
+ * of the application build.
+ * 
+ * <pre>
+ * javac -sourcepath src:bench -d bin/bench bench/com/horner/LookAngle/AllocationCheck.java
+ * java -cp bin/bench com.horner.LookAngle.AllocationCheck
+ * </pre>
+ * 
+ * @author etchorner
+ * 
+ */
+public class AllocationCheck {
+
+	// CONSTANTS
+	private static final int SITES = 4096;
+	private static final int WARMUP_CALLS = 2000000;
+	private static final int CALLS = 10000000;
+
+	// END CONSTANTS
+
+	/** one checked method; returns a value so the JIT cannot drop it */
+	private abstract static class Check {
+		final String name;
+
+		Check(String name) {
+			this.name = name;
+		}
+
+		abstract double run(int i);
+	}
+
+	/** consumes results so that they stay live */
+	private static double sink;
+	/** bytes the counter itself accounts for between two reads */
+	private static long probeBytes;
+
+	public static void main(String[] args) {
+		// LOCALS
+		double[][] sites = BenchInputs.globalSites(SITES, 42);
+		final double[] lat = sites[0], lon = sites[1], alt = sites[2];
+		final LookAngleResult result = new LookAngleResult();
+		boolean ok = true;
+
+		if (allocatedBytes() < 0) {
+			System.out.println("no per-thread allocation counter in this JVM");
+			System.exit(2);
+		}
+		for (int i = 0; i < 1000; i++)
+			probeBytes = -allocatedBytes() + allocatedBytes();
+
+		Check[] checks = new Check[] { new Check("getLookAngle") {
+			double run(int i) {
+				int s = i % SITES;
+				return SatMathCore.getLookAngle(lat[s], lon[s], alt[s],
+						satLon(i), result).azimuth;
+			}
+		}, new Check("getLookAngle.table") {
+			double run(int i) {
+				int s = i % SITES;
+				return SatMathCore.getLookAngle(lat[s], lon[s], alt[s],
+						satLon(i), result, TrigProvider.TABLE).elevation;
+			}
+		}, new Check("getAzimuth") {
+			double run(int i) {
+				int s = i % SITES;
+				return SatMathCore.getAzimuth(lat[s], lon[s], satLon(i));
+			}
+		}, new Check("getElevation") {
+			double run(int i) {
+				int s = i % SITES;
+				return SatMathCore.getElevation(lat[s], lon[s], satLon(i));
+			}
+		}, new Check("getSkew") {
+			double run(int i) {
+				int s = i % SITES;
+				return SatMathCore.getSkew(lat[s], lon[s], satLon(i));
+			}
+		} };
+
+		for (Check c : checks)
+			ok &= check(c);
+		System.out.println("(" + sink + ")");
+		System.exit(ok ? 0 : 1);
+	}
+
+	/** a satellite longitude spread over the whole arc */
+	private static double satLon(int i) {
+		return (i * 7 % 360) - 180;
+	}
+
+	/** warms up and checks one method; true if it did not allocate */
+	private static boolean check(Check c) {
+		// LOCALS
+		long bytes;
+
+		for (int i = 0; i < WARMUP_CALLS; i++)
+			sink += c.run(i);
+
+		bytes = allocatedBytes();
+		for (int i = 0; i < CALLS; i++)
+			sink += c.run(i);
+		bytes = Math.max(0, allocatedBytes() - bytes - probeBytes);
+
+		System.out.println(c.name + ": " + bytes + " bytes over " + CALLS
+				+ " calls");
+		return bytes <= 0;
+	}
+
+	/** @return bytes allocated so far by this thread, or -1 if unknown */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory
+				.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+	}
+}
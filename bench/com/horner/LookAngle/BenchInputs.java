@@ -0,0 +1,86 @@
+package com.horner.LookAngle;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Input distributions shared by the harnesses under <code>bench/</code>: the
+ * satellite longitudes of the shipped catalog and antenna sites spread
+ * uniformly over the globe. Not part of the application build.
+ * 
+ * @author etchorner
+ * 
+ */
+final class BenchInputs {
+
+	// CONSTANTS
+	/** the catalog the application seeds its database from */
+	static final String DEFAULT_CATALOG = "res/raw/ephemeris.csv";
+
+	// END CONSTANTS
+
+	private BenchInputs() {
+	}
+
+	/**
+	 * Reads the satellite longitudes from a catalog in the
+	 * <code>name,norad,longitude</code> format of ephemeris.csv.
+	 * 
+	 * @param path
+	 *            the catalog file
+	 * @return the longitudes (decimal degrees), in file order
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	static double[] loadCatalog(String path) throws IOException {
+		// LOCALS
+		BufferedReader reader = new BufferedReader(new FileReader(path));
+		List<Double> lons = new ArrayList<Double>();
+		double[] rtnLons;
+		String line;
+
+		try {
+			while ((line = reader.readLine()) != null) {
+				int comma = line.lastIndexOf(',');
+				if (comma < 0)
+					continue;
+				lons.add(Double.valueOf(line.substring(comma + 1).trim()));
+			}
+		} finally {
+			reader.close();
+		}
+
+		rtnLons = new double[lons.size()];
+		for (int i = 0; i < rtnLons.length; i++)
+			rtnLons[i] = lons.get(i).doubleValue();
+		return rtnLons;
+	}
+
+	/**
+	 * Generates antenna sites uniformly distributed over the sphere (equal
+	 * area, so high latitudes are not over-represented), between sea level
+	 * and 3000 m.
+	 * 
+	 * @param count
+	 *            number of sites
+	 * @param seed
+	 *            random seed, so that runs are comparable
+	 * @return latitudes, longitudes and altitudes as rows 0, 1 and 2
+	 */
+	static double[][] globalSites(int count, long seed) {
+		// LOCALS
+		Random rnd = new Random(seed);
+		double[][] rtnSites = new double[3][count];
+
+		for (int i = 0; i < count; i++) {
+			rtnSites[0][i] = Math.toDegrees(Math.asin(2 * rnd.nextDouble() - 1));
+			rtnSites[1][i] = rnd.nextDouble() * 360 - 180;
+			rtnSites[2][i] = rnd.nextDouble() * 3000;
+		}
+		return rtnSites;
+	}
+}
@@ -0,0 +1,150 @@
+package com.horner.LookAngle;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Interpolation error sweep for {@link DeclinationCache}. Walks a global grid
+ * offset from the cache's nodes, so that every sample falls inside a cell,
+ * and compares the cached declination with a direct
+ * {@link WorldMagneticModel} evaluation at the time the cache's tiles were
+ * built for. The error is reported in latitude bands, since it grows
+ * towards the magnetic poles, where declination turns through a full circle
+ * and no grid can follow it.
+ * 
+ * Separately, every sample with an error above the bound is checked against
+ * the corners of its cell: a value outside the arc they span can only come
+ * from interpolating the corners the wrong way across +-180. Exits with
+ * status 1 if the error up to 50 degrees north and south exceeds the bound
+ * (0.05 degrees unless given) or if any seam error is found. Not part of
+ * the application build.
+ * 
+ * The WMM coefficient file is not bundled and must be supplied.
+ * 
+ * <pre>
+ * javac -sourcepath src:bench -d bin/bench bench/com/horner/LookAngle/DeclinationErrorSweep.java
+ * java -cp bin/bench com.horner.LookAngle.DeclinationErrorSweep WMM.COF [resolution] [bound]
+ * </pre>
+ * 
+ * @author etchorner
+ * 
+ */
+public class DeclinationErrorSweep {
+
+	// CONSTANTS
+	/** samples per grid cell along each axis */
+	private static final int SAMPLES_PER_CELL = 4;
+	/** upper edges of the reported latitude bands (decimal degrees) */
+	private static final double[] BAND_EDGES = { 50, 70, 80,
+			DeclinationCache.MAX_LATITUDE };
+	/** default bound on the error in the first band (decimal degrees) */
+	private static final double DEFAULT_BOUND = 0.05;
+	/** largest corner spread of a cell holding no pole (decimal degrees) */
+	private static final double SMOOTH_SPREAD = 90;
+	/** rounding allowance on the corner arc (decimal degrees) */
+	private static final double SEAM_TOLERANCE = 1e-9;
+
+	// END CONSTANTS
+
+	public static void main(String[] args) throws IOException {
+		// LOCALS
+		InputStream in = new FileInputStream(args[0]);
+		WorldMagneticModel wmm;
+		double resolution = args.length > 1 ? Double.parseDouble(args[1])
+				: DeclinationCache.DEFAULT_RESOLUTION;
+		double bound = args.length > 2 ? Double.parseDouble(args[2])
+				: DEFAULT_BOUND;
+		double step = resolution / SAMPLES_PER_CELL;
+		double[] bandErr = new double[BAND_EDGES.length];
+		double[] bandLat = new double[BAND_EDGES.length];
+		double[] bandLon = new double[BAND_EDGES.length];
+		DeclinationCache cache;
+		long time, samples = 0;
+		int seamErrors = 0;
+
+		try {
+			wmm = WorldMagneticModel.load(in);
+		} finally {
+			in.close();
+		}
+		// hold two rows of tiles so the sweep evaluates each tile once
+		cache = new DeclinationCache(wmm, resolution, 2 * (int) Math
+				.ceil(360 / (resolution * DeclinationCache.TILE_CELLS)));
+		// the middle of an epoch, which is when the cache evaluates its nodes
+		time = (long) ((wmm.getEpoch() + 0.5 - 1970) * 365.2425 * 86400000L);
+		time = time / DeclinationCache.EPOCH_MILLIS
+				* DeclinationCache.EPOCH_MILLIS + DeclinationCache.EPOCH_MILLIS
+				/ 2;
+
+		for (double lat = step / 2 - DeclinationCache.MAX_LATITUDE; lat
+				< DeclinationCache.MAX_LATITUDE; lat += step) {
+			int band = 0;
+			while (Math.abs(lat) > BAND_EDGES[band])
+				band++;
+			for (double lon = -180 + step / 2; lon < 180; lon += step) {
+				double cached = cache.getDeclination(lat, lon, 0, time);
+				double err = Math.abs(angle(cached
+						- wmm.getDeclination(lat, lon, 0, time)));
+				if (err > bound
+						&& isSeamError(wmm, cached, lat, lon, resolution, time))
+					seamErrors++;
+				if (err > bandErr[band]) {
+					bandErr[band] = err;
+					bandLat[band] = lat;
+					bandLon[band] = lon;
+				}
+				samples++;
+			}
+		}
+
+		System.out.println(samples + " samples at " + resolution
+				+ " degree resolution, " + cache.getTileMisses()
+				+ " tiles evaluated");
+		for (int b = 0; b < BAND_EDGES.length; b++)
+			System.out.println("|lat| <= " + BAND_EDGES[b] + ": max error "
+					+ bandErr[b] + " at " + bandLat[b] + ", " + bandLon[b]);
+		System.out.println(seamErrors + " seam errors across +-180");
+		System.exit(bandErr[0] <= bound && seamErrors == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Tells whether an interpolated value falls outside the arc spanned by
+	 * the corners of its grid cell. Bilinear interpolation never leaves that
+	 * arc, so a value outside it was interpolated the wrong way across +-180.
+	 * Cells whose corners spread over more than {@link #SMOOTH_SPREAD} hold a
+	 * pole, where the arc is ambiguous, and are not checked.
+	 */
+	private static boolean isSeamError(WorldMagneticModel wmm, double value,
+			double lat, double lon, double resolution, long time) {
+		// LOCALS
+		double lat0 = Math.floor((lat + 90) / resolution) * resolution - 90;
+		double lon0 = Math.floor((lon + 180) / resolution) * resolution - 180;
+		double d00 = wmm.getDeclination(lat0, lon0, 0, time);
+		double[] corner = new double[] {
+				wmm.getDeclination(lat0, lon0 + resolution, 0, time),
+				wmm.getDeclination(lat0 + resolution, lon0, 0, time),
+				wmm.getDeclination(lat0 + resolution, lon0 + resolution, 0,
+						time) };
+		double lo = 0, hi = 0, v = angle(value - d00);
+
+		for (double c : corner) {
+			c = angle(c - d00);
+			lo = Math.min(lo, c);
+			hi = Math.max(hi, c);
+		}
+		if (hi - lo > SMOOTH_SPREAD)
+			return false;
+		return v < lo - SEAM_TOLERANCE || v > hi + SEAM_TOLERANCE;
+	}
+
+	/** wraps a difference of angles into -180..180 degrees */
+	private static double angle(double d) {
+		d = d % 360;
+		if (d > 180)
+			return d - 360;
+		if (d < -180)
+			return d + 360;
+		return d;
+	}
+}
@@ -0,0 +1,267 @@
+package com.horner.LookAngle;
+
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares {@link CoordinateFormat} with the DecimalFormat and NumberFormat
+ * paths it replaced: the UTM String of convertLLtoUTM, the two decimal look
+ * angle and position display, and the seconds display of
+ * <code>Location.convert()</code>. Not part of the application build.
+ * 
+ * Three things are reported:
+ * <ul>
+ * <li>equivalence: the new output is checked character for character
+ * against the old one over the global sites, both for the UTM String and
+ * for the two decimal display;</li>
+ * <li>throughput and allocation of each path on one thread, warmed up,
+ * with allocation read from the HotSpot per-thread counter as in
+ * {@link HotPathBench};</li>
+ * <li>thread safety: several threads format at once, once through shared
+ * DecimalFormat instances as the old convertLLtoUTM did and once through
+ * {@link CoordinateFormat}, and wrong results are counted.</li>
+ * </ul>
+ * 
+ * <pre>
+ * javac -sourcepath src:bench -d bin/bench bench/com/horner/LookAngle/FormatBench.java
+ * java -cp bin/bench com.horner.LookAngle.FormatBench [threads]
+ * </pre>
+ * 
+ * @author etchorner
+ * 
+ */
+public class FormatBench {
+
+	// CONSTANTS
+	private static final int SITES = 4096;
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 5;
+	private static final int OPS_PER_ROUND = 1 << 20;
+	private static final int CONCURRENT_OPS = 200000;
+
+	// END CONSTANTS
+
+	/** one measured operation; returns a value so the JIT cannot drop it */
+	private abstract static class Benchmark {
+		final String name;
+
+		Benchmark(String name) {
+			this.name = name;
+		}
+
+		abstract int run(int i);
+	}
+
+	/** consumes benchmark results so that they stay live */
+	private static long sink;
+
+	public static void main(String[] args) throws Exception {
+		// LOCALS
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		double[][] sites = BenchInputs.globalSites(SITES, 42);
+		final double[] lat = sites[0], lon = sites[1];
+		final UTMCoordinate[] utm = new UTMCoordinate[SITES];
+		final String[] expected = new String[SITES];
+		final char[] buf = new char[DatumTransform.UTM_MAX_LENGTH];
+		final StringBuilder sb = new StringBuilder();
+		final NumberFormat numFmt = NumberFormat.getInstance(Locale.ENGLISH);
+		final DecimalFormat seconds = new DecimalFormat("###.#####");
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		int mismatches = 0;
+
+		numFmt.setMinimumFractionDigits(2);
+		numFmt.setMaximumFractionDigits(2);
+		for (int i = 0; i < SITES; i++) {
+			utm[i] = DatumTransform.convertLLtoUTM(lat[i], lon[i],
+					new UTMCoordinate());
+			expected[i] = formatUTMDecimal(utm[i], new DecimalFormat("#"),
+					new DecimalFormat("#"), new DecimalFormat("#"));
+		}
+
+		// equivalence with the old paths
+		for (int i = 0; i < SITES; i++) {
+			String utmText = new String(buf, 0, DatumTransform.formatUTM(
+					utm[i], buf, 0));
+			sb.setLength(0);
+			CoordinateFormat.appendFixed(lat[i], 2, sb);
+			if (!utmText.equals(expected[i])
+					|| !sb.toString().equals(numFmt.format(lat[i])))
+				mismatches++;
+		}
+		System.out.println("equivalence: " + mismatches + " of " + SITES
+				+ " sites differ");
+
+		benchmarks.add(new Benchmark("utm.decimalFormat") {
+			final DecimalFormat zone = new DecimalFormat("#");
+			final DecimalFormat easting = new DecimalFormat("#");
+			final DecimalFormat northing = new DecimalFormat("#");
+
+			int run(int i) {
+				return formatUTMDecimal(utm[i % SITES], zone, easting,
+						northing).length();
+			}
+		});
+		benchmarks.add(new Benchmark("utm.coordinateFormat") {
+			int run(int i) {
+				return DatumTransform.formatUTM(utm[i % SITES], buf, 0);
+			}
+		});
+		benchmarks.add(new Benchmark("fixed2.numberFormat") {
+			int run(int i) {
+				return numFmt.format(lon[i % SITES]).length();
+			}
+		});
+		benchmarks.add(new Benchmark("fixed2.coordinateFormat") {
+			int run(int i) {
+				sb.setLength(0);
+				return CoordinateFormat.appendFixed(lon[i % SITES], 2, sb)
+						.length();
+			}
+		});
+		benchmarks.add(new Benchmark("dms.decimalFormat") {
+			int run(int i) {
+				return convertSeconds(Math.abs(lon[i % SITES]), seconds)
+						.length();
+			}
+		});
+		benchmarks.add(new Benchmark("dms.coordinateFormat") {
+			int run(int i) {
+				sb.setLength(0);
+				return CoordinateFormat.appendDms(Math.abs(lon[i % SITES]), 5,
+						sb).length();
+			}
+		});
+		for (Benchmark b : benchmarks)
+			measure(b);
+
+		// shared formatters under concurrent use
+		System.out.println(threads + " threads x " + CONCURRENT_OPS
+				+ " UTM Strings each:");
+		System.out.println("  shared DecimalFormat: "
+				+ concurrentErrors(threads, utm, expected, true) + " wrong");
+		System.out.println("  CoordinateFormat:     "
+				+ concurrentErrors(threads, utm, expected, false) + " wrong");
+		System.out.println("(" + sink + ")");
+	}
+
+	/** the UTM String as the DecimalFormat convertLLtoUTM built it */
+	private static String formatUTMDecimal(UTMCoordinate utm,
+			DecimalFormat zone, DecimalFormat easting, DecimalFormat northing) {
+		zone.setMinimumIntegerDigits(2);
+		easting.setMinimumIntegerDigits(6);
+		northing.setMinimumIntegerDigits(7);
+		return zone.format(utm.zone) + " " + utm.band + " "
+				+ easting.format(utm.easting) + " "
+				+ northing.format(utm.northing);
+	}
+
+	/** Location.convert(value, FORMAT_SECONDS), as Android implements it */
+	private static String convertSeconds(double value, DecimalFormat seconds) {
+		// LOCALS
+		StringBuilder rtnText = new StringBuilder();
+		int degrees = (int) Math.floor(value);
+		int minutes;
+
+		rtnText.append(degrees).append(':');
+		value = (value - degrees) * 60;
+		minutes = (int) Math.floor(value);
+		rtnText.append(minutes).append(':');
+		value = (value - minutes) * 60;
+		return rtnText.append(seconds.format(value)).toString();
+	}
+
+	/** warms up and measures one benchmark */
+	private static void measure(Benchmark b) {
+		// LOCALS
+		double best = 0;
+		long bytes, ops = 0;
+		int next = 0;
+
+		for (int r = 0; r < WARMUP_ROUNDS; r++)
+			for (int i = 0; i < OPS_PER_ROUND; i++)
+				sink += b.run(next++ & Integer.MAX_VALUE);
+
+		bytes = allocatedBytes();
+		for (int r = 0; r < ROUNDS; r++) {
+			long t0 = System.nanoTime();
+			for (int i = 0; i < OPS_PER_ROUND; i++)
+				sink += b.run(next++ & Integer.MAX_VALUE);
+			best = Math.max(best, OPS_PER_ROUND * 1e9
+					/ (System.nanoTime() - t0));
+			ops += OPS_PER_ROUND;
+		}
+		bytes = bytes < 0 ? -1 : allocatedBytes() - bytes;
+
+		System.out.println(b.name + ": " + Math.round(best) + " ops/s, "
+				+ (bytes < 0 ? "?" : Math.round(bytes * 10.0 / ops) / 10.0)
+				+ " B/op");
+	}
+
+	/**
+	 * Formats the UTM Strings from several threads at once.
+	 * 
+	 * @param shared
+	 *            true to share one set of DecimalFormats between the threads,
+	 *            as the static fields of the old convertLLtoUTM were
+	 * @return the number of Strings that came out wrong
+	 */
+	private static long concurrentErrors(int threads,
+			final UTMCoordinate[] utm, final String[] expected,
+			final boolean shared) throws Exception {
+		// LOCALS
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final DecimalFormat zone = new DecimalFormat("#");
+		final DecimalFormat easting = new DecimalFormat("#");
+		final DecimalFormat northing = new DecimalFormat("#");
+		List<Future<Long>> results = new ArrayList<Future<Long>>();
+		long rtnErrors = 0;
+
+		try {
+			for (int t = 0; t < threads; t++) {
+				final int seed = t * 7919;
+				results.add(executor.submit(new Callable<Long>() {
+					public Long call() {
+						char[] buf = new char[DatumTransform.UTM_MAX_LENGTH];
+						long errors = 0;
+						for (int k = 0; k < CONCURRENT_OPS; k++) {
+							int i = (seed + k) % utm.length;
+							String text;
+							if (shared)
+								text = formatUTMDecimal(utm[i], zone, easting,
+										northing);
+							else
+								text = new String(buf, 0, DatumTransform
+										.formatUTM(utm[i], buf, 0));
+							if (!text.equals(expected[i]))
+								errors++;
+						}
+						return Long.valueOf(errors);
+					}
+				}));
+			}
+			for (Future<Long> f : results)
+				rtnErrors += f.get().longValue();
+		} finally {
+			executor.shutdown();
+		}
+		return rtnErrors;
+	}
+
+	/** @return bytes allocated so far by this thread, or -1 if unknown */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory
+				.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+	}
+}
@@ -0,0 +1,361 @@
+package com.horner.LookAngle;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Throughput and allocation harness for the per-fix hot paths:
+ * getLookAngle, getAzimuth, getElevation, getSkew, the magnetic declination
+ * and convertLLtoUTM, both to a String and to a reused
+ * {@link UTMCoordinate}. Not part of the application build.
+ * 
+ * The project builds with the Android tools rather than Maven, so this is a
+ * standalone harness in the spirit of JMH instead of a JMH module: each
+ * benchmark is warmed up, then run for a number of timed iterations.
+ * Allocation per operation is read from the HotSpot per-thread allocation
+ * counter, which is what the JMH GC profiler reports as
+ * <code>gc.alloc.rate.norm</code>. Results are written as JSON in the layout
+ * of JMH's <code>-rf json</code> output, so runs can be compared with the
+ * usual JMH tooling.
+ * 
+ * Inputs are global antenna sites (uniform over the sphere) crossed with
+ * every satellite of the shipped catalog. The declination cache is measured
+ * both against the global sites (its worst case, every lookup a new tile)
+ * and against sites within about 0.1 degree of each other, as for a single
+ * moving receiver. Declination needs a WMM.COF
+ * coefficient file, which is not shipped with the project; without one
+ * those benchmarks are skipped.
+ * 
+ * <pre>
+ * javac -sourcepath src:bench -d bin/bench bench/com/horner/LookAngle/HotPathBench.java
+ * java -cp bin/bench com.horner.LookAngle.HotPathBench [-catalog res/raw/ephemeris.csv]
+ *     [-wmm WMM.COF] [-o results.json] [-i iterations] [-t millis]
+ * </pre>
+ * 
+ * @author etchorner
+ * 
+ */
+public class HotPathBench {
+
+	// CONSTANTS
+	private static final int SITES = 4096;
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int DEFAULT_ITERATIONS = 5;
+	private static final long DEFAULT_ITERATION_MILLIS = 1000;
+	/** operations between clock reads */
+	private static final int BATCH = 1024;
+
+	// END CONSTANTS
+
+	/** one measured operation; returns a value so the JIT cannot drop it */
+	private abstract static class Benchmark {
+		final String name;
+
+		Benchmark(String name) {
+			this.name = name;
+		}
+
+		abstract double run(int i);
+	}
+
+	/** measured statistics of one benchmark */
+	private static final class Result {
+		String name;
+		double[] opsPerSec;
+		double bytesPerOp;
+	}
+
+	/** consumes benchmark results so that they stay live */
+	private static double sink;
+	/** next input index, carried across iterations */
+	private static int next;
+
+	public static void main(String[] args) throws IOException {
+		// LOCALS
+		String catalogPath = BenchInputs.DEFAULT_CATALOG;
+		String wmmPath = null;
+		String outPath = "hotpath.json";
+		int iterations = DEFAULT_ITERATIONS;
+		long iterationMillis = DEFAULT_ITERATION_MILLIS;
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		List<Result> results = new ArrayList<Result>();
+
+		for (int a = 0; a + 1 < args.length; a += 2) {
+			if (args[a].equals("-catalog"))
+				catalogPath = args[a + 1];
+			else if (args[a].equals("-wmm"))
+				wmmPath = args[a + 1];
+			else if (args[a].equals("-o"))
+				outPath = args[a + 1];
+			else if (args[a].equals("-i"))
+				iterations = Integer.parseInt(args[a + 1]);
+			else if (args[a].equals("-t"))
+				iterationMillis = Long.parseLong(args[a + 1]);
+		}
+
+		final double[] satLon = BenchInputs.loadCatalog(catalogPath);
+		final double[][] sites = BenchInputs.globalSites(SITES, 42);
+		final double[] lat = sites[0], lon = sites[1], alt = sites[2];
+		final int nSats = satLon.length;
+		final int pairs = SITES * nSats;
+		final LookAngleResult result = new LookAngleResult();
+		final UTMCoordinate utm = new UTMCoordinate();
+		final long now = System.currentTimeMillis();
+
+		benchmarks.add(new Benchmark("getLookAngle") {
+			double run(int i) {
+				int s = (i % pairs) / nSats;
+				SatMathCore.getLookAngle(lat[s], lon[s], alt[s], satLon[i
+						% nSats], result);
+				return result.elevation;
+			}
+		});
+		benchmarks.add(new Benchmark("getAzimuth") {
+			double run(int i) {
+				int s = (i % pairs) / nSats;
+				return SatMathCore.getAzimuth(lat[s], lon[s], satLon[i
+						% nSats]);
+			}
+		});
+		benchmarks.add(new Benchmark("getElevation") {
+			double run(int i) {
+				int s = (i % pairs) / nSats;
+				return SatMathCore.getElevation(lat[s], lon[s], satLon[i
+						% nSats]);
+			}
+		});
+		benchmarks.add(new Benchmark("getSkew") {
+			double run(int i) {
+				int s = (i % pairs) / nSats;
+				return SatMathCore.getSkew(lat[s], lon[s], satLon[i % nSats]);
+			}
+		});
+		benchmarks.add(new Benchmark("convertLLtoUTM") {
+			double run(int i) {
+				int s = i % SITES;
+				return DatumTransform.convertLLtoUTM(lat[s], lon[s]).length();
+			}
+		});
+		benchmarks.add(new Benchmark("convertLLtoUTM.numeric") {
+			double run(int i) {
+				int s = i % SITES;
+				DatumTransform.convertLLtoUTM(lat[s], lon[s], utm);
+				return utm.easting;
+			}
+		});
+		if (wmmPath != null) {
+			InputStream in = new FileInputStream(wmmPath);
+			final WorldMagneticModel wmm;
+			try {
+				wmm = WorldMagneticModel.load(in);
+			} finally {
+				in.close();
+			}
+			final DeclinationCache cache = new DeclinationCache(wmm);
+			benchmarks.add(new Benchmark("getMagneticDeclination.wmm") {
+				double run(int i) {
+					int s = i % SITES;
+					return wmm.getDeclination(lat[s], lon[s], alt[s], now);
+				}
+			});
+			final DeclinationCache localCache = new DeclinationCache(wmm);
+			// global sites thrash the tile cache; this is its worst case
+			benchmarks.add(new Benchmark(
+					"getMagneticDeclination.cachedGlobal") {
+				double run(int i) {
+					int s = i % SITES;
+					return cache.getDeclination(lat[s], lon[s], alt[s], now);
+				}
+			});
+			// a single moving receiver, its intended use
+			benchmarks.add(new Benchmark(
+					"getMagneticDeclination.cachedLocal") {
+				double run(int i) {
+					int s = i % SITES;
+					return localCache.getDeclination(lat[0] + lat[s] / 900,
+							lon[0] + lon[s] / 1800, alt[s], now);
+				}
+			});
+		} else {
+			System.out.println("no -wmm file, skipping declination");
+		}
+
+		System.out.println(SITES + " sites x " + nSats + " satellites");
+		for (Benchmark b : benchmarks)
+			results.add(measure(b, iterations, iterationMillis));
+
+		write(results, outPath, iterations, iterationMillis);
+		System.out.println("wrote " + outPath + " (" + sink + ")");
+	}
+
+	/** warms up and measures one benchmark */
+	private static Result measure(Benchmark b, int iterations,
+			long iterationMillis) {
+		// LOCALS
+		Result r = new Result();
+		long ops = 0, bytes;
+
+		r.name = b.name;
+		r.opsPerSec = new double[iterations];
+		for (int w = 0; w < WARMUP_ITERATIONS; w++)
+			iterate(b, iterationMillis);
+
+		bytes = allocatedBytes();
+		for (int it = 0; it < iterations; it++) {
+			long t0 = System.nanoTime();
+			long count = iterate(b, iterationMillis);
+			r.opsPerSec[it] = count * 1e9 / (System.nanoTime() - t0);
+			ops += count;
+		}
+		bytes = bytes < 0 ? -1 : allocatedBytes() - bytes;
+		r.bytesPerOp = bytes < 0 ? Double.NaN : (double) bytes / ops;
+
+		System.out.println(b.name + ": " + Math.round(mean(r.opsPerSec))
+				+ " ops/s, " + Math.round(r.bytesPerOp * 10) / 10.0 + " B/op");
+		return r;
+	}
+
+	/**
+	 * Runs batches of operations until the iteration time is up.
+	 * 
+	 * @return the number of operations run
+	 */
+	private static long iterate(Benchmark b, long millis) {
+		long end = System.nanoTime() + millis * 1000000L;
+		double acc = 0;
+		long ops = 0;
+		int i = next;
+
+		do {
+			for (int k = 0; k < BATCH; k++)
+				acc += b.run(i++ & Integer.MAX_VALUE);
+			ops += BATCH;
+		} while (System.nanoTime() < end);
+
+		sink += acc;
+		next = i;
+		return ops;
+	}
+
+	/** @return bytes allocated so far by this thread, or -1 if unknown */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory
+				.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+	}
+
+	private static double mean(double[] a) {
+		double sum = 0;
+		for (double v : a)
+			sum += v;
+		return sum / a.length;
+	}
+
+	private static double stdev(double[] a) {
+		double m = mean(a), sum = 0;
+		for (double v : a)
+			sum += (v - m) * (v - m);
+		return a.length > 1 ? Math.sqrt(sum / (a.length - 1)) : Double.NaN;
+	}
+
+	private static double min(double[] a) {
+		double m = Double.POSITIVE_INFINITY;
+		for (double v : a)
+			m = Math.min(m, v);
+		return m;
+	}
+
+	private static double max(double[] a) {
+		double m = Double.NEGATIVE_INFINITY;
+		for (double v : a)
+			m = Math.max(m, v);
+		return m;
+	}
+
+	/** writes the results in the JMH JSON result layout */
+	private static void write(List<Result> results, String path,
+			int iterations, long iterationMillis) throws IOException {
+		// LOCALS
+		Writer out = new OutputStreamWriter(new FileOutputStream(path),
+				"UTF-8");
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("[\n");
+		for (int k = 0; k < results.size(); k++) {
+			Result r = results.get(k);
+			sb.append("  {\n");
+			sb.append("    \"benchmark\" : \"")
+					.append(HotPathBench.class.getName()).append('.')
+					.append(r.name).append("\",\n");
+			sb.append("    \"mode\" : \"thrpt\",\n");
+			sb.append("    \"threads\" : 1,\n");
+			sb.append("    \"forks\" : 1,\n");
+			sb.append("    \"jvm\" : \"")
+					.append(json(System.getProperty("java.home")))
+					.append("\",\n");
+			sb.append("    \"jdkVersion\" : \"")
+					.append(json(System.getProperty("java.version")))
+					.append("\",\n");
+			sb.append("    \"warmupIterations\" : ").append(WARMUP_ITERATIONS)
+					.append(",\n");
+			sb.append("    \"warmupTime\" : \"").append(iterationMillis)
+					.append(" ms\",\n");
+			sb.append("    \"measurementIterations\" : ").append(iterations)
+					.append(",\n");
+			sb.append("    \"measurementTime\" : \"").append(iterationMillis)
+					.append(" ms\",\n");
+			sb.append("    \"primaryMetric\" : {\n");
+			sb.append("      \"score\" : ").append(number(mean(r.opsPerSec)))
+					.append(",\n");
+			sb.append("      \"scoreError\" : ")
+					.append(number(stdev(r.opsPerSec))).append(",\n");
+			sb.append("      \"scoreConfidence\" : [ ")
+					.append(number(min(r.opsPerSec))).append(", ")
+					.append(number(max(r.opsPerSec))).append(" ],\n");
+			sb.append("      \"scoreUnit\" : \"ops/s\",\n");
+			sb.append("      \"rawData\" : [ [ ");
+			for (int it = 0; it < r.opsPerSec.length; it++) {
+				if (it > 0)
+					sb.append(", ");
+				sb.append(number(r.opsPerSec[it]));
+			}
+			sb.append(" ] ]\n");
+			sb.append("    },\n");
+			sb.append("    \"secondaryMetrics\" : {\n");
+			sb.append("      \"gc.alloc.rate.norm\" : {\n");
+			sb.append("        \"score\" : ").append(number(r.bytesPerOp))
+					.append(",\n");
+			sb.append("        \"scoreUnit\" : \"B/op\"\n");
+			sb.append("      }\n");
+			sb.append("    }\n");
+			sb.append(k + 1 < results.size() ? "  },\n" : "  }\n");
+		}
+		sb.append("]\n");
+
+		try {
+			out.write(sb.toString());
+		} finally {
+			out.close();
+		}
+	}
+
+	/** JSON has no NaN, so unknown values are written as null */
+	private static String number(double v) {
+		return Double.isNaN(v) || Double.isInfinite(v) ? "null" : String
+				.valueOf(v);
+	}
+
+	private static String json(String s) {
+		return s == null ? "" : s.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+}
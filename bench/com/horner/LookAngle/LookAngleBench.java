@@ -0,0 +1,75 @@
+package com.horner.LookAngle;
+
+/**
+ * Plain-JVM timing harness comparing the per-pair scalar look angle loop with
+ * the bulk {@link LookAngleKernel} path behind
+ * {@link SatMathCore#getLookAngles(double[], double[], double[], double[], double[], double[], double[])
+ * getLookAngles()}. Not part of the application build.
+ * 
+ * Only the Android-independent classes are needed, so this builds and runs on
+ * a plain JVM:
+ * 
+ * <pre>
+ * javac -sourcepath src -d bin/bench bench/com/horner/LookAngle/LookAngleBench.java
+ * java -cp bin/bench com.horner.LookAngle.LookAngleBench [sites] [satellites]
+ * </pre>
+ * 
+ * @author etchorner
+ * 
+ */
+public class LookAngleBench {
+
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) {
+		int nSites = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int nSats = args.length > 1 ? Integer.parseInt(args[1]) : 1086;
+		int pairs = nSites * nSats;
+		double[] siteLat = new double[nSites];
+		double[] siteLon = new double[nSites];
+		double[] siteAlt = new double[nSites];
+		double[] satLon = new double[nSats];
+		double[] az = new double[pairs];
+		double[] el = new double[pairs];
+		double[] range = new double[pairs];
+		LookAngleResult result = new LookAngleResult();
+		java.util.Random rnd = new java.util.Random(42);
+
+		// global sites (avoid the poles), satellites spread round the belt
+		for (int i = 0; i < nSites; i++) {
+			siteLat[i] = rnd.nextDouble() * 160 - 80;
+			siteLon[i] = rnd.nextDouble() * 360 - 180;
+			siteAlt[i] = rnd.nextDouble() * 3000;
+		}
+		for (int j = 0; j < nSats; j++) {
+			satLon[j] = rnd.nextDouble() * 360 - 180;
+		}
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long t0 = System.nanoTime();
+			for (int i = 0; i < nSites; i++) {
+				int row = i * nSats;
+				for (int j = 0; j < nSats; j++) {
+					SatMathCore.getLookAngle(siteLat[i], siteLon[i], siteAlt[i],
+							satLon[j], result);
+					az[row + j] = result.azimuth;
+					el[row + j] = result.elevation;
+					range[row + j] = result.range;
+				}
+			}
+			long t1 = System.nanoTime();
+			SatMathCore.getLookAngles(siteLat, siteLon, siteAlt, satLon, az, el,
+					range);
+			long t2 = System.nanoTime();
+
+			System.out.println("round " + round + ": scalar "
+					+ nsPerPair(t1 - t0, pairs) + " ns/pair, bulk "
+					+ nsPerPair(t2 - t1, pairs) + " ns/pair, speedup "
+					+ Math.round(100.0 * (t1 - t0) / (t2 - t1)) / 100.0 + "x");
+		}
+	}
+
+	private static double nsPerPair(long nanos, int pairs) {
+		return Math.round(100.0 * nanos / pairs) / 100.0;
+	}
+}
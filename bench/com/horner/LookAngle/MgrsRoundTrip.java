@@ -0,0 +1,95 @@
+package com.horner.LookAngle;
+
+import java.util.Random;
+
+/**
+ * Checks that MGRS references decode to a point that encodes back to the
+ * same reference. Each site is encoded with
+ * {@link DatumTransform#convertLLtoMGRS(double, double, int)
+ * convertLLtoMGRS()} at every precision, the reference is decoded with
+ * {@link DatumTransform#convertMGRStoLL(String) convertMGRStoLL()} and
+ * encoded again, and the two references are compared. Two sets of sites:
+ * <ul>
+ * <li>sites spread uniformly over the UTM part of MGRS;</li>
+ * <li>sites on the edges of the grid zones, the west edge of every zone
+ * (180 included) and the south edge of every band, where a square can
+ * straddle two grid zones.</li>
+ * </ul>
+ * Exits with status 1 if any reference changes. Not part of the
+ * application build.
+ * 
+ * <pre>
+ * javac -sourcepath src:bench -d bin/bench bench/com/horner/LookAngle/MgrsRoundTrip.java
+ * java -cp bin/bench com.horner.LookAngle.MgrsRoundTrip [sites]
+ * </pre>
+ * 
+ * @author etchorner
+ * 
+ */
+public class MgrsRoundTrip {
+
+	// CONSTANTS
+	private static final int DEFAULT_SITES = 20000;
+	/** latitude limits of the UTM part of MGRS */
+	private static final double MIN_LAT = -80;
+	private static final double MAX_LAT = 84;
+	/** latitudes of the band edges, below MAX_LAT */
+	private static final double[] BAND_EDGES = { -80, -72, -64, -56, -48, -40,
+			-32, -24, -16, -8, 0, 8, 16, 24, 32, 40, 48, 56, 64, 72 };
+	/** samples along each zone and band edge */
+	private static final int EDGE_SAMPLES = 50;
+	/** mismatches printed before the rest are only counted */
+	private static final int MAX_REPORTED = 10;
+
+	// END CONSTANTS
+
+	/** mismatches found so far */
+	private static int failures;
+
+	public static void main(String[] args) {
+		// LOCALS
+		int sites = args.length > 0 ? Integer.parseInt(args[0])
+				: DEFAULT_SITES;
+		Random random = new Random(42);
+		int checked = 0;
+
+		for (int i = 0; i < sites; i++)
+			checked += check(MIN_LAT + (MAX_LAT - MIN_LAT)
+					* random.nextDouble(), 360 * random.nextDouble() - 180);
+		System.out.println(checked + " references from uniform sites, "
+				+ failures + " changed");
+
+		checked = 0;
+		for (int zone = 0; zone < 60; zone++) {
+			double lon = 6 * zone - 180;
+			for (int i = 0; i < EDGE_SAMPLES; i++)
+				checked += check(MIN_LAT + (MAX_LAT - MIN_LAT)
+						* random.nextDouble(), lon);
+			for (double lat : BAND_EDGES)
+				checked += check(lat, lon);
+		}
+		for (double lat : BAND_EDGES)
+			for (int i = 0; i < EDGE_SAMPLES; i++)
+				checked += check(lat, 360 * random.nextDouble() - 180);
+		System.out.println(checked + " references from edge sites, "
+				+ failures + " changed in all");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/** @return the number of references checked for one site */
+	private static int check(double lat, double lon) {
+		for (int precision = 0; precision <= DatumTransform.MGRS_MAX_PRECISION;
+				precision++) {
+			String mgrs = DatumTransform.convertLLtoMGRS(lat, lon, precision);
+			double[] ll = DatumTransform.convertMGRStoLL(mgrs);
+			String again = DatumTransform.convertLLtoMGRS(ll[0], ll[1],
+					precision);
+
+			if (!again.equals(mgrs) && failures++ < MAX_REPORTED)
+				System.out.println(lat + ", " + lon + ": " + mgrs
+						+ " decodes to " + ll[0] + ", " + ll[1]
+						+ " which encodes to " + again);
+		}
+		return DatumTransform.MGRS_MAX_PRECISION + 1;
+	}
+}
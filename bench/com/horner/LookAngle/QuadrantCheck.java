@@ -0,0 +1,138 @@
+package com.horner.LookAngle;
+
+/**
+ * Checks the azimuth quadrant of the cartesian look angle path, which serves
+ * targets that are not geostationary and so may lie poleward of the site.
+ * Two parts:
+ * <ul>
+ * <li>{@link SiteFrame#getLookAngle(double, double, double, LookAngleResult)}
+ * from sites at 45 north and 45 south, against low orbit targets placed due
+ * north, east, south and west of each;</li>
+ * <li>{@link Sgp4Propagator#getLookAngles(Sgp4Propagator[], long, SiteFrame,
+ * double[], double[], double[]) Sgp4Propagator.getLookAngles()} for a real
+ * element set, from two northern sites on the meridian of the satellite,
+ * one south of it (target due north) and one north of it (target due
+ * south).</li>
+ * </ul>
+ * Exits with status 1 if any azimuth is off by more than
+ * {@link #TOLERANCE}. Not part of the application build.
+ * 
+ * <pre>
+ * javac -sourcepath src:bench -d bin/bench bench/com/horner/LookAngle/QuadrantCheck.java
+ * java -cp bin/bench com.horner.LookAngle.QuadrantCheck
+ * </pre>
+ * 
+ * @author etchorner
+ * 
+ */
+public class QuadrantCheck {
+
+	// CONSTANTS
+	/** allowed azimuth error (decimal degrees) */
+	private static final double TOLERANCE = 1e-6;
+	/** radius of the test targets (meters), a low earth orbit */
+	private static final double TARGET_RADIUS = SatMathCore.WGS84_A + 800000;
+	/** offset of the test targets from the site (decimal degrees) */
+	private static final double OFFSET = 10;
+	/** Vanguard 1, inclined 34 degrees */
+	private static final String[] TLE = {
+			"VANGUARD 1",
+			"1 00005U 58002B   00179.78495062  .00000023  00000-0  28098-4 0  4753",
+			"2 00005  34.2682 348.7242 1859667 331.7664  19.3264 10.82419157413667" };
+	/** Julian date of 1970 Jan 1.0, the Java time origin */
+	private static final double JD_UNIX = 2440587.5;
+
+	// END CONSTANTS
+
+	public static void main(String[] args) {
+		boolean ok = true;
+
+		ok &= checkFrame(45);
+		ok &= checkFrame(-45);
+		ok &= checkPropagator();
+		System.exit(ok ? 0 : 1);
+	}
+
+	/**
+	 * Targets due north, east, south and west of a site on the prime
+	 * meridian. East and west are on the site's parallel, so their azimuth
+	 * is not exactly 90 and 270; only their quadrant is checked.
+	 */
+	private static boolean checkFrame(double siteLat) {
+		// LOCALS
+		SiteFrame frame = new SiteFrame(siteLat, 0, 0);
+		LookAngleResult result = new LookAngleResult();
+		boolean rtnOk = true;
+
+		rtnOk &= expect("frame " + siteLat + " north", look(frame, siteLat
+				+ OFFSET, 0, result), 0);
+		rtnOk &= expect("frame " + siteLat + " south", look(frame, siteLat
+				- OFFSET, 0, result), 180);
+		rtnOk &= expectQuadrant("frame " + siteLat + " east", look(frame,
+				siteLat, OFFSET, result), 0, 180);
+		rtnOk &= expectQuadrant("frame " + siteLat + " west", look(frame,
+				siteLat, -OFFSET, result), 180, 360);
+		return rtnOk;
+	}
+
+	/**
+	 * Propagates to the first minute after epoch where the satellite is
+	 * between 20 and 30 north, then looks at it from the same meridian.
+	 */
+	private static boolean checkPropagator() {
+		// LOCALS
+		Sgp4Propagator sat = new Sgp4Propagator(new TwoLineElements(TLE[0],
+				TLE[1], TLE[2]));
+		Sgp4Propagator[] sats = new Sgp4Propagator[] { sat };
+		long epochMillis = Math.round((sat.getElements().epochJd - JD_UNIX)
+				* 86400000.0);
+		double[] xyz = new double[3], az = new double[1], el = new double[1];
+		double subLat = 0, subLon = 0;
+		long time = epochMillis;
+		boolean rtnOk = true;
+
+		for (int minute = 0; minute < 1440; minute++) {
+			time = epochMillis + minute * 60000L;
+			sat.getPosition(time, xyz);
+			subLat = Math.toDegrees(Math.atan2(xyz[2], Math.hypot(xyz[0],
+					xyz[1])));
+			subLon = Math.toDegrees(Math.atan2(xyz[1], xyz[0]));
+			if (subLat > 20 && subLat < 30)
+				break;
+		}
+
+		Sgp4Propagator.getLookAngles(sats, time, new SiteFrame(subLat
+				- OFFSET, subLon, 0), az, el, null);
+		rtnOk &= expect("sgp4 target north", az[0], 0);
+		Sgp4Propagator.getLookAngles(sats, time, new SiteFrame(subLat
+				+ OFFSET, subLon, 0), az, el, null);
+		rtnOk &= expect("sgp4 target south", az[0], 180);
+		return rtnOk;
+	}
+
+	/** azimuth of a target above a geocentric latitude and longitude */
+	private static double look(SiteFrame frame, double lat, double lon,
+			LookAngleResult result) {
+		double la = Math.toRadians(lat), lo = Math.toRadians(lon);
+		return frame.getLookAngle(TARGET_RADIUS * Math.cos(la)
+				* Math.cos(lo), TARGET_RADIUS * Math.cos(la) * Math.sin(lo),
+				TARGET_RADIUS * Math.sin(la), result).azimuth;
+	}
+
+	private static boolean expect(String name, double azimuth,
+			double expected) {
+		double err = Math.abs(azimuth - expected) % 360;
+		boolean ok = Math.min(err, 360 - err) <= TOLERANCE;
+		System.out.println(name + ": " + azimuth + (ok ? "" : " (expected "
+				+ expected + ")"));
+		return ok;
+	}
+
+	private static boolean expectQuadrant(String name, double azimuth,
+			double from, double to) {
+		boolean ok = azimuth > from && azimuth < to;
+		System.out.println(name + ": " + azimuth + (ok ? "" : " (expected "
+				+ from + ".." + to + ")"));
+		return ok;
+	}
+}
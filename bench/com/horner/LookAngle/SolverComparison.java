@@ -0,0 +1,313 @@
+package com.horner.LookAngle;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accuracy versus cost of the look angle solvers. Sweeps a global site grid
+ * against the catalog and, for every fast method, reports the maximum and RMS
+ * angular error against Soler's rigorous ellipsoidal solution next to its
+ * cost in ns/op:
+ * <ul>
+ * <li>the spherical {@link SatMathCore#getAzimuth(double, double, double)
+ * getAzimuth()} and {@link SatMathCore#getElevation(double, double, double)
+ * getElevation()}</li>
+ * <li>Soler with the {@link TrigProvider#POLYNOMIAL} and
+ * {@link TrigProvider#TABLE} tiers</li>
+ * </ul>
+ * Only site/satellite pairs above the horizon are scored, and azimuth is not
+ * scored near the zenith, where it is ill-defined. Given a pointing
+ * tolerance, the cheapest method meeting it is named for azimuth and
+ * elevation. Not part of the application build.
+ * 
+ * Results are also written as CSV. When a previous result file is given as
+ * a baseline, the run fails (exit status 1) if any method's maximum error has
+ * grown or its cost has risen by more than the allowed fraction.
+ * 
+ * <pre>
+ * javac -sourcepath src:bench -d bin/bench bench/com/horner/LookAngle/SolverComparison.java
+ * java -cp bin/bench com.horner.LookAngle.SolverComparison [-tolerance deg]
+ *     [-o solvers.csv] [-baseline old.csv] [-slack 0.2]
+ * </pre>
+ * 
+ * @author etchorner
+ * 
+ */
+public class SolverComparison {
+
+	// CONSTANTS
+	/** spacing of the site grid (degrees) */
+	private static final int GRID_STEP = 5;
+	/** highest site latitude in the grid (degrees) */
+	private static final int GRID_MAX_LAT = 80;
+	private static final int TIMING_ROUNDS = 7;
+	/** azimuth is not scored above this elevation, near the zenith */
+	private static final double ZENITH_ELEVATION = 89.5;
+	/** absolute growth in max error tolerated against a baseline (deg) */
+	private static final double ERROR_EPSILON = 1e-9;
+
+	// END CONSTANTS
+
+	/** one solver under test */
+	private abstract static class Solver {
+		final String name;
+		/** which of azimuth and elevation the solver produces */
+		final boolean hasAz, hasEl;
+
+		Solver(String name, boolean hasAz, boolean hasEl) {
+			this.name = name;
+			this.hasAz = hasAz;
+			this.hasEl = hasEl;
+		}
+
+		abstract void solve(double lat, double lon, double alt, double satLon,
+				double[] azEl);
+	}
+
+	/** error and cost of one solver */
+	private static final class Score {
+		String name;
+		double maxAz, rmsAz, maxEl, rmsEl, nsPerOp;
+	}
+
+	/** consumes solver results so that they stay live */
+	private static double sink;
+
+	public static void main(String[] args) throws IOException {
+		// LOCALS
+		String catalogPath = BenchInputs.DEFAULT_CATALOG;
+		String outPath = "solvers.csv";
+		String baselinePath = null;
+		double tolerance = 0.1;
+		double slack = 0.2;
+		final LookAngleResult result = new LookAngleResult();
+		Solver[] solvers;
+		Score[] scores;
+
+		for (int a = 0; a + 1 < args.length; a += 2) {
+			if (args[a].equals("-catalog"))
+				catalogPath = args[a + 1];
+			else if (args[a].equals("-tolerance"))
+				tolerance = Double.parseDouble(args[a + 1]);
+			else if (args[a].equals("-o"))
+				outPath = args[a + 1];
+			else if (args[a].equals("-baseline"))
+				baselinePath = args[a + 1];
+			else if (args[a].equals("-slack"))
+				slack = Double.parseDouble(args[a + 1]);
+		}
+
+		solvers = new Solver[] { new Solver("spherical.azimuth", true, false) {
+			void solve(double lat, double lon, double alt, double satLon,
+					double[] azEl) {
+				azEl[0] = SatMathCore.getAzimuth(lat, lon, satLon);
+			}
+		}, new Solver("spherical.elevation", false, true) {
+			void solve(double lat, double lon, double alt, double satLon,
+					double[] azEl) {
+				azEl[1] = SatMathCore.getElevation(lat, lon, satLon);
+			}
+		}, new Solver("soler.exact", true, true) {
+			void solve(double lat, double lon, double alt, double satLon,
+					double[] azEl) {
+				SatMathCore.getLookAngle(lat, lon, alt, satLon, result);
+				azEl[0] = result.azimuth;
+				azEl[1] = result.elevation;
+			}
+		}, new Solver("soler.polynomial", true, true) {
+			void solve(double lat, double lon, double alt, double satLon,
+					double[] azEl) {
+				SatMathCore.getLookAngle(lat, lon, alt, satLon, result,
+						TrigProvider.POLYNOMIAL);
+				azEl[0] = result.azimuth;
+				azEl[1] = result.elevation;
+			}
+		}, new Solver("soler.table", true, true) {
+			void solve(double lat, double lon, double alt, double satLon,
+					double[] azEl) {
+				SatMathCore.getLookAngle(lat, lon, alt, satLon, result,
+						TrigProvider.TABLE);
+				azEl[0] = result.azimuth;
+				azEl[1] = result.elevation;
+			}
+		} };
+
+		scores = sweep(solvers, BenchInputs.loadCatalog(catalogPath));
+		print(scores, tolerance);
+		write(scores, outPath);
+		if (baselinePath != null && !compare(scores, baselinePath, slack))
+			System.exit(1);
+		System.out.println("(" + sink + ")");
+	}
+
+	/** scores every solver over the site grid and the catalog */
+	private static Score[] sweep(Solver[] solvers, double[] satLon) {
+		// LOCALS
+		int rows = 2 * GRID_MAX_LAT / GRID_STEP + 1;
+		int cols = 360 / GRID_STEP;
+		int nSites = rows * cols;
+		double[] lat = new double[nSites];
+		double[] lon = new double[nSites];
+		double[] refAz = new double[nSites * satLon.length];
+		double[] refEl = new double[nSites * satLon.length];
+		double[] azEl = new double[2];
+		Score[] rtnScores = new Score[solvers.length];
+		LookAngleResult ref = new LookAngleResult();
+		int visible = 0, visibleAz = 0;
+
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				lat[r * cols + c] = -GRID_MAX_LAT + r * GRID_STEP;
+				lon[r * cols + c] = -180 + c * GRID_STEP;
+			}
+		}
+
+		// reference solution, sea level sites
+		for (int i = 0; i < nSites; i++) {
+			for (int j = 0; j < satLon.length; j++) {
+				SatMathCore.getLookAngle(lat[i], lon[i], 0, satLon[j], ref);
+				refAz[i * satLon.length + j] = ref.azimuth;
+				refEl[i * satLon.length + j] = ref.elevation;
+				if (ref.elevation > 0) {
+					visible++;
+					if (ref.elevation < ZENITH_ELEVATION)
+						visibleAz++;
+				}
+			}
+		}
+		System.out.println(nSites + " sites x " + satLon.length
+				+ " satellites, " + visible + " pairs above the horizon");
+
+		for (int k = 0; k < solvers.length; k++) {
+			Score s = new Score();
+			double sumAz = 0, sumEl = 0;
+			long best = Long.MAX_VALUE;
+
+			s.name = solvers[k].name;
+			for (int i = 0; i < nSites; i++) {
+				for (int j = 0; j < satLon.length; j++) {
+					int p = i * satLon.length + j;
+					if (refEl[p] <= 0)
+						continue;
+					solvers[k].solve(lat[i], lon[i], 0, satLon[j], azEl);
+					double dAz = Math.abs(azEl[0] - refAz[p]) % 360;
+					double dEl = Math.abs(azEl[1] - refEl[p]);
+					if (dAz > 180)
+						dAz = 360 - dAz;
+					if (refEl[p] < ZENITH_ELEVATION) {
+						s.maxAz = Math.max(s.maxAz, dAz);
+						sumAz += dAz * dAz;
+					}
+					s.maxEl = Math.max(s.maxEl, dEl);
+					sumEl += dEl * dEl;
+				}
+			}
+			s.rmsAz = Math.sqrt(sumAz / visibleAz);
+			s.rmsEl = Math.sqrt(sumEl / visible);
+			if (!solvers[k].hasAz)
+				s.maxAz = s.rmsAz = Double.NaN;
+			if (!solvers[k].hasEl)
+				s.maxEl = s.rmsEl = Double.NaN;
+
+			// best of several full passes over every pair
+			for (int round = 0; round < TIMING_ROUNDS; round++) {
+				double acc = 0;
+				long t0 = System.nanoTime();
+				for (int i = 0; i < nSites; i++) {
+					for (int j = 0; j < satLon.length; j++) {
+						solvers[k].solve(lat[i], lon[i], 0, satLon[j], azEl);
+						acc += azEl[0] + azEl[1];
+					}
+				}
+				best = Math.min(best, System.nanoTime() - t0);
+				sink += acc;
+			}
+			s.nsPerOp = (double) best / (nSites * satLon.length);
+			rtnScores[k] = s;
+		}
+		return rtnScores;
+	}
+
+	/** prints the table and the cheapest solver meeting the tolerance */
+	private static void print(Score[] scores, double tolerance) {
+		Score bestAz = null, bestEl = null;
+
+		System.out.println(String.format("%-20s %12s %12s %12s %12s %9s",
+				"method", "max az", "rms az", "max el", "rms el", "ns/op"));
+		for (Score s : scores) {
+			System.out.println(String.format(
+					"%-20s %12.3e %12.3e %12.3e %12.3e %9.1f", s.name,
+					s.maxAz, s.rmsAz, s.maxEl, s.rmsEl, s.nsPerOp));
+			if (!Double.isNaN(s.maxAz) && s.maxAz <= tolerance
+					&& (bestAz == null || s.nsPerOp < bestAz.nsPerOp))
+				bestAz = s;
+			if (!Double.isNaN(s.maxEl) && s.maxEl <= tolerance
+					&& (bestEl == null || s.nsPerOp < bestEl.nsPerOp))
+				bestEl = s;
+		}
+		System.out.println("cheapest within " + tolerance + " deg: azimuth "
+				+ (bestAz == null ? "none" : bestAz.name) + ", elevation "
+				+ (bestEl == null ? "none" : bestEl.name));
+	}
+
+	private static void write(Score[] scores, String path) throws IOException {
+		Writer out = new FileWriter(path);
+		try {
+			out.write("method,maxAz,rmsAz,maxEl,rmsEl,nsPerOp\n");
+			for (Score s : scores)
+				out.write(s.name + "," + s.maxAz + "," + s.rmsAz + ","
+						+ s.maxEl + "," + s.rmsEl + "," + s.nsPerOp + "\n");
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Checks this run against a baseline result file.
+	 * 
+	 * @return false if any method got less accurate or slower than allowed
+	 */
+	private static boolean compare(Score[] scores, String path, double slack)
+			throws IOException {
+		// LOCALS
+		BufferedReader in = new BufferedReader(new FileReader(path));
+		Map<String, double[]> baseline = new HashMap<String, double[]>();
+		boolean ok = true;
+		String line;
+
+		try {
+			in.readLine();
+			while ((line = in.readLine()) != null) {
+				String[] f = line.split(",");
+				if (f.length == 6)
+					baseline.put(f[0], new double[] {
+							Double.parseDouble(f[1]), Double.parseDouble(f[3]),
+							Double.parseDouble(f[5]) });
+			}
+		} finally {
+			in.close();
+		}
+
+		for (Score s : scores) {
+			double[] b = baseline.get(s.name);
+			if (b == null)
+				continue;
+			if (s.maxAz > b[0] + ERROR_EPSILON
+					|| s.maxEl > b[1] + ERROR_EPSILON) {
+				System.out.println("REGRESSION " + s.name + ": accuracy");
+				ok = false;
+			}
+			if (s.nsPerOp > b[2] * (1 + slack)) {
+				System.out.println("REGRESSION " + s.name + ": " + s.nsPerOp
+						+ " ns/op against " + b[2]);
+				ok = false;
+			}
+		}
+		return ok;
+	}
+}
@@ -0,0 +1,96 @@
+package com.horner.LookAngle;
+
+import java.util.Random;
+
+/**
+ * Error sweep for the {@link TrigProvider} tiers. Walks every float in the
+ * primary ranges (sin/cos over one turn, tan over -pi/2..pi/2, atan over
+ * -1..1 and its reciprocal range), then a random sample out to
+ * {@link TrigProvider#REDUCTION_LIMIT}, comparing each tier against
+ * {@link Math}. The tan error is relative, the others absolute. Exits with
+ * status 1 if any documented bound is exceeded. Not part of the application
+ * build.
+ * 
+ * <pre>
+ * javac -sourcepath src -d bin/bench bench/com/horner/LookAngle/TrigErrorSweep.java
+ * java -cp bin/bench com.horner.LookAngle.TrigErrorSweep [stride]
+ * </pre>
+ * 
+ * A stride of 1 (the default) visits every float; larger strides skip
+ * through the float bit patterns for a quicker check.
+ * 
+ * @author etchorner
+ * 
+ */
+public class TrigErrorSweep {
+
+	private static final int RANDOM_SAMPLES = 20000000;
+
+	public static void main(String[] args) {
+		int stride = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+		boolean ok = true;
+
+		ok &= sweep("POLYNOMIAL", TrigProvider.POLYNOMIAL, stride);
+		ok &= sweep("TABLE", TrigProvider.TABLE, stride);
+		System.exit(ok ? 0 : 1);
+	}
+
+	private static boolean sweep(String name, TrigProvider trig, int stride) {
+		double sinErr = 0, cosErr = 0, tanErr = 0, atanErr = 0;
+		int top = Float.floatToIntBits((float) (2 * Math.PI));
+		Random rnd = new Random(42);
+
+		// every float in 0..2pi, both signs
+		for (int bits = 0; bits <= top; bits += stride) {
+			double x = Float.intBitsToFloat(bits);
+			sinErr = Math.max(sinErr, Math.abs(trig.sin(x) - Math.sin(x)));
+			sinErr = Math.max(sinErr, Math.abs(trig.sin(-x) - Math.sin(-x)));
+			cosErr = Math.max(cosErr, Math.abs(trig.cos(x) - Math.cos(x)));
+			cosErr = Math.max(cosErr, Math.abs(trig.cos(-x) - Math.cos(-x)));
+		}
+
+		// every float in 0..pi/2, both signs, short of the pole
+		top = Float.floatToIntBits((float) (Math.PI / 2));
+		for (int bits = 0; bits <= top; bits += stride) {
+			double x = Float.intBitsToFloat(bits);
+			if (x >= Math.PI / 2)
+				break;
+			tanErr = Math.max(tanErr, relativeError(trig.tan(x), Math.tan(x)));
+			tanErr = Math.max(tanErr, relativeError(trig.tan(-x), Math
+					.tan(-x)));
+		}
+
+		// every float in 0..1 and, through 1/x, the range above 1
+		top = Float.floatToIntBits(1f);
+		for (int bits = 0; bits <= top; bits += stride) {
+			double x = Float.intBitsToFloat(bits);
+			double y = 1 / x;
+			atanErr = Math.max(atanErr, Math.abs(trig.atan(x) - Math.atan(x)));
+			atanErr = Math.max(atanErr, Math.abs(trig.atan(-x)
+					- Math.atan(-x)));
+			atanErr = Math.max(atanErr, Math.abs(trig.atan(y) - Math.atan(y)));
+		}
+
+		// random arguments out to the reduction limit
+		for (int i = 0; i < RANDOM_SAMPLES; i++) {
+			double x = (rnd.nextDouble() * 2 - 1)
+					* TrigProvider.REDUCTION_LIMIT;
+			sinErr = Math.max(sinErr, Math.abs(trig.sin(x) - Math.sin(x)));
+			cosErr = Math.max(cosErr, Math.abs(trig.cos(x) - Math.cos(x)));
+		}
+
+		System.out.println(name + ": sin " + sinErr + ", cos " + cosErr
+				+ ", atan " + atanErr + " (bound " + trig.getMaxError()
+				+ "), tan " + tanErr + " relative (bound "
+				+ trig.getMaxTanError() + ")");
+		return sinErr <= trig.getMaxError() && cosErr <= trig.getMaxError()
+				&& atanErr <= trig.getMaxError()
+				&& tanErr <= trig.getMaxTanError();
+	}
+
+	/** relative error of a result, absolute where the exact one is 0 */
+	private static double relativeError(double value, double exact) {
+		double err = Math.abs(value - exact);
+		return exact == 0 ? err : err / Math.abs(exact);
+	}
+}
@@ -0,0 +1,402 @@
+package com.horner.LookAngle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Assigns the dishes of an antenna farm to geostationary satellites, at most
+ * one dish per satellite. A dish can only be given a satellite it can point
+ * at:
+ * <ul>
+ * <li>at or above its elevation mask,</li>
+ * <li>at or below its keyhole limit, the highest elevation its mount can
+ * track,</li>
+ * <li>clear of its obstruction horizon, if one is set.</li>
+ * </ul>
+ * As many dishes as possible are assigned, and among the plans that do so
+ * the one with the highest total elevation (the least atmosphere in the
+ * path) is chosen.
+ * 
+ * The site by satellite look angle matrix is computed first, in chunks of
+ * dishes on the supplied {@link ExecutorService} as in
+ * {@link VisibilityScanner}, with a {@link LookAngleKernel} per chunk. Dishes
+ * and satellites without a single feasible pair are then dropped, and the
+ * assignment is solved exactly by the Hungarian method in its shortest
+ * augmenting path form, O(n^2 m) for n dishes and m satellites; each
+ * augmentation depends on the one before, so this step runs on the calling
+ * thread.
+ * 
+ * Not thread-safe: limits should not be changed while a plan is running.
+ * 
+ * @author etchorner
+ * 
+ */
+public class AntennaFarmPlanner {
+
+	// CONSTANTS
+	/** farms smaller than this always build their matrix sequentially */
+	static final int SEQUENTIAL_THRESHOLD = 64;
+	/** returned for a dish that could not be given a satellite */
+	public static final int UNASSIGNED = -1;
+	/** cost of a pair the dish cannot point at; exceeds any feasible plan */
+	private static final double INFEASIBLE = 1e9;
+
+	// END CONSTANTS
+
+	// ATTRIBUTES
+	/** geodetic latitudes of the dishes (decimal degrees) */
+	private final double[] mLat;
+	/** geodetic longitudes of the dishes (decimal degrees) */
+	private final double[] mLon;
+	/** altitudes of the dishes (meters) */
+	private final double[] mAlt;
+	/** elevation masks of the dishes (decimal degrees) */
+	private final double[] mMinElevation;
+	/** keyhole limits of the dishes (decimal degrees) */
+	private final double[] mMaxElevation;
+	/** obstruction horizons of the dishes, null where there is none */
+	private final double[][] mHorizon;
+	/** pool for the matrix, null to always build it sequentially */
+	private final ExecutorService mExecutor;
+	/** number of chunks the matrix is split into */
+	private final int mChunks;
+
+	// END ATTRIBUTES
+
+	/**
+	 * Creates a planner that runs on the calling thread.
+	 * 
+	 * @param siteLat
+	 *            geodetic latitudes of the dishes (decimal degrees)
+	 * @param siteLon
+	 *            geodetic longitudes of the dishes (decimal degrees)
+	 * @param siteAlt
+	 *            altitudes of the dishes (meters)
+	 */
+	public AntennaFarmPlanner(double[] siteLat, double[] siteLon,
+			double[] siteAlt) {
+		this(siteLat, siteLon, siteAlt, null, 1);
+	}
+
+	/**
+	 * Creates a planner that splits the look angle matrix of large farms
+	 * across an executor. Every dish starts with an elevation mask of 0, no
+	 * keyhole and no obstructions.
+	 * 
+	 * @param siteLat
+	 *            geodetic latitudes of the dishes (decimal degrees)
+	 * @param siteLon
+	 *            geodetic longitudes of the dishes (decimal degrees)
+	 * @param siteAlt
+	 *            altitudes of the dishes (meters)
+	 * @param executor
+	 *            the {@link ExecutorService} running the chunks; it is not
+	 *            shut down by the planner
+	 * @param parallelism
+	 *            number of chunks to split a large farm into, usually the
+	 *            executor's thread count
+	 */
+	public AntennaFarmPlanner(double[] siteLat, double[] siteLon,
+			double[] siteAlt, ExecutorService executor, int parallelism) {
+		if (siteLon.length != siteLat.length
+				|| siteAlt.length != siteLat.length)
+			throw new IllegalArgumentException("site arrays differ in length");
+
+		mLat = siteLat;
+		mLon = siteLon;
+		mAlt = siteAlt;
+		mMinElevation = new double[siteLat.length];
+		mMaxElevation = new double[siteLat.length];
+		mHorizon = new double[siteLat.length][];
+		mExecutor = executor;
+		mChunks = Math.max(1, parallelism);
+		for (int i = 0; i < siteLat.length; i++)
+			mMaxElevation[i] = 90;
+	}
+
+	/**
+	 * Sets the elevations a dish can point between.
+	 * 
+	 * @param dish
+	 *            index of the dish
+	 * @param min
+	 *            elevation mask (decimal degrees)
+	 * @param max
+	 *            keyhole limit (decimal degrees), 90 for none
+	 */
+	public void setElevationLimits(int dish, double min, double max) {
+		mMinElevation[dish] = min;
+		mMaxElevation[dish] = max;
+	}
+
+	/**
+	 * Sets the obstruction horizon of a dish: the lowest clear elevation in
+	 * each of a number of equal azimuth sectors, the first sector starting at
+	 * true north and the rest following clockwise.
+	 * 
+	 * @param dish
+	 *            index of the dish
+	 * @param horizon
+	 *            lowest clear elevation per sector (decimal degrees), or null
+	 *            to clear the obstructions; the array is not copied
+	 */
+	public void setHorizon(int dish, double[] horizon) {
+		if (horizon != null && horizon.length == 0)
+			throw new IllegalArgumentException("horizon without sectors");
+		mHorizon[dish] = horizon;
+	}
+
+	/**
+	 * Plans the farm against a set of satellites. A satellite that must be
+	 * served by more than one dish can be listed more than once.
+	 * 
+	 * @param satLon
+	 *            longitudes of the satellites (decimal degrees)
+	 * @param outElevation
+	 *            receives the elevation of every dish/satellite pair, dish
+	 *            major as in
+	 *            {@link SatMathCore#getLookAngles(double[], double[], double[], double[], double[], double[], double[])
+	 *            getLookAngles()}; may be null if not needed
+	 * @return index in <code>satLon</code> of the satellite given to each
+	 *         dish, or {@link #UNASSIGNED}
+	 */
+	public int[] plan(double[] satLon, double[] outElevation) {
+		// LOCALS
+		int nDishes = mLat.length;
+		int nSats = satLon.length;
+		double[] cost = new double[nDishes * nSats];
+		double[] elevation = outElevation;
+		int[] dishes = new int[nDishes];
+		int[] sats = new int[nSats];
+		int nRows = 0, nCols = 0;
+		int[] rtnAssignment = new int[nDishes];
+
+		if (elevation == null)
+			elevation = new double[nDishes * nSats];
+		else if (elevation.length < nDishes * nSats)
+			throw new IllegalArgumentException("elevation array shorter than "
+					+ nDishes * nSats + " dish/satellite pairs");
+
+		if (mExecutor == null || mChunks == 1
+				|| nDishes < SEQUENTIAL_THRESHOLD)
+			evaluate(satLon, 0, nDishes, cost, elevation);
+		else
+			evaluateParallel(satLon, cost, elevation);
+
+		// only dishes and satellites with some feasible pair take part
+		for (int i = 0; i < nDishes; i++) {
+			rtnAssignment[i] = UNASSIGNED;
+			for (int j = 0; j < nSats; j++) {
+				if (cost[i * nSats + j] < INFEASIBLE) {
+					dishes[nRows++] = i;
+					break;
+				}
+			}
+		}
+		for (int j = 0; j < nSats; j++) {
+			for (int i = 0; i < nDishes; i++) {
+				if (cost[i * nSats + j] < INFEASIBLE) {
+					sats[nCols++] = j;
+					break;
+				}
+			}
+		}
+		if (nRows == 0)
+			return rtnAssignment;
+
+		if (nRows <= nCols) {
+			int[] satOf = solve(compact(cost, nSats, dishes, nRows, sats,
+					nCols, false), nRows, nCols);
+			for (int r = 0; r < nRows; r++) {
+				if (satOf[r] != UNASSIGNED)
+					rtnAssignment[dishes[r]] = sats[satOf[r]];
+			}
+		} else {
+			// more dishes than satellites: satellites choose dishes instead
+			int[] dishOf = solve(compact(cost, nSats, dishes, nRows, sats,
+					nCols, true), nCols, nRows);
+			for (int c = 0; c < nCols; c++) {
+				if (dishOf[c] != UNASSIGNED)
+					rtnAssignment[dishes[dishOf[c]]] = sats[c];
+			}
+		}
+		return rtnAssignment;
+	}
+
+	/**
+	 * Computes the look angles and pair costs for a range of dishes.
+	 */
+	private void evaluate(double[] satLon, int from, int to, double[] cost,
+			double[] elevation) {
+		int nSats = satLon.length;
+		SiteFrame frame = new SiteFrame();
+		LookAngleKernel kernel = new LookAngleKernel(satLon);
+		double[] azimuth = new double[nSats];
+		double[] el = new double[nSats];
+
+		for (int i = from; i < to; i++) {
+			double min = mMinElevation[i], max = mMaxElevation[i];
+			double[] horizon = mHorizon[i];
+			int offset = i * nSats;
+
+			frame.set(mLat[i], mLon[i], mAlt[i]);
+			kernel.evaluate(frame, azimuth, el, null, 0);
+			for (int j = 0; j < nSats; j++) {
+				boolean clear = el[j] >= min && el[j] <= max;
+				if (clear && horizon != null) {
+					int sector = (int) (azimuth[j] / 360 * horizon.length);
+					clear = el[j] >= horizon[Math.min(Math.max(sector, 0),
+							horizon.length - 1)];
+				}
+				elevation[offset + j] = el[j];
+				cost[offset + j] = clear ? -el[j] : INFEASIBLE;
+			}
+		}
+	}
+
+	/**
+	 * Splits the farm into {@link #mChunks} ranges of dishes and evaluates
+	 * them on the executor, the last range on the calling thread.
+	 */
+	private void evaluateParallel(final double[] satLon, final double[] cost,
+			final double[] elevation) {
+		int count = mLat.length;
+		int chunk = (count + mChunks - 1) / mChunks;
+		List<Future<Void>> pending = new ArrayList<Future<Void>>(mChunks);
+		int from = 0;
+
+		for (; from + chunk < count; from += chunk) {
+			final int start = from;
+			final int end = from + chunk;
+			pending.add(mExecutor.submit(new Callable<Void>() {
+				public Void call() {
+					evaluate(satLon, start, end, cost, elevation);
+					return null;
+				}
+			}));
+		}
+		evaluate(satLon, from, count, cost, elevation);
+
+		try {
+			for (Future<Void> f : pending) {
+				f.get();
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("farm plan interrupted", ie);
+		} catch (ExecutionException ee) {
+			throw new IllegalStateException("farm plan failed", ee.getCause());
+		}
+	}
+
+	/**
+	 * Copies the cost of the selected dishes and satellites into a dense
+	 * matrix, with the satellites as rows if <code>transpose</code> is set.
+	 */
+	private static double[] compact(double[] cost, int stride, int[] dishes,
+			int nDishes, int[] sats, int nSats, boolean transpose) {
+		double[] rtnCost = new double[nDishes * nSats];
+
+		for (int r = 0; r < nDishes; r++) {
+			int offset = dishes[r] * stride;
+			for (int c = 0; c < nSats; c++) {
+				if (transpose)
+					rtnCost[c * nDishes + r] = cost[offset + sats[c]];
+				else
+					rtnCost[r * nSats + c] = cost[offset + sats[c]];
+			}
+		}
+		return rtnCost;
+	}
+
+	/**
+	 * Hungarian method, shortest augmenting path form, for a rectangular
+	 * problem with no more rows than columns. Rows are added one at a time;
+	 * each finds the cheapest augmenting path to a free column under the
+	 * reduced costs of the dual potentials, which are then updated so that
+	 * every reduced cost stays non-negative.
+	 * 
+	 * @param cost
+	 *            row major cost matrix
+	 * @param rows
+	 *            number of rows
+	 * @param cols
+	 *            number of columns, at least <code>rows</code>
+	 * @return the column given to each row, or {@link #UNASSIGNED} if only an
+	 *         infeasible one was left
+	 */
+	private static int[] solve(double[] cost, int rows, int cols) {
+		// LOCALS
+		/** row and column potentials; index 0 is the virtual start */
+		double[] u = new double[rows + 1];
+		double[] v = new double[cols + 1];
+		/** row holding each column, 0 if free */
+		int[] rowOf = new int[cols + 1];
+		/** previous column on the shortest path to each column */
+		int[] way = new int[cols + 1];
+		double[] minReduced = new double[cols + 1];
+		boolean[] used = new boolean[cols + 1];
+		int[] rtnColumn = new int[rows];
+
+		for (int i = 1; i <= rows; i++) {
+			int col = 0;
+
+			rowOf[0] = i;
+			for (int j = 0; j <= cols; j++) {
+				minReduced[j] = Double.POSITIVE_INFINITY;
+				used[j] = false;
+			}
+			do {
+				int row = rowOf[col];
+				int offset = (row - 1) * cols - 1;
+				int next = 0;
+				double delta = Double.POSITIVE_INFINITY;
+				double ur = u[row];
+
+				used[col] = true;
+				for (int j = 1; j <= cols; j++) {
+					if (used[j])
+						continue;
+					double reduced = cost[offset + j] - ur - v[j];
+					if (reduced < minReduced[j]) {
+						minReduced[j] = reduced;
+						way[j] = col;
+					}
+					if (minReduced[j] < delta) {
+						delta = minReduced[j];
+						next = j;
+					}
+				}
+				for (int j = 0; j <= cols; j++) {
+					if (used[j]) {
+						u[rowOf[j]] += delta;
+						v[j] -= delta;
+					} else {
+						minReduced[j] -= delta;
+					}
+				}
+				col = next;
+			} while (rowOf[col] != 0);
+
+			// flip the augmenting path
+			do {
+				int prev = way[col];
+				rowOf[col] = rowOf[prev];
+				col = prev;
+			} while (col != 0);
+		}
+
+		for (int i = 0; i < rows; i++)
+			rtnColumn[i] = UNASSIGNED;
+		for (int j = 1; j <= cols; j++) {
+			int row = rowOf[j];
+			if (row != 0 && cost[(row - 1) * cols + j - 1] < INFEASIBLE)
+				rtnColumn[row - 1] = j - 1;
+		}
+		return rtnColumn;
+	}
+}
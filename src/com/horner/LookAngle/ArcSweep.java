@@ -0,0 +1,177 @@
+package com.horner.LookAngle;
+
+/**
+ * The visible part of the geostationary (Clarke) belt as seen from one antenna
+ * site: azimuth, elevation and skew sampled at a fixed step of orbital
+ * longitude, plus the exact longitudes where the arc crosses the elevation
+ * mask.
+ * 
+ * Samples are generated by rotating the satellite's cartesian position about
+ * the polar axis by a fixed angle each step, so a sample costs one 2x2
+ * rotation and the {@link SiteFrame} projection instead of fresh trig for the
+ * satellite position. The rotation is re-seeded from exact trig every
+ * {@link #RESEED_INTERVAL} steps to keep rounding drift well below the
+ * resolution of the sweep. Skew is the {@link SatMathCore#getSkew(double, double, double)
+ * getSkew()} formula evaluated from the rotated sine/cosine.
+ * 
+ * @author etchorner
+ * 
+ */
+public final class ArcSweep {
+
+	// CONSTANTS
+	/** steps between exact re-seeds of the rotation recurrence */
+	static final int RESEED_INTERVAL = 500;
+	/** half width of the swept arc around the site meridian (degrees) */
+	private static final int HALF_ARC = 90;
+	/** tolerance of the mask crossing bisection (degrees) */
+	private static final double CROSSING_TOLERANCE = 1e-9;
+
+	// END CONSTANTS
+
+	// ATTRIBUTES
+	/** satellite longitude of each sample (decimal degrees, -180..180) */
+	public final double[] longitude;
+	/** azimuth of each sample (decimal degrees) */
+	public final double[] azimuth;
+	/** elevation of each sample (decimal degrees) */
+	public final double[] elevation;
+	/** skew of each sample (decimal degrees, positive is CW) */
+	public final double[] skew;
+	/** western end of the visible arc, where it rises above the mask */
+	public final double westLimit;
+	/** eastern end of the visible arc, where it drops below the mask */
+	public final double eastLimit;
+
+	// END ATTRIBUTES
+
+	private ArcSweep(int count, double westLimit, double eastLimit) {
+		this.longitude = new double[count];
+		this.azimuth = new double[count];
+		this.elevation = new double[count];
+		this.skew = new double[count];
+		this.westLimit = westLimit;
+		this.eastLimit = eastLimit;
+	}
+
+	/** @return the number of samples on the visible arc */
+	public int size() {
+		return longitude.length;
+	}
+
+	/**
+	 * Sweeps the geostationary belt from an antenna site.
+	 * 
+	 * @param lat
+	 *            geodetic latitude of the antenna site (decimal degrees)
+	 * @param lon
+	 *            geodetic longitude of the antenna site (decimal degrees)
+	 * @param alt
+	 *            altitude of the antenna site (meters)
+	 * @param stepHundredths
+	 *            sampling step in hundredths of a degree of orbital longitude
+	 * @param elevationMask
+	 *            minimum elevation of the visible arc (decimal degrees)
+	 * @return the visible arc; empty, with NaN limits, if no part of the belt
+	 *         clears the mask
+	 */
+	public static ArcSweep sweep(double lat, double lon, double alt,
+			int stepHundredths, double elevationMask) {
+		// LOCALS
+		SiteFrame frame = new SiteFrame(lat, lon, alt);
+		LookAngleResult result = new LookAngleResult();
+		int steps;
+		double stepDeg = stepHundredths / 100d;
+		double start = lon - HALF_ARC;
+		double sinD = Math.sin(Math.toRadians(stepDeg));
+		double cosD = Math.cos(Math.toRadians(stepDeg));
+		double sinSite = Math.sin(Math.toRadians(lon));
+		double cosSite = Math.cos(Math.toRadians(lon));
+		double tanLat = Math.tan(Math.toRadians(lat));
+		/** unit vector of the satellite (cos, sin of its longitude) */
+		double c = 0, s = 0;
+		/** scratch for every sample, trimmed to the visible arc at the end */
+		double[] az, el, sk;
+		int first = -1, last = -1;
+		ArcSweep rtnSweep;
+
+		if (stepHundredths <= 0)
+			throw new IllegalArgumentException("step must be positive");
+
+		steps = HALF_ARC * 2 * 100 / stepHundredths;
+		az = new double[steps + 1];
+		el = new double[steps + 1];
+		sk = new double[steps + 1];
+
+		for (int k = 0; k <= steps; k++) {
+			if (k % RESEED_INTERVAL == 0) {
+				double satLon = Math.toRadians(start + k * stepDeg);
+				c = Math.cos(satLon);
+				s = Math.sin(satLon);
+			} else {
+				double cn = c * cosD - s * sinD;
+				s = c * sinD + s * cosD;
+				c = cn;
+			}
+
+			frame.getLookAngle(SatMathCore.GEO_RADIUS * c,
+					SatMathCore.GEO_RADIUS * s, 0, result);
+			az[k] = result.azimuth;
+			el[k] = result.elevation;
+			// sin(siteLon - satLon) from the rotated unit vector
+			sk[k] = Math.toDegrees(Math.atan((sinSite * c - cosSite * s)
+					/ tanLat));
+
+			if (el[k] >= elevationMask) {
+				if (first < 0)
+					first = k;
+				last = k;
+			}
+		}
+
+		if (first < 0)
+			return new ArcSweep(0, Double.NaN, Double.NaN);
+
+		rtnSweep = new ArcSweep(last - first + 1, first > 0 ? crossing(frame,
+				result, start + (first - 1) * stepDeg, start + first * stepDeg,
+				elevationMask) : normalize(start + first * stepDeg),
+				last < steps ? crossing(frame, result, start + last * stepDeg,
+						start + (last + 1) * stepDeg, elevationMask)
+						: normalize(start + last * stepDeg));
+		for (int k = first; k <= last; k++) {
+			rtnSweep.longitude[k - first] = normalize(start + k * stepDeg);
+		}
+		System.arraycopy(az, first, rtnSweep.azimuth, 0, rtnSweep.size());
+		System.arraycopy(el, first, rtnSweep.elevation, 0, rtnSweep.size());
+		System.arraycopy(sk, first, rtnSweep.skew, 0, rtnSweep.size());
+		return rtnSweep;
+	}
+
+	/**
+	 * Bisects for the longitude between two samples where the elevation
+	 * equals the mask, using the exact look angle.
+	 */
+	private static double crossing(SiteFrame frame, LookAngleResult result,
+			double lo, double hi, double elevationMask) {
+		boolean loAbove = frame.getLookAngle(lo, result).elevation >= elevationMask;
+
+		while (hi - lo > CROSSING_TOLERANCE) {
+			double mid = 0.5 * (lo + hi);
+			boolean midAbove = frame.getLookAngle(mid, result).elevation >= elevationMask;
+			if (midAbove == loAbove)
+				lo = mid;
+			else
+				hi = mid;
+		}
+		return normalize(0.5 * (lo + hi));
+	}
+
+	/** wraps a longitude into -180..180 degrees */
+	private static double normalize(double lon) {
+		if (lon >= 180)
+			return lon - 360;
+		if (lon < -180)
+			return lon + 360;
+		return lon;
+	}
+}
@@ -0,0 +1,429 @@
+package com.horner.LookAngle;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point and degrees, minutes, seconds formatting of coordinates into
+ * caller-owned buffers. It replaces the DecimalFormat and NumberFormat
+ * instances that the UTM conversion and the look angle display used to
+ * keep: those are not thread-safe, and they build several Strings per call.
+ * 
+ * Every method is static and keeps no state, so any number of threads can
+ * format at once. Output goes into a char[] or is appended to a
+ * StringBuilder, and nothing is allocated except in the rare cases noted
+ * below.
+ * 
+ * Fixed-point output is the same as a DecimalFormat with that many fraction
+ * digits, at least that many integer digits, no grouping and the default
+ * HALF_EVEN rounding. As in DecimalFormat, a tie is broken by the exact
+ * binary value: 1.005 is really a little less, so it prints as 1.00. Values
+ * within a few units in the last place of a tie, and values too large to
+ * scale exactly, are rounded through {@link BigDecimal}; those are the only
+ * cases that allocate.
+ * 
+ * @author etchorner
+ * 
+ */
+public final class CoordinateFormat {
+
+	// CONSTANTS
+	/** most fraction digits of fixed-point output, and of DMS seconds */
+	public static final int MAX_DECIMALS = 9;
+	/** the degree sign */
+	public static final char DEGREE = '\u00b0';
+
+	/** below this, a scaled value and its integer part are exact doubles */
+	private static final double EXACT_LIMIT = 1e15;
+	private static final long[] POW10 = { 1L, 10L, 100L, 1000L, 10000L,
+			100000L, 1000000L, 10000000L, 100000000L, 1000000000L };
+	private static final String NAN = "NaN";
+	private static final char INFINITY = '\u221e';
+
+	// END CONSTANTS
+
+	private CoordinateFormat() {
+	}
+
+	/**
+	 * Writes a number with a fixed number of fraction digits.
+	 * 
+	 * @param value
+	 *            the number
+	 * @param decimals
+	 *            fraction digits, 0 to {@link #MAX_DECIMALS}
+	 * @param minDigits
+	 *            integer digits to pad to with leading zeros, at least 1
+	 * @param out
+	 *            receives the text
+	 * @param offset
+	 *            index in out of the first character
+	 * @return the number of characters written
+	 * @throws IllegalArgumentException
+	 *             if decimals or minDigits is out of range or out is too
+	 *             short
+	 */
+	public static int formatFixed(double value, int decimals, int minDigits,
+			char[] out, int offset) {
+		// LOCALS
+		boolean negative = isNegative(value);
+		double abs = Math.abs(value);
+		int pos = offset;
+		long scaled;
+
+		checkDigits(decimals, minDigits);
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			return formatSpecial(value, out, offset);
+		scaled = roundScaled(abs, decimals);
+		if (scaled < 0)
+			return formatLarge(value, decimals, minDigits, out, offset);
+
+		if (offset < 0 || out.length - offset < length(negative, scaled,
+				decimals, minDigits))
+			throw new IllegalArgumentException("buffer too short");
+		if (negative)
+			out[pos++] = '-';
+		pos = writeDigits(scaled / POW10[decimals], minDigits, out, pos);
+		if (decimals > 0) {
+			out[pos++] = '.';
+			pos = writeDigits(scaled % POW10[decimals], decimals, out, pos);
+		}
+		return pos - offset;
+	}
+
+	/**
+	 * {@link #formatFixed(double, int, int, char[], int) formatFixed()} with
+	 * no integer padding.
+	 * 
+	 * @param value
+	 *            the number
+	 * @param decimals
+	 *            fraction digits, 0 to {@link #MAX_DECIMALS}
+	 * @param out
+	 *            receives the text
+	 * @param offset
+	 *            index in out of the first character
+	 * @return the number of characters written
+	 */
+	public static int formatFixed(double value, int decimals, char[] out,
+			int offset) {
+		return formatFixed(value, decimals, 1, out, offset);
+	}
+
+	/**
+	 * {@link #formatFixed(double, int, int, char[], int) formatFixed()}
+	 * appending to a StringBuilder.
+	 * 
+	 * @param value
+	 *            the number
+	 * @param decimals
+	 *            fraction digits, 0 to {@link #MAX_DECIMALS}
+	 * @param minDigits
+	 *            integer digits to pad to with leading zeros, at least 1
+	 * @param out
+	 *            the text is appended to this
+	 * @return out (self reference, for chaining)
+	 */
+	public static StringBuilder appendFixed(double value, int decimals,
+			int minDigits, StringBuilder out) {
+		// LOCALS
+		boolean negative = isNegative(value);
+		long scaled;
+
+		checkDigits(decimals, minDigits);
+		if (Double.isNaN(value))
+			return out.append(NAN);
+		if (Double.isInfinite(value))
+			return out.append(negative ? "-" : "").append(INFINITY);
+		scaled = roundScaled(Math.abs(value), decimals);
+		if (scaled < 0)
+			return out.append(large(value, decimals, minDigits));
+
+		if (negative)
+			out.append('-');
+		appendDigits(scaled / POW10[decimals], minDigits, out);
+		if (decimals > 0) {
+			out.append('.');
+			appendDigits(scaled % POW10[decimals], decimals, out);
+		}
+		return out;
+	}
+
+	/**
+	 * {@link #appendFixed(double, int, int, StringBuilder) appendFixed()}
+	 * with no integer padding.
+	 * 
+	 * @param value
+	 *            the number
+	 * @param decimals
+	 *            fraction digits, 0 to {@link #MAX_DECIMALS}
+	 * @param out
+	 *            the text is appended to this
+	 * @return out (self reference, for chaining)
+	 */
+	public static StringBuilder appendFixed(double value, int decimals,
+			StringBuilder out) {
+		return appendFixed(value, decimals, 1, out);
+	}
+
+	/**
+	 * Writes an angle as degrees, minutes and seconds in the layout of
+	 * <code>Location.convert(value, Location.FORMAT_SECONDS)</code>:
+	 * "D:M:S.sss", with the seconds rounded to at most the given number of
+	 * fraction digits and trailing zeros dropped. Unlike Location.convert,
+	 * seconds that round up to 60 carry into the minutes, and minutes into
+	 * the degrees.
+	 * 
+	 * @param value
+	 *            the angle (decimal degrees)
+	 * @param secondDecimals
+	 *            most fraction digits of the seconds, 0 to
+	 *            {@link #MAX_DECIMALS}
+	 * @param out
+	 *            receives the text
+	 * @param offset
+	 *            index in out of the first character
+	 * @return the number of characters written
+	 * @throws IllegalArgumentException
+	 *             if the angle is not finite or too large to scale exactly,
+	 *             secondDecimals is out of range or out is too short
+	 */
+	public static int formatDms(double value, int secondDecimals,
+			char[] out, int offset) {
+		// LOCALS
+		long scale, units, seconds, fraction;
+		int decimals = secondDecimals;
+		int pos = offset;
+		boolean negative;
+
+		units = roundDms(value, secondDecimals);
+		negative = value < 0 && units > 0;
+		scale = POW10[secondDecimals];
+		seconds = units / scale % 3600;
+		fraction = units % scale;
+		while (decimals > 0 && fraction % 10 == 0) {
+			fraction /= 10;
+			decimals--;
+		}
+
+		if (offset < 0 || out.length - offset < (negative ? 1 : 0)
+				+ countDigits(units / scale / 3600) + 6
+				+ (decimals > 0 ? decimals + 1 : 0))
+			throw new IllegalArgumentException("buffer too short");
+		if (negative)
+			out[pos++] = '-';
+		pos = writeDigits(units / scale / 3600, 1, out, pos);
+		out[pos++] = ':';
+		pos = writeDigits(seconds / 60, 1, out, pos);
+		out[pos++] = ':';
+		pos = writeDigits(seconds % 60, 1, out, pos);
+		if (decimals > 0) {
+			out[pos++] = '.';
+			pos = writeDigits(fraction, decimals, out, pos);
+		}
+		return pos - offset;
+	}
+
+	/**
+	 * {@link #formatDms(double, int, char[], int) formatDms()} appending to a
+	 * StringBuilder.
+	 * 
+	 * @param value
+	 *            the angle (decimal degrees)
+	 * @param secondDecimals
+	 *            most fraction digits of the seconds, 0 to
+	 *            {@link #MAX_DECIMALS}
+	 * @param out
+	 *            the text is appended to this
+	 * @return out (self reference, for chaining)
+	 */
+	public static StringBuilder appendDms(double value, int secondDecimals,
+			StringBuilder out) {
+		// LOCALS
+		long scale, units, seconds, fraction;
+		int decimals = secondDecimals;
+		boolean negative;
+
+		units = roundDms(value, secondDecimals);
+		negative = value < 0 && units > 0;
+		scale = POW10[secondDecimals];
+		seconds = units / scale % 3600;
+		fraction = units % scale;
+		while (decimals > 0 && fraction % 10 == 0) {
+			fraction /= 10;
+			decimals--;
+		}
+
+		if (negative)
+			out.append('-');
+		appendDigits(units / scale / 3600, 1, out);
+		out.append(':');
+		appendDigits(seconds / 60, 1, out);
+		out.append(':');
+		appendDigits(seconds % 60, 1, out);
+		if (decimals > 0) {
+			out.append('.');
+			appendDigits(fraction, decimals, out);
+		}
+		return out;
+	}
+
+	/**
+	 * Rounds |value| * 10^decimals to an integer, half to even on the exact
+	 * binary value.
+	 * 
+	 * @return the rounded value, or -1 if it is too large to hold exactly
+	 */
+	private static long roundScaled(double abs, int decimals) {
+		// LOCALS
+		double p = abs * POW10[decimals];
+		double floor, diff;
+
+		if (!(p < EXACT_LIMIT))
+			return -1;
+		floor = Math.floor(p);
+		diff = p - floor;
+		// the product is off by at most half an ulp, so only values this
+		// close to a tie can round differently from the exact value
+		if (Math.abs(diff - 0.5) <= Math.ulp(p))
+			return new BigDecimal(abs).setScale(decimals,
+					RoundingMode.HALF_EVEN).unscaledValue().longValue();
+		return (long) floor + (diff > 0.5 ? 1 : 0);
+	}
+
+	/**
+	 * @return |value| in units of 10^-secondDecimals arc seconds
+	 */
+	private static long roundDms(double value, int secondDecimals) {
+		// LOCALS
+		double units;
+
+		checkDigits(secondDecimals, 1);
+		units = Math.rint(Math.abs(value) * 3600 * POW10[secondDecimals]);
+		if (!(units < EXACT_LIMIT))
+			throw new IllegalArgumentException("angle out of range: " + value);
+		return (long) units;
+	}
+
+	/** @return true if the sign bit is set, as DecimalFormat prints it */
+	private static boolean isNegative(double value) {
+		return !Double.isNaN(value) && Double.doubleToRawLongBits(value) < 0;
+	}
+
+	private static void checkDigits(int decimals, int minDigits) {
+		if (decimals < 0 || decimals > MAX_DECIMALS)
+			throw new IllegalArgumentException("decimals out of range: "
+					+ decimals);
+		if (minDigits < 1)
+			throw new IllegalArgumentException("minDigits out of range: "
+					+ minDigits);
+	}
+
+	/** @return the length of a fixed-point number */
+	private static int length(boolean negative, long scaled, int decimals,
+			int minDigits) {
+		return (negative ? 1 : 0)
+				+ Math.max(countDigits(scaled / POW10[decimals]), minDigits)
+				+ (decimals > 0 ? decimals + 1 : 0);
+	}
+
+	private static int countDigits(long value) {
+		// LOCALS
+		int rtnDigits = 1;
+
+		while (value >= 10) {
+			value /= 10;
+			rtnDigits++;
+		}
+		return rtnDigits;
+	}
+
+	/**
+	 * Writes a non-negative value with leading zeros to at least count
+	 * digits.
+	 * 
+	 * @return the index after the last digit
+	 */
+	private static int writeDigits(long value, int count, char[] out, int pos) {
+		// LOCALS
+		int end = pos + Math.max(countDigits(value), count);
+
+		for (int i = end - 1; i >= pos; i--) {
+			out[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return end;
+	}
+
+	/** appends a non-negative value with leading zeros to count digits */
+	private static void appendDigits(long value, int count, StringBuilder out) {
+		// LOCALS
+		int digits = countDigits(value);
+		long divisor = 1;
+
+		for (int i = digits; i < count; i++)
+			out.append('0');
+		for (int i = 1; i < digits; i++)
+			divisor *= 10;
+		for (; divisor > 0; divisor /= 10)
+			out.append((char) ('0' + value / divisor % 10));
+	}
+
+	/** writes NaN or a signed infinity as DecimalFormat does */
+	private static int formatSpecial(double value, char[] out, int offset) {
+		// LOCALS
+		int pos = offset;
+
+		if (Double.isNaN(value)) {
+			if (offset < 0 || out.length - offset < NAN.length())
+				throw new IllegalArgumentException("buffer too short");
+			NAN.getChars(0, NAN.length(), out, offset);
+			return NAN.length();
+		}
+		if (offset < 0 || out.length - offset < 2)
+			throw new IllegalArgumentException("buffer too short");
+		if (value < 0)
+			out[pos++] = '-';
+		out[pos++] = INFINITY;
+		return pos - offset;
+	}
+
+	/** formats a value too large to scale exactly */
+	private static int formatLarge(double value, int decimals,
+			int minDigits, char[] out, int offset) {
+		// LOCALS
+		String text = large(value, decimals, minDigits);
+
+		if (offset < 0 || out.length - offset < text.length())
+			throw new IllegalArgumentException("buffer too short");
+		text.getChars(0, text.length(), out, offset);
+		return text.length();
+	}
+
+	/**
+	 * @return a value too large to scale exactly, through BigDecimal: like
+	 *         DecimalFormat, rounds the shortest decimal form of the value,
+	 *         unless that is a tie, which the exact binary value breaks
+	 */
+	private static String large(double value, int decimals, int minDigits) {
+		// LOCALS
+		double abs = Math.abs(value);
+		BigDecimal shortest = BigDecimal.valueOf(abs);
+		BigDecimal rounded = shortest.setScale(decimals,
+				RoundingMode.HALF_EVEN);
+		StringBuilder rtnText;
+		int digits;
+
+		if (shortest.setScale(decimals, RoundingMode.HALF_UP).compareTo(
+				shortest.setScale(decimals, RoundingMode.HALF_DOWN)) != 0)
+			rounded = new BigDecimal(abs).setScale(decimals,
+					RoundingMode.HALF_EVEN);
+		rtnText = new StringBuilder(rounded.toPlainString());
+		digits = decimals > 0 ? rtnText.indexOf(".") : rtnText.length();
+		for (int i = digits; i < minDigits; i++)
+			rtnText.insert(0, '0');
+		if (isNegative(value))
+			rtnText.insert(0, '-');
+		return rtnText.toString();
+	}
+}
@@ -0,0 +1,402 @@
+package com.horner.LookAngle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Coverage map of one geostationary satellite: elevation, azimuth and skew at
+ * the centre of every cell of a regular latitude/longitude grid, stored in a
+ * memory-mapped file so that rasters larger than the heap can be produced and
+ * read back without copying.
+ * 
+ * File layout (little-endian): a {@link #HEADER_BYTES} byte header, then one
+ * float plane per quantity ({@link #PLANE_ELEVATION}, {@link #PLANE_AZIMUTH},
+ * {@link #PLANE_SKEW}), each <code>rows * cols</code> values in row-major
+ * order, row 0 at the southern edge.
+ * 
+ * Generation splits the grid into bands of {@link #TILE_ROWS} rows evaluated
+ * on an {@link ExecutorService}, each band writing through its own mapping.
+ * The math is Soler's method as in
+ * {@link SatMathCore#getLookAngle(double, double, double, double, LookAngleResult)
+ * getLookAngle()} evaluated on the ellipsoid surface, with everything that
+ * depends on latitude hoisted out to the row and the longitude sines and
+ * cosines computed once per column for the whole raster, so a cell costs no
+ * trig beyond the arc tangents.
+ * 
+ * @author etchorner
+ * 
+ */
+public class CoverageRaster {
+
+	// CONSTANTS
+	/** elevation plane (decimal degrees) */
+	public static final int PLANE_ELEVATION = 0;
+	/** azimuth plane (decimal degrees) */
+	public static final int PLANE_AZIMUTH = 1;
+	/** skew plane (decimal degrees, positive is CW) */
+	public static final int PLANE_SKEW = 2;
+	/** number of planes in a raster file */
+	static final int PLANES = 3;
+	/** size of the file header */
+	public static final int HEADER_BYTES = 64;
+	/** file signature, "LKAR" */
+	private static final int MAGIC = 0x4c4b4152;
+	/** file format version */
+	private static final int VERSION = 1;
+	/** rows per generation task */
+	static final int TILE_ROWS = 64;
+	/** upper bound on the size of a single read mapping */
+	private static final long MAX_MAPPING = 1 << 30;
+
+	// END CONSTANTS
+
+	// ATTRIBUTES
+	/** number of grid rows (latitude) */
+	private final int mRows;
+	/** number of grid columns (longitude) */
+	private final int mCols;
+	/** latitude of the southern edge (decimal degrees) */
+	private final double mSouth;
+	/** longitude of the western edge (decimal degrees) */
+	private final double mWest;
+	/** cell size (decimal degrees) */
+	private final double mResolution;
+	/** longitude of the satellite (decimal degrees) */
+	private final double mSatLon;
+	/** rows per read mapping */
+	private final int mBandRows;
+	/** read-only views, indexed by plane then band */
+	private final FloatBuffer[][] mBands;
+
+	// END ATTRIBUTES
+
+	private CoverageRaster(FileChannel channel, int rows, int cols,
+			double south, double west, double resolution, double satLon)
+			throws IOException {
+		mRows = rows;
+		mCols = cols;
+		mSouth = south;
+		mWest = west;
+		mResolution = resolution;
+		mSatLon = satLon;
+		mBandRows = (int) Math.max(1,
+				Math.min(rows, MAX_MAPPING / (4L * cols)));
+
+		int bands = (rows + mBandRows - 1) / mBandRows;
+		mBands = new FloatBuffer[PLANES][bands];
+		for (int p = 0; p < PLANES; p++) {
+			for (int b = 0; b < bands; b++) {
+				int bandRows = Math.min(mBandRows, rows - b * mBandRows);
+				mBands[p][b] = channel.map(FileChannel.MapMode.READ_ONLY,
+						offset(p, b * mBandRows, rows, cols),
+						4L * bandRows * cols).order(ByteOrder.LITTLE_ENDIAN)
+						.asFloatBuffer();
+			}
+		}
+	}
+
+	/**
+	 * Generates a coverage raster into a file, replacing its contents, and
+	 * returns it opened for reading.
+	 * 
+	 * @param file
+	 *            the raster file to write
+	 * @param satLon
+	 *            longitude of the geostationary satellite (decimal degrees)
+	 * @param south
+	 *            latitude of the southern edge of the grid (decimal degrees)
+	 * @param west
+	 *            longitude of the western edge of the grid (decimal degrees)
+	 * @param resolution
+	 *            cell size (decimal degrees)
+	 * @param rows
+	 *            number of rows (latitude)
+	 * @param cols
+	 *            number of columns (longitude)
+	 * @param executor
+	 *            the {@link ExecutorService} running the bands, or null to
+	 *            generate on the calling thread
+	 * @return the generated raster
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static CoverageRaster generate(File file, double satLon,
+			double south, double west, double resolution, int rows,
+			int cols, ExecutorService executor) throws IOException {
+		// LOCALS
+		RandomAccessFile raf = null;
+		final Columns columns;
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+		if (rows < 1 || cols < 1 || !(resolution > 0))
+			throw new IllegalArgumentException("empty raster");
+
+		columns = new Columns(satLon, west, resolution, cols);
+		try {
+			raf = new RandomAccessFile(file, "rw");
+			final FileChannel channel = raf.getChannel();
+			raf.setLength(offset(PLANES, 0, rows, cols));
+			writeHeader(channel, rows, cols, south, west, resolution, satLon);
+
+			for (int r = 0; r < rows; r += TILE_ROWS) {
+				final int first = r;
+				final int last = Math.min(rows, r + TILE_ROWS);
+				final double s = south, res = resolution;
+				final int nRows = rows;
+				tasks.add(new Callable<Void>() {
+					public Void call() throws IOException {
+						fillRows(channel, columns, s, res, nRows, first, last);
+						return null;
+					}
+				});
+			}
+			runAll(tasks, executor);
+			channel.force(false);
+			return new CoverageRaster(channel, rows, cols, south, west,
+					resolution, satLon);
+		} finally {
+			if (raf != null)
+				raf.close();
+		}
+	}
+
+	/**
+	 * Opens an existing raster file for reading.
+	 * 
+	 * @param file
+	 *            the raster file
+	 * @return the raster, backed by read-only mappings of the file
+	 * @throws IOException
+	 *             if the file cannot be read or is not a raster
+	 */
+	public static CoverageRaster open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+				throw new IOException("not a coverage raster: " + file);
+			int rows = header.getInt(8);
+			int cols = header.getInt(12);
+			if (channel.size() < offset(PLANES, 0, rows, cols))
+				throw new IOException("truncated coverage raster: " + file);
+			return new CoverageRaster(channel, rows, cols,
+					header.getDouble(16), header.getDouble(24),
+					header.getDouble(32), header.getDouble(40));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/** @return the number of rows (latitude) */
+	public int getRows() {
+		return mRows;
+	}
+
+	/** @return the number of columns (longitude) */
+	public int getCols() {
+		return mCols;
+	}
+
+	/** @return the cell size (decimal degrees) */
+	public double getResolution() {
+		return mResolution;
+	}
+
+	/** @return the longitude of the satellite (decimal degrees) */
+	public double getSatelliteLongitude() {
+		return mSatLon;
+	}
+
+	/** @return the latitude of the centre of a row (decimal degrees) */
+	public double getLatitude(int row) {
+		return mSouth + (row + 0.5) * mResolution;
+	}
+
+	/** @return the longitude of the centre of a column (decimal degrees) */
+	public double getLongitude(int col) {
+		return mWest + (col + 0.5) * mResolution;
+	}
+
+	/**
+	 * Reads one cell.
+	 * 
+	 * @param plane
+	 *            {@link #PLANE_ELEVATION}, {@link #PLANE_AZIMUTH} or
+	 *            {@link #PLANE_SKEW}
+	 * @param row
+	 *            grid row, 0 at the southern edge
+	 * @param col
+	 *            grid column, 0 at the western edge
+	 * @return the value in decimal degrees
+	 */
+	public float get(int plane, int row, int col) {
+		return mBands[plane][row / mBandRows].get((row % mBandRows) * mCols
+				+ col);
+	}
+
+	/**
+	 * Returns a view of one row of a plane, sharing the file mapping.
+	 * 
+	 * @param plane
+	 *            {@link #PLANE_ELEVATION}, {@link #PLANE_AZIMUTH} or
+	 *            {@link #PLANE_SKEW}
+	 * @param row
+	 *            grid row, 0 at the southern edge
+	 * @return a read-only {@link FloatBuffer} of {@link #getCols()} values
+	 */
+	public FloatBuffer getRow(int plane, int row) {
+		FloatBuffer view = mBands[plane][row / mBandRows].duplicate();
+		int start = (row % mBandRows) * mCols;
+		view.position(start);
+		view.limit(start + mCols);
+		return view.slice();
+	}
+
+	/**
+	 * Longitude-only terms, computed once per raster and shared by all rows.
+	 */
+	private static final class Columns {
+		final int count;
+		final double[] sinLon, cosLon, sinSkew;
+		final double x_sat, y_sat;
+
+		Columns(double satLon, double west, double resolution, int cols) {
+			double satRad = Math.toRadians(satLon);
+			count = cols;
+			sinLon = new double[cols];
+			cosLon = new double[cols];
+			sinSkew = new double[cols];
+			x_sat = SatMathCore.GEO_RADIUS * Math.cos(satRad);
+			y_sat = SatMathCore.GEO_RADIUS * Math.sin(satRad);
+			for (int c = 0; c < cols; c++) {
+				double lon = west + (c + 0.5) * resolution;
+				sinLon[c] = Math.sin(Math.toRadians(lon));
+				cosLon[c] = Math.cos(Math.toRadians(lon));
+				sinSkew[c] = Math.sin(Math.toRadians(lon - satLon));
+			}
+		}
+	}
+
+	/** evaluates rows [first, last) into all three planes */
+	private static void fillRows(FileChannel channel, Columns columns,
+			double south, double resolution, int rows, int first, int last)
+			throws IOException {
+		// LOCALS
+		int cols = columns.count;
+		long bytes = 4L * (last - first) * cols;
+		FloatBuffer[] out = new FloatBuffer[PLANES];
+		MappedByteBuffer[] maps = new MappedByteBuffer[PLANES];
+		double eps = SatMathCore.WGS84_EPSILON;
+
+		for (int p = 0; p < PLANES; p++) {
+			maps[p] = channel.map(FileChannel.MapMode.READ_WRITE,
+					offset(p, first, rows, cols), bytes);
+			out[p] = maps[p].order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+		}
+
+		for (int r = first; r < last; r++) {
+			// row terms: everything that depends on latitude alone
+			double lat = Math.toRadians(south + (r + 0.5) * resolution);
+			double sinLat = Math.sin(lat), cosLat = Math.cos(lat);
+			double tanLat = Math.tan(lat);
+			double N = SatMathCore.WGS84_A
+					/ Math.sqrt(1 - Math.pow(eps * sinLat, 2));
+			double rc = N * cosLat;
+			double z = 0 - N * (1 - Math.pow(eps, 2)) * sinLat;
+			double nz = cosLat;
+			double uz = sinLat;
+			boolean north = lat > 0;
+
+			for (int c = 0; c < cols; c++) {
+				double sinLon = columns.sinLon[c], cosLon = columns.cosLon[c];
+
+				// Step 2: Satellite components (x,y,z)
+				double x = columns.x_sat - rc * cosLon;
+				double y = columns.y_sat - rc * sinLon;
+
+				// Step 3: Transform satellite components to geodetic e,n,u
+				double e = -1 * sinLon * x + cosLon * y;
+				double n = -1 * sinLat * cosLon * x - sinLat * sinLon * y + nz
+						* z;
+				double u = cosLat * cosLon * x + cosLat * sinLon * y + uz * z;
+
+				// Step 4: Calculate look angle
+				double alpha = Math.atan(e / n);
+				if (north)
+					alpha = alpha + Math.PI;
+				else if (alpha < 0)
+					alpha = alpha + 2 * Math.PI;
+
+				out[PLANE_ELEVATION].put((float) Math.toDegrees(Math.atan(u
+						/ Math.sqrt(e * e + n * n))));
+				out[PLANE_AZIMUTH].put((float) Math.toDegrees(alpha));
+				out[PLANE_SKEW].put((float) Math.toDegrees(Math
+						.atan(columns.sinSkew[c] / tanLat)));
+			}
+		}
+
+		for (int p = 0; p < PLANES; p++) {
+			maps[p].force();
+		}
+	}
+
+	/** writes the file header */
+	private static void writeHeader(FileChannel channel, int rows, int cols,
+			double south, double west, double resolution, double satLon)
+			throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(
+				ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(cols);
+		header.putDouble(south).putDouble(west).putDouble(resolution)
+				.putDouble(satLon);
+		header.clear();
+		channel.write(header, 0);
+	}
+
+	/** runs the tasks on the executor, or inline if there is none */
+	private static void runAll(List<Callable<Void>> tasks,
+			ExecutorService executor) throws IOException {
+		try {
+			if (executor == null) {
+				for (Callable<Void> task : tasks) {
+					task.call();
+				}
+				return;
+			}
+			for (Future<Void> f : executor.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch (IOException ioe) {
+			throw ioe;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IOException("raster generation interrupted");
+		} catch (ExecutionException ee) {
+			if (ee.getCause() instanceof IOException)
+				throw (IOException) ee.getCause();
+			throw new IllegalStateException("raster generation failed",
+					ee.getCause());
+		} catch (Exception e) {
+			throw new IllegalStateException("raster generation failed", e);
+		}
+	}
+
+	/** byte offset of a row of a plane in the file */
+	private static long offset(int plane, int row, int rows, int cols) {
+		return HEADER_BYTES + ((long) plane * rows + row) * cols * 4L;
+	}
+}
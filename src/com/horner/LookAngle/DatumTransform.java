@@ -3,7 +3,10 @@
  */
 package com.horner.LookAngle;
 
-import java.text.DecimalFormat;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 
 /**
  * Class that holds all manner of coordinate system transformation routines. All
@@ -15,12 +18,8 @@ import java.text.DecimalFormat;
  */
 public class DatumTransform {
 	// CONSTANTS
-	/** formatting object for longitude zone */
-	private static DecimalFormat longZoneFormat = new DecimalFormat("#");
-	/** formatting object for UTM northing value */
-	private static DecimalFormat northingFormat = new DecimalFormat("#");
-	/** formatting object for UTM easting value */
-	private static DecimalFormat eastingFormat = new DecimalFormat("#");
+	/** length of the longest UTM String of a projected point */
+	public static final int UTM_MAX_LENGTH = 20;
 	/** semi-major axis of WGS84 ellipsoid */
 	private static final double a = 6378137d;
 	/** semi-minor axis of WGS84 ellipsoid */
@@ -49,6 +48,42 @@ public class DatumTransform {
 			epsilon, 8) / 32) / 3072;
 	/** Fifth Meridional arc component */
 	public static final double A8 = -315 * Math.pow(epsilon, 8) / 131072;
+	/** UTM false northing of the southern hemisphere */
+	private static final double UTMfalseNorthing = 10000000;
+	/** range of valid UTM eastings and northings (meters) */
+	private static final double UTMminEasting = 100000;
+	private static final double UTMmaxEasting = 900000;
+	private static final double UTMmaxNorthing = 10000000;
+	/** third flattening, e1 of the footpoint latitude series */
+	private static final double e1 = (a - b) / (a + b);
+	/** Footpoint latitude series components, from 7.4.3.2 */
+	private static final double FP2 = 3 * e1 / 2 - 27 * Math.pow(e1, 3) / 32;
+	private static final double FP4 = 21 * Math.pow(e1, 2) / 16 - 55
+			* Math.pow(e1, 4) / 32;
+	private static final double FP6 = 151 * Math.pow(e1, 3) / 96;
+	private static final double FP8 = 1097 * Math.pow(e1, 4) / 512;
+	/** most digits each of MGRS easting and northing, 1 m */
+	public static final int MGRS_MAX_PRECISION = 5;
+	/** length of the longest MGRS grid reference */
+	public static final int MGRS_MAX_LENGTH = 5 + 2 * MGRS_MAX_PRECISION;
+	/** latitude limits of the UTM part of MGRS */
+	private static final double MGRS_MIN_LAT = -80;
+	private static final double MGRS_MAX_LAT = 84;
+	/** side of an MGRS square, and the repeat of its row letters */
+	private static final double MGRS_SQUARE = 100000;
+	private static final double MGRS_ROW_CYCLE = 2000000;
+	/** how far inside its square a decoded reference lands (meters) */
+	private static final double MGRS_CORNER_INSET = 0.001;
+	/** how far inside its grid zone a decoded reference lands (degrees) */
+	private static final double MGRS_EDGE_INSET = 1e-10;
+	/** UTM meters per degree, along a meridian and along the equator */
+	private static final double MGRS_METERS_PER_DEGREE = ptScaleFactorUTM
+			* a * Math.PI / 180;
+	/** MGRS 100 km column letters, one set per zone in turn */
+	private static final String[] mgrsColumnLetters = { "ABCDEFGH",
+			"JKLMNPQR", "STUVWXYZ" };
+	/** MGRS 100 km row letters */
+	private static final String mgrsRowLetters = "ABCDEFGHJKLMNPQRSTUV";
 	/** Latitude Zone stuff */
 	private static final char[] latZoneLetters = { 'A', 'C', 'D', 'E', 'F',
 			'G', 'H', 'J', 'K', 'L', 'M', 'N', 'P', 'Q', 'R', 'S', 'T', 'U',
@@ -71,6 +106,10 @@ public class DatumTransform {
 	 * Source for algorithm is "Handbook for Transformation of Datums,
 	 * Projections, Grids, and Common Coordinate Systems", May 2004.
 	 * 
+	 * This formats the result of
+	 * {@link #convertLLtoUTM(double, double, UTMCoordinate) convertLLtoUTM()},
+	 * which callers wanting the numbers should use directly.
+	 * 
 	 * @param inLat
 	 *            geodetic latitude value (positive is North, negative is South)
 	 * @param inLon
@@ -80,14 +119,72 @@ public class DatumTransform {
 	 *         "ZZ z NNNNNN EEEEEE"
 	 */
 	public static String convertLLtoUTM(double inLat, double inLon) {
+		return convertLLtoUTM(inLat, inLon, TrigProvider.EXACT);
+	}
+
+	/**
+	 * {@link #convertLLtoUTM(double, double) convertLLtoUTM()} with the
+	 * trigonometry taken from the given tier.
+	 * 
+	 * @param inLat
+	 *            geodetic latitude value (positive is North, negative is South)
+	 * @param inLon
+	 *            geodetic longitude value (positive is East, negative is West)
+	 * @param trig
+	 *            the {@link TrigProvider} tier to use
+	 * @return a String object containing the full UTM coordinate in the form
+	 *         "ZZ z NNNNNN EEEEEE"
+	 */
+	public static String convertLLtoUTM(double inLat, double inLon,
+			TrigProvider trig) {
+		// LOCALS
+		UTMCoordinate utm = convertLLtoUTM(inLat, inLon, trig,
+				new UTMCoordinate());
+		char[] buf = new char[UTM_MAX_LENGTH];
+
+		// Build the whole UTM string and return it
+		return new String(buf, 0, formatUTM(utm, buf, 0));
+	}
+
+	/**
+	 * Uses Army Corps of Engineers algorithm to transform geodetic coordinate
+	 * values of latitude and longitude to UTM, as numbers. This is the
+	 * projection behind {@link #convertLLtoUTM(double, double)
+	 * convertLLtoUTM()}, without building or parsing a String.
+	 * 
+	 * @param inLat
+	 *            geodetic latitude value (positive is North, negative is South)
+	 * @param inLon
+	 *            geodetic longitude value (positive is East, negative is West)
+	 * @param out
+	 *            receives the UTM coordinate
+	 * @return out (self reference, for chaining)
+	 */
+	public static UTMCoordinate convertLLtoUTM(double inLat, double inLon,
+			UTMCoordinate out) {
+		return convertLLtoUTM(inLat, inLon, TrigProvider.EXACT, out);
+	}
+
+	/**
+	 * {@link #convertLLtoUTM(double, double, UTMCoordinate) convertLLtoUTM()}
+	 * with the trigonometry taken from the given tier.
+	 * 
+	 * @param inLat
+	 *            geodetic latitude value (positive is North, negative is South)
+	 * @param inLon
+	 *            geodetic longitude value (positive is East, negative is West)
+	 * @param trig
+	 *            the {@link TrigProvider} tier to use
+	 * @param out
+	 *            receives the UTM coordinate
+	 * @return out (self reference, for chaining)
+	 */
+	public static UTMCoordinate convertLLtoUTM(double inLat, double inLon,
+			TrigProvider trig, UTMCoordinate out) {
 		// LOCALS
-		int longZone = 0;
-		String latZone = "";
 		double lat = 0;
 		double lon = 0;
-		/** Geoid separation */
-		double nu;
-		double t, eta, lambda, xTM, yTM, xUTM, yUTM;
+		double lambda;
 
 		// handle hemispheres of input, convert to positive radians
 		if (inLon < 0) {
@@ -99,54 +196,130 @@ public class DatumTransform {
 
 		// get the UTM zones and lambda (diff, between central meridian and
 		// longitude of fix
-		latZone = getLatZone(lat);
-		longZone = getLongZone(lon);
-		lambda = lon - getCentralMeridian(longZone);
-
-		// set up the terms for the Transverse Mercator coordinate computation
-		// from eq. 7.9
-		nu = a / Math.sqrt(1 - Math.pow(epsilon * Math.sin(lat), 2));
-		t = Math.tan(lat);
-		eta = Math.sqrt(epsilonP2) * Math.cos(lat);
-
-		// get Transverse Mercator x and y coordinates
-		// from eq. 7.8
-		xTM = (nu * lambda * Math.cos(lat))
-				+ ((nu * Math.pow(lambda, 3) * Math.pow(Math.cos(lat), 3)) / 6)
-				* (1 - Math.pow(t, 2) + Math.pow(eta, 2))
-				+ ((nu * Math.pow(lambda, 5) * Math.pow(Math.cos(lat), 5)) / 120)
-				* (5 - 18 * Math.pow(t, 2) + Math.pow(t, 4) + 14
-						* Math.pow(eta, 2) - 58 * Math.pow(t, 2)
-						* Math.pow(eta, 2));
-
-		yTM = getMeridionalArc(lat)
-				+ (nu * Math.pow(lambda, 2) / 2)
-				* (Math.sin(lat) * Math.cos(lat))
-				+ (nu * Math.pow(lambda, 4) / 24)
-				* (Math.sin(lat) * Math.pow(Math.cos(lat), 3))
-				* (5 - Math.pow(t, 2) + 9 * Math.pow(eta, 2) + 4 * Math.pow(
-						eta, 4))
-				+ (nu * Math.pow(lambda, 6) / 720)
-				* (Math.sin(lat) * Math.pow(Math.cos(lat), 5))
-				* (61 - 58 * Math.pow(t, 2) + Math.pow(t, 4) + 270
-						* Math.pow(eta, 2) - 330 * Math.pow(t, 2)
-						* Math.pow(eta, 2));
+		out.band = getLatZoneLetter(inLat);
+		out.zone = getLongZone(lon);
+		lambda = lon - getCentralMeridian(out.zone);
+		getTransverseMercator(lat, lambda, trig, out);
 
 		// transform TM to UTM
-		xUTM = ptScaleFactorUTM * xTM + UTMeastingOrigin;
+		out.easting = ptScaleFactorUTM * out.easting + UTMeastingOrigin;
 		if (lat >= 0) {
-			yUTM = ptScaleFactorUTM * yTM;
+			out.northing = ptScaleFactorUTM * out.northing;
 		} else {
-			yUTM = ptScaleFactorUTM * yTM + 10000000;
+			out.northing = ptScaleFactorUTM * out.northing + UTMfalseNorthing;
 		}
+		return out;
+	}
 
-		// Build the whole UTM string and return it
-		longZoneFormat.setMinimumIntegerDigits(2);
-		northingFormat.setMinimumIntegerDigits(6);
-		eastingFormat.setMinimumIntegerDigits(7);
-		return longZoneFormat.format(longZone) + " " + latZone + " "
-				+ northingFormat.format(xUTM) + " "
-				+ eastingFormat.format(yUTM);
+	/**
+	 * Batch form of {@link #convertLLtoUTM(double, double, UTMCoordinate)
+	 * convertLLtoUTM()} over parallel arrays, one element per site, written
+	 * into columns in the layout
+	 * {@link #convertUTMtoLL(int[], char[], double[], double[], double[], double[])
+	 * convertUTMtoLL()} reads. Nothing is allocated per site.
+	 * 
+	 * @param lat
+	 *            geodetic latitudes (decimal degrees)
+	 * @param lon
+	 *            geodetic longitudes (decimal degrees)
+	 * @param outZone
+	 *            receives the longitude zones
+	 * @param outBand
+	 *            receives the latitude zone letters, may be null if not
+	 *            needed
+	 * @param outEasting
+	 *            receives the UTM eastings (meters)
+	 * @param outNorthing
+	 *            receives the UTM northings (meters)
+	 * @throws IllegalArgumentException
+	 *             if lat and lon differ in length or an output array is too
+	 *             short
+	 */
+	public static void convertLLtoUTM(double[] lat, double[] lon,
+			int[] outZone, char[] outBand, double[] outEasting,
+			double[] outNorthing) {
+		convertLLtoUTM(lat, lon, outZone, outBand, outEasting, outNorthing,
+				TrigProvider.EXACT);
+	}
+
+	/**
+	 * {@link #convertLLtoUTM(double[], double[], int[], char[], double[], double[])
+	 * convertLLtoUTM()} with the trigonometry taken from the given tier.
+	 * 
+	 * @param lat
+	 *            geodetic latitudes (decimal degrees)
+	 * @param lon
+	 *            geodetic longitudes (decimal degrees)
+	 * @param outZone
+	 *            receives the longitude zones
+	 * @param outBand
+	 *            receives the latitude zone letters, may be null if not
+	 *            needed
+	 * @param outEasting
+	 *            receives the UTM eastings (meters)
+	 * @param outNorthing
+	 *            receives the UTM northings (meters)
+	 * @param trig
+	 *            the {@link TrigProvider} tier to use
+	 */
+	public static void convertLLtoUTM(double[] lat, double[] lon,
+			int[] outZone, char[] outBand, double[] outEasting,
+			double[] outNorthing, TrigProvider trig) {
+		// LOCALS
+		int n = lat.length;
+		/** scratch for one site */
+		UTMCoordinate utm = new UTMCoordinate();
+
+		if (lon.length != n)
+			throw new IllegalArgumentException("site arrays differ in length");
+		if (outZone.length < n || (outBand != null && outBand.length < n)
+				|| outEasting.length < n || outNorthing.length < n)
+			throw new IllegalArgumentException("output arrays shorter than "
+					+ n + " sites");
+
+		for (int i = 0; i < n; i++) {
+			convertLLtoUTM(lat[i], lon[i], trig, utm);
+			outZone[i] = utm.zone;
+			if (outBand != null)
+				outBand[i] = utm.band;
+			outEasting[i] = utm.easting;
+			outNorthing[i] = utm.northing;
+		}
+	}
+
+	/**
+	 * Writes a UTM coordinate in the String form of
+	 * {@link #convertLLtoUTM(double, double) convertLLtoUTM()}, into a
+	 * caller-owned buffer. Easting and northing are rounded to the meter.
+	 * Safe to call from any number of threads.
+	 * 
+	 * @param utm
+	 *            the UTM coordinate
+	 * @param out
+	 *            receives the text; {@link #UTM_MAX_LENGTH} characters hold
+	 *            any projected point
+	 * @param offset
+	 *            index in out of the first character
+	 * @return the number of characters written
+	 * @throws IllegalArgumentException
+	 *             if out is too short
+	 */
+	public static int formatUTM(UTMCoordinate utm, char[] out, int offset) {
+		// LOCALS
+		int pos = offset;
+
+		pos += CoordinateFormat.formatFixed(utm.zone, 0, 2, out, pos);
+		if (out.length - pos < 4)
+			throw new IllegalArgumentException("buffer too short");
+		out[pos++] = ' ';
+		out[pos++] = utm.band;
+		out[pos++] = ' ';
+		pos += CoordinateFormat.formatFixed(utm.easting, 0, 6, out, pos);
+		if (pos == out.length)
+			throw new IllegalArgumentException("buffer too short");
+		out[pos++] = ' ';
+		pos += CoordinateFormat.formatFixed(utm.northing, 0, 7, out, pos);
+		return pos - offset;
 	}
 
 	/**
@@ -156,19 +329,138 @@ public class DatumTransform {
 	 * Source for algorithm is "Handbook for Transformation of Datums,
 	 * Projections, Grids, and Common Coordinate Systems", May 2004.
 	 * 
+	 * The String is read in the form {@link #convertLLtoUTM(double, double)
+	 * convertLLtoUTM()} writes it: longitude zone, latitude zone letter,
+	 * easting and northing, separated by spaces. Easting and northing may
+	 * carry a decimal fraction. The latitude zone letter only selects the
+	 * hemisphere, so any letter on the right side of the equator will do.
+	 * 
 	 * @param inUTM
 	 *            a String object containing the UTM coordinate
 	 * @return an array of doubles, the 0th is the latitude, and the 1st is
 	 *         longitude
+	 * @throws IllegalArgumentException
+	 *             if the String is not a UTM coordinate, or its easting or
+	 *             northing lies outside the UTM grid
 	 */
 	public static double[] convertUTMtoLL(String inUTM) {
-		// TODO: implement IAW ACE section 7.4.3.2
 		// LOCALS
-		double[] rtnLL = null;
+		double[] rtnLL = new double[2];
+		/** start and end of each of the four fields */
+		int[] field = new int[8];
+		int len = inUTM.length();
+		int pos = 0;
+		int zone;
+
+		// find the fields by hand, this is run over whole site lists
+		for (int f = 0; f < field.length; f += 2) {
+			while (pos < len && inUTM.charAt(pos) == ' ')
+				pos++;
+			field[f] = pos;
+			while (pos < len && inUTM.charAt(pos) != ' ')
+				pos++;
+			field[f + 1] = pos;
+			if (field[f] == pos)
+				throw new IllegalArgumentException("not a UTM coordinate: "
+						+ inUTM);
+		}
+		while (pos < len && inUTM.charAt(pos) == ' ')
+			pos++;
+		if (pos < len || field[3] - field[2] != 1)
+			throw new IllegalArgumentException("not a UTM coordinate: "
+					+ inUTM);
 
+		zone = parseZone(inUTM, field[0], field[1]);
+		getGeodetic(zone, inUTM.charAt(field[2]), parseMeters(inUTM,
+				field[4], field[5]), parseMeters(inUTM, field[6], field[7]),
+				TrigProvider.EXACT, rtnLL, new UTMCoordinate());
 		return rtnLL;
 	}
 
+	/**
+	 * Batch form of {@link #convertUTMtoLL(String) convertUTMtoLL()} over
+	 * parallel arrays, one element per site, for converting whole site lists
+	 * without building or parsing a String per site. Nothing is allocated
+	 * per site.
+	 * 
+	 * The inverse series is closed form: the footpoint latitude comes from a
+	 * series in the rectifying latitude whose coefficients are computed once,
+	 * and latitude and longitude from series in the scaled easting. Each
+	 * result is then corrected once against
+	 * {@link #convertLLtoUTM(double, double) convertLLtoUTM()}'s own forward
+	 * series, so that projecting it again reproduces the input to well
+	 * under a millimeter anywhere in the zone, rather than only to the
+	 * truncation error of the two series.
+	 * 
+	 * @param zone
+	 *            longitude zones, 1 to 60
+	 * @param band
+	 *            latitude zone letters; only the hemisphere is used
+	 * @param easting
+	 *            UTM eastings (meters)
+	 * @param northing
+	 *            UTM northings (meters)
+	 * @param outLat
+	 *            receives the geodetic latitudes (decimal degrees)
+	 * @param outLon
+	 *            receives the geodetic longitudes (decimal degrees), -180 to
+	 *            180
+	 * @throws IllegalArgumentException
+	 *             if the input arrays differ in length, an output array is
+	 *             too short, a zone or letter is not valid, or an easting or
+	 *             northing lies outside the UTM grid
+	 */
+	public static void convertUTMtoLL(int[] zone, char[] band,
+			double[] easting, double[] northing, double[] outLat,
+			double[] outLon) {
+		convertUTMtoLL(zone, band, easting, northing, outLat, outLon,
+				TrigProvider.EXACT);
+	}
+
+	/**
+	 * {@link #convertUTMtoLL(int[], char[], double[], double[], double[], double[])
+	 * convertUTMtoLL()} with the trigonometry taken from the given tier.
+	 * 
+	 * @param zone
+	 *            longitude zones, 1 to 60
+	 * @param band
+	 *            latitude zone letters; only the hemisphere is used
+	 * @param easting
+	 *            UTM eastings (meters)
+	 * @param northing
+	 *            UTM northings (meters)
+	 * @param outLat
+	 *            receives the geodetic latitudes (decimal degrees)
+	 * @param outLon
+	 *            receives the geodetic longitudes (decimal degrees), -180 to
+	 *            180
+	 * @param trig
+	 *            the {@link TrigProvider} tier to use
+	 */
+	public static void convertUTMtoLL(int[] zone, char[] band,
+			double[] easting, double[] northing, double[] outLat,
+			double[] outLon, TrigProvider trig) {
+		// LOCALS
+		int n = zone.length;
+		/** scratch for one site's latitude and longitude */
+		double[] ll = new double[2];
+		/** scratch for the forward projection */
+		UTMCoordinate tm = new UTMCoordinate();
+
+		if (band.length != n || easting.length != n || northing.length != n)
+			throw new IllegalArgumentException("UTM arrays differ in length");
+		if (outLat.length < n || outLon.length < n)
+			throw new IllegalArgumentException("output arrays shorter than "
+					+ n + " sites");
+
+		for (int i = 0; i < n; i++) {
+			getGeodetic(zone[i], band[i], easting[i], northing[i], trig, ll,
+					tm);
+			outLat[i] = ll[0];
+			outLon[i] = ll[1];
+		}
+	}
+
 	/**
 	 * Uses Army Corps of Engineers algorithm to transform geodetic coordinate
 	 * values of latitude and longitude to a MGRS String.
@@ -181,10 +473,162 @@ public class DatumTransform {
 	 * @param inLon
 	 *            double value of longitude to be converted
 	 * @return a String object containing the ten digit MGRS grid reference.
+	 * @throws IllegalArgumentException
+	 *             if the latitude is outside the UTM zones, -80 to 84
 	 */
 	public static String convertLLtoMGRS(double inLat, double inLon) {
-		// TODO: implement
-		return "";
+		return convertLLtoMGRS(inLat, inLon, MGRS_MAX_PRECISION);
+	}
+
+	/**
+	 * {@link #convertLLtoMGRS(double, double) convertLLtoMGRS()} at a chosen
+	 * precision.
+	 * 
+	 * @param inLat
+	 *            double value of latitude to be converted
+	 * @param inLon
+	 *            double value of longitude to be converted
+	 * @param precision
+	 *            digits each of easting and northing, 0 (100 km square) to 5
+	 *            (1 m)
+	 * @return a String object containing the MGRS grid reference, in the
+	 *         form "ZZzCRe..en...n" without spaces
+	 * @throws IllegalArgumentException
+	 *             if the latitude is outside the UTM zones or the precision
+	 *             is out of range
+	 */
+	public static String convertLLtoMGRS(double inLat, double inLon,
+			int precision) {
+		// LOCALS
+		char[] buf = new char[MGRS_MAX_LENGTH];
+
+		return new String(buf, 0, convertLLtoMGRS(inLat, inLon, precision,
+				buf, 0));
+	}
+
+	/**
+	 * {@link #convertLLtoMGRS(double, double, int) convertLLtoMGRS()}
+	 * writing into a caller-owned buffer, so that no String is built. A
+	 * buffer of {@link #MGRS_MAX_LENGTH} characters holds any reference.
+	 * 
+	 * The grid zone is the UTM zone of
+	 * {@link #convertLLtoUTM(double, double) convertLLtoUTM()}, which does
+	 * not apply the Norway and Svalbard exceptions. The 100 km square is
+	 * lettered in the AA scheme: column letters cycle through three sets of
+	 * eight, one set per zone, and row letters through twenty that repeat
+	 * every 2000 km, offset by five in even zones. Easting and northing
+	 * within the square are truncated, not rounded, so the reference names
+	 * the square that contains the point.
+	 * 
+	 * @param inLat
+	 *            double value of latitude to be converted
+	 * @param inLon
+	 *            double value of longitude to be converted
+	 * @param precision
+	 *            digits each of easting and northing, 0 (100 km square) to 5
+	 *            (1 m)
+	 * @param out
+	 *            receives the grid reference
+	 * @param offset
+	 *            index in out of the first character
+	 * @return the number of characters written, 5 + 2 * precision
+	 * @throws IllegalArgumentException
+	 *             if the latitude is outside the UTM zones, the precision is
+	 *             out of range or out is too short
+	 */
+	public static int convertLLtoMGRS(double inLat, double inLon,
+			int precision, char[] out, int offset) {
+		return writeMGRS(inLat, inLon, precision, out, offset,
+				new UTMCoordinate());
+	}
+
+	/**
+	 * {@link #convertLLtoMGRS(double, double, int, char[], int)
+	 * convertLLtoMGRS()} appending to a StringBuilder.
+	 * 
+	 * @param inLat
+	 *            double value of latitude to be converted
+	 * @param inLon
+	 *            double value of longitude to be converted
+	 * @param precision
+	 *            digits each of easting and northing, 0 (100 km square) to 5
+	 *            (1 m)
+	 * @param out
+	 *            the grid reference is appended to this
+	 * @return out (self reference, for chaining)
+	 */
+	public static StringBuilder convertLLtoMGRS(double inLat, double inLon,
+			int precision, StringBuilder out) {
+		// LOCALS
+		char[] buf = new char[MGRS_MAX_LENGTH];
+
+		return out.append(buf, 0, convertLLtoMGRS(inLat, inLon, precision,
+				buf, 0));
+	}
+
+	/**
+	 * Streaming form of {@link #convertLLtoMGRS(double, double, int)
+	 * convertLLtoMGRS()} for site files too large to hold in memory. Each
+	 * line of the input starts with a latitude and a longitude in decimal
+	 * degrees, separated by a comma, spaces or tabs. The output line is the
+	 * grid reference followed by whatever came after the longitude, so site
+	 * names and other columns are kept. Blank lines and lines starting with
+	 * '#' are copied unchanged. One buffer is reused for every site.
+	 * 
+	 * @param in
+	 *            the site file
+	 * @param out
+	 *            receives the converted lines, ended by '\n'; buffering it
+	 *            is left to the caller
+	 * @param precision
+	 *            digits each of easting and northing, 0 (100 km square) to 5
+	 *            (1 m)
+	 * @return the number of sites converted
+	 * @throws IOException
+	 *             if reading or writing fails
+	 * @throws IllegalArgumentException
+	 *             if a line is not a site in the UTM zones, with its line
+	 *             number
+	 */
+	public static int convertLLtoMGRS(Reader in, Writer out, int precision)
+			throws IOException {
+		// LOCALS
+		BufferedReader reader = in instanceof BufferedReader
+				? (BufferedReader) in : new BufferedReader(in);
+		char[] buf = new char[MGRS_MAX_LENGTH];
+		UTMCoordinate utm = new UTMCoordinate();
+		int lineNumber = 0;
+		int sites = 0;
+		String line;
+
+		while ((line = reader.readLine()) != null) {
+			int len = line.length();
+			int latStart, latEnd, lonStart, lonEnd;
+			double lat, lon;
+
+			lineNumber++;
+			latStart = skipSeparators(line, 0);
+			if (latStart == len || line.charAt(latStart) == '#') {
+				out.write(line);
+				out.write('\n');
+				continue;
+			}
+			latEnd = skipField(line, latStart);
+			lonStart = skipSeparators(line, latEnd);
+			lonEnd = skipField(line, lonStart);
+			try {
+				lat = Double.parseDouble(line.substring(latStart, latEnd));
+				lon = Double.parseDouble(line.substring(lonStart, lonEnd));
+				out.write(buf, 0, writeMGRS(lat, lon, precision, buf, 0, utm));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("line " + lineNumber + ": "
+						+ e.getMessage());
+			}
+			out.write(line, lonEnd, len - lonEnd);
+			out.write('\n');
+			sites++;
+		}
+		return sites;
 	}
 
 	/**
@@ -194,16 +638,115 @@ public class DatumTransform {
 	 * Source for algorithm is "Handbook for Transformation of Datums,
 	 * Projections, Grids, and Common Coordinate Systems", May 2004.
 	 * 
+	 * Any precision from 0 to 5 digits is accepted, and spaces may separate
+	 * the grid zone, the 100 km square and the easting and northing. The
+	 * reference names a square, and a point a millimeter inside its
+	 * southwest corner is returned, so that the point encodes back to the
+	 * same reference. Where the square straddles the edge of its grid zone
+	 * and that corner lies in the next zone or band, the point is moved
+	 * along the square's southern or western edge into the grid zone. The
+	 * 2000 km cycle of the row letters is resolved with the latitude band.
+	 * 
 	 * @param inMGRS
 	 *            a String object containing a formatted MGRS grid reference.
 	 * @return an array of doubles, 0th element is latitude, first element is
 	 *         longitude.
+	 * @throws IllegalArgumentException
+	 *             if the String is not an MGRS grid reference
 	 */
 	public static double[] convertMGRStoLL(String inMGRS) {
-		// TODO: implement
 		// LOCALS
-		double[] rtnLL = null;
+		double[] rtnLL = new double[2];
+		int len = inMGRS.length();
+		int pos = skipSeparators(inMGRS, 0);
+		int start = pos;
+		int zone = 0;
+		int digits = 0;
+		int split = -1;
+		int precision, southDegree, column, row;
+		int digitsE = 0, digitsN = 0;
+		char band;
+		double scale, easting, northing, bandNorthing;
+		UTMCoordinate utm = new UTMCoordinate();
 
+		// grid zone designation
+		while (pos < len && pos - start < 2 && isDigit(inMGRS.charAt(pos)))
+			zone = 10 * zone + (inMGRS.charAt(pos++) - '0');
+		if (pos == start || pos == len)
+			throw new IllegalArgumentException("not an MGRS reference: "
+					+ inMGRS);
+		band = Character.toUpperCase(inMGRS.charAt(pos++));
+		southDegree = getLatZoneDegree(band);
+		if (band == 'A' || band == 'Z' || southDegree == -100)
+			throw new IllegalArgumentException("not an MGRS latitude band: "
+					+ band);
+		// the table starts zone C at -84 for the polar caps
+		southDegree = Math.max(southDegree, (int) MGRS_MIN_LAT);
+		if (zone < 1 || zone > 60)
+			throw new IllegalArgumentException("UTM zone out of range: "
+					+ zone);
+
+		// 100 km square
+		pos = skipSeparators(inMGRS, pos);
+		if (len - pos < 2)
+			throw new IllegalArgumentException("not an MGRS reference: "
+					+ inMGRS);
+		column = mgrsColumnLetters[(zone - 1) % 3].indexOf(Character
+				.toUpperCase(inMGRS.charAt(pos++))) + 1;
+		row = mgrsRowLetters.indexOf(Character.toUpperCase(inMGRS
+				.charAt(pos++)));
+		if (column == 0 || row < 0)
+			throw new IllegalArgumentException("not an MGRS 100 km square: "
+					+ inMGRS);
+		if (zone % 2 == 0)
+			row = (row + mgrsRowLetters.length() - 5)
+					% mgrsRowLetters.length();
+
+		// easting and northing digits, optionally split by spaces
+		pos = skipSeparators(inMGRS, pos);
+		start = pos;
+		for (; pos < len; pos++) {
+			char ch = inMGRS.charAt(pos);
+			if (isDigit(ch)) {
+				digits++;
+			} else if (isSeparator(ch) && split < 0) {
+				split = digits;
+				pos = skipSeparators(inMGRS, pos) - 1;
+			} else {
+				break;
+			}
+		}
+		precision = digits / 2;
+		if (pos < len || digits % 2 != 0 || precision > MGRS_MAX_PRECISION
+				|| (split >= 0 && split != precision && split != digits))
+			throw new IllegalArgumentException("not an MGRS reference: "
+					+ inMGRS);
+		for (pos = start; pos < len; pos++) {
+			char ch = inMGRS.charAt(pos);
+			if (!isDigit(ch))
+				continue;
+			if (digits-- > precision)
+				digitsE = 10 * digitsE + (ch - '0');
+			else
+				digitsN = 10 * digitsN + (ch - '0');
+		}
+		scale = Math.pow(10, MGRS_MAX_PRECISION - precision);
+		easting = column * MGRS_SQUARE + digitsE * scale;
+		northing = row * MGRS_SQUARE + digitsN * scale;
+
+		// pick the 2000 km cycle that puts the northing in the band
+		bandNorthing = ptScaleFactorUTM
+				* getMeridionalArc(Math.toRadians(southDegree
+						+ (band == 'X' ? 6 : 4)), TrigProvider.EXACT);
+		if (southDegree < 0)
+			bandNorthing += UTMfalseNorthing;
+		northing += MGRS_ROW_CYCLE
+				* Math.rint((bandNorthing - northing) / MGRS_ROW_CYCLE);
+
+		getGeodetic(zone, band, easting + MGRS_CORNER_INSET, northing
+				+ MGRS_CORNER_INSET, TrigProvider.EXACT, rtnLL, utm);
+		clipToGridZone(zone, band, southDegree, easting, northing, scale,
+				rtnLL, utm);
 		return rtnLL;
 	}
 
@@ -234,8 +777,9 @@ public class DatumTransform {
 	}
 
 	private static int getLongZone(double inLon) {
-		// 7.4.1.1 Find the UTM zone using eq. 7.22
-		if (inLon >= 0 && inLon <= Math.PI) {
+		// 7.4.1.1 Find the UTM zone using eq. 7.22; 180 is the west edge of
+		// zone 1, there is no zone 61
+		if (inLon >= 0 && inLon < Math.PI) {
 			return (int) Math.floor(31 + (180 * inLon) / (6 * Math.PI));
 		} else {
 			return (int) Math.floor((180 * inLon) / (6 * Math.PI) - 29);
@@ -251,15 +795,364 @@ public class DatumTransform {
 		}
 	}
 
-	private static double getMeridionalArc(double lat) {
+	/**
+	 * Moves a decoded MGRS point into its grid zone. A square that
+	 * straddles the edge of its grid zone can have its southwest corner in
+	 * the next zone or band. The point is then replaced by the first of
+	 * these that lies both in the square and in the grid zone: the square's
+	 * other corners, the crossings of the zone's meridians with the
+	 * square's southern and northern sides, the crossings of the band's
+	 * parallels with its western and eastern sides, and the grid zone's
+	 * corners. One of them does unless the square and the grid zone only
+	 * share a sliver narrower than the insets.
+	 * 
+	 * @param easting
+	 *            UTM easting of the square's southwest corner (meters)
+	 * @param northing
+	 *            UTM northing of the square's southwest corner (meters)
+	 * @param side
+	 *            side of the square (meters)
+	 * @param ll
+	 *            the decoded latitude and longitude, replaced if outside the
+	 *            grid zone
+	 * @param utm
+	 *            scratch for the projections
+	 */
+	private static void clipToGridZone(int zone, char band, int southDegree,
+			double easting, double northing, double side, double[] ll,
+			UTMCoordinate utm) {
+		// LOCALS
+		double west = 6 * zone - 186 + MGRS_EDGE_INSET;
+		double east = west + 6 - 2 * MGRS_EDGE_INSET;
+		double south = southDegree + MGRS_EDGE_INSET;
+		double north = (band == 'X' ? MGRS_MAX_LAT : southDegree + 8)
+				- MGRS_EDGE_INSET;
+		double[] box = { south, north, west, east, easting, northing, side };
+		double near = MGRS_CORNER_INSET, far = side - MGRS_CORNER_INSET;
+		double[] corner = new double[2];
+		double lat = ll[0], lon = ll[1];
+
+		if (isInSquare(lat, lon, box, utm))
+			return;
+		for (int i = 1; i < 4; i++) {
+			getGeodetic(zone, band, easting + (i % 2 == 0 ? near : far),
+					northing + (i < 2 ? near : far), TrigProvider.EXACT,
+					corner, utm);
+			if (setIfInSquare(corner[0], corner[1], box, ll, utm))
+				return;
+		}
+		for (int i = 0; i < 4; i++) {
+			double edge = i % 2 == 0 ? west : east;
+			if (setIfInSquare(getMeridianLatitude(lat, edge, northing
+					+ (i < 2 ? near : far), utm), edge, box, ll, utm))
+				return;
+		}
+		for (int i = 0; i < 4; i++) {
+			double edge = i % 2 == 0 ? south : north;
+			if (setIfInSquare(edge, getParallelLongitude(edge, lon, easting
+					+ (i < 2 ? near : far), utm), box, ll, utm))
+				return;
+		}
+		for (int i = 0; i < 4; i++)
+			if (setIfInSquare(i < 2 ? south : north, i % 2 == 0 ? west
+					: east, box, ll, utm))
+				return;
+	}
+
+	/**
+	 * Tells whether a point lies in a grid zone and in a square of it.
+	 * 
+	 * @param box
+	 *            the grid zone's south, north, west and east edges (decimal
+	 *            degrees), then the square's southwest corner easting and
+	 *            northing and its side (meters)
+	 * @param utm
+	 *            scratch for the forward projection
+	 */
+	private static boolean isInSquare(double lat, double lon, double[] box,
+			UTMCoordinate utm) {
+		lon -= 360 * Math.rint((lon - box[2] - 3) / 360);
+		if (!(lat >= box[0] && lat <= box[1] && lon >= box[2]
+				&& lon <= box[3]))
+			return false;
+		convertLLtoUTM(lat, lon, TrigProvider.EXACT, utm);
+		return utm.easting >= box[4] && utm.easting < box[4] + box[6]
+				&& utm.northing >= box[5] && utm.northing < box[5] + box[6];
+	}
+
+	/**
+	 * Replaces a decoded point if the given one lies in the grid zone and
+	 * the square; see {@link #isInSquare(double, double, double[],
+	 * UTMCoordinate) isInSquare()}.
+	 * 
+	 * @return true if ll was replaced
+	 */
+	private static boolean setIfInSquare(double lat, double lon,
+			double[] box, double[] ll, UTMCoordinate utm) {
+		if (!isInSquare(lat, lon, box, utm))
+			return false;
+		ll[0] = lat;
+		ll[1] = lon - 360 * Math.floor((lon + 180) / 360);
+		return true;
+	}
+
+	/**
+	 * Finds the latitude on a meridian with the given UTM northing. A few
+	 * steps of a fixed slope converge to well under a millimeter.
+	 * 
+	 * @param utm
+	 *            receives the UTM coordinate of the result
+	 * @return latitude (decimal degrees)
+	 */
+	private static double getMeridianLatitude(double lat, double lon,
+			double northing, UTMCoordinate utm) {
+		for (int i = 0; i < 8; i++) {
+			convertLLtoUTM(lat, lon, TrigProvider.EXACT, utm);
+			lat += (northing - utm.northing) / MGRS_METERS_PER_DEGREE;
+		}
+		convertLLtoUTM(lat, lon, TrigProvider.EXACT, utm);
+		return lat;
+	}
+
+	/**
+	 * Finds the longitude on a parallel with the given UTM easting.
+	 * 
+	 * @param utm
+	 *            receives the UTM coordinate of the result
+	 * @return longitude (decimal degrees)
+	 */
+	private static double getParallelLongitude(double lat, double lon,
+			double easting, UTMCoordinate utm) {
+		for (int i = 0; i < 8; i++) {
+			convertLLtoUTM(lat, lon, TrigProvider.EXACT, utm);
+			lon += (easting - utm.easting) / MGRS_METERS_PER_DEGREE
+					/ Math.cos(Math.toRadians(lat));
+		}
+		convertLLtoUTM(lat, lon, TrigProvider.EXACT, utm);
+		return lon;
+	}
+
+	/**
+	 * Writes the MGRS grid reference of a point.
+	 * 
+	 * @param utm
+	 *            scratch for the UTM coordinate
+	 * @return the number of characters written
+	 */
+	private static int writeMGRS(double inLat, double inLon, int precision,
+			char[] out, int offset, UTMCoordinate utm) {
+		// LOCALS
+		int pos = offset;
+		int zone, column, row;
+		long easting, northing, divisor = 1;
+
+		if (!(inLat >= MGRS_MIN_LAT && inLat < MGRS_MAX_LAT))
+			throw new IllegalArgumentException(
+					"latitude outside the UTM zones: " + inLat);
+		if (precision < 0 || precision > MGRS_MAX_PRECISION)
+			throw new IllegalArgumentException("MGRS precision out of range: "
+					+ precision);
+		if (offset < 0 || out.length - offset < 5 + 2 * precision)
+			throw new IllegalArgumentException("buffer too short for "
+					+ (5 + 2 * precision) + " characters");
+
+		convertLLtoUTM(inLat, inLon, TrigProvider.EXACT, utm);
+		zone = utm.zone;
+		easting = (long) Math.floor(utm.easting);
+		northing = (long) Math.floor(utm.northing);
+
+		// 100 km square letters
+		column = (int) (easting / (long) MGRS_SQUARE);
+		row = (int) (northing / (long) MGRS_SQUARE) % mgrsRowLetters.length();
+		if (zone % 2 == 0)
+			row = (row + 5) % mgrsRowLetters.length();
+
+		out[pos++] = (char) ('0' + zone / 10);
+		out[pos++] = (char) ('0' + zone % 10);
+		out[pos++] = utm.band;
+		out[pos++] = mgrsColumnLetters[(zone - 1) % 3].charAt(column - 1);
+		out[pos++] = mgrsRowLetters.charAt(row);
+
+		// truncate easting and northing within the square to the precision
+		for (int i = precision; i < MGRS_MAX_PRECISION; i++)
+			divisor *= 10;
+		writeDigits(easting % (long) MGRS_SQUARE / divisor, precision, out,
+				pos);
+		pos += precision;
+		writeDigits(northing % (long) MGRS_SQUARE / divisor, precision, out,
+				pos);
+		pos += precision;
+		return pos - offset;
+	}
+
+	/** writes a value as count digits with leading zeros */
+	private static void writeDigits(long value, int count, char[] out,
+			int offset) {
+		for (int i = offset + count - 1; i >= offset; i--) {
+			out[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+	/** @return the index of the first non-separator character from pos */
+	private static int skipSeparators(String s, int pos) {
+		while (pos < s.length() && isSeparator(s.charAt(pos)))
+			pos++;
+		return pos;
+	}
+
+	/** @return the index of the first separator character from pos */
+	private static int skipField(String s, int pos) {
+		while (pos < s.length() && !isSeparator(s.charAt(pos)))
+			pos++;
+		return pos;
+	}
+
+	private static boolean isSeparator(char ch) {
+		return ch == ' ' || ch == '\t' || ch == ',';
+	}
+
+	private static boolean isDigit(char ch) {
+		return ch >= '0' && ch <= '9';
+	}
+
+	/**
+	 * Projects a point onto the Transverse Mercator grid of a central
+	 * meridian, before the UTM scale factor and origin are applied.
+	 * 
+	 * @param lat
+	 *            geodetic latitude (radians)
+	 * @param lambda
+	 *            longitude east of the central meridian (radians)
+	 * @param trig
+	 *            the {@link TrigProvider} tier to use
+	 * @param out
+	 *            receives the TM x and y coordinates (meters) as its easting
+	 *            and northing
+	 */
+	private static void getTransverseMercator(double lat, double lambda,
+			TrigProvider trig, UTMCoordinate out) {
+		// LOCALS
+		/** radius of curvature in the prime vertical */
+		double nu;
+		double t, eta;
+
+		// set up the terms for the Transverse Mercator coordinate computation
+		// from eq. 7.9
+		nu = a / Math.sqrt(1 - Math.pow(epsilon * trig.sin(lat), 2));
+		t = trig.tan(lat);
+		eta = Math.sqrt(epsilonP2) * trig.cos(lat);
+
+		// get Transverse Mercator x and y coordinates
+		// from eq. 7.8
+		out.easting = (nu * lambda * trig.cos(lat))
+				+ ((nu * Math.pow(lambda, 3) * Math.pow(trig.cos(lat), 3)) / 6)
+				* (1 - Math.pow(t, 2) + Math.pow(eta, 2))
+				+ ((nu * Math.pow(lambda, 5) * Math.pow(trig.cos(lat), 5)) / 120)
+				* (5 - 18 * Math.pow(t, 2) + Math.pow(t, 4) + 14
+						* Math.pow(eta, 2) - 58 * Math.pow(t, 2)
+						* Math.pow(eta, 2));
+
+		out.northing = getMeridionalArc(lat, trig)
+				+ (nu * Math.pow(lambda, 2) / 2)
+				* (trig.sin(lat) * trig.cos(lat))
+				+ (nu * Math.pow(lambda, 4) / 24)
+				* (trig.sin(lat) * Math.pow(trig.cos(lat), 3))
+				* (5 - Math.pow(t, 2) + 9 * Math.pow(eta, 2) + 4 * Math.pow(
+						eta, 4))
+				+ (nu * Math.pow(lambda, 6) / 720)
+				* (trig.sin(lat) * Math.pow(trig.cos(lat), 5))
+				* (61 - 58 * Math.pow(t, 2) + Math.pow(t, 4) + 270
+						* Math.pow(eta, 2) - 330 * Math.pow(t, 2)
+						* Math.pow(eta, 2));
+	}
+
+	/**
+	 * Inverts a UTM coordinate, 7.4.3.2, with one correction against the
+	 * forward series.
+	 * 
+	 * @param outLL
+	 *            receives the latitude and longitude (decimal degrees)
+	 * @param tm
+	 *            scratch for the forward projection
+	 */
+	private static void getGeodetic(int zone, char band, double easting,
+			double northing, TrigProvider trig, double[] outLL,
+			UTMCoordinate tm) {
+		// LOCALS
+		double x, y, mu, phi1, sinPhi, cosPhi, t, t2, c, w, nu, rho, d, d2;
+		double lat, lambda, lon, dx, dy, gamma, sinGamma, cosGamma;
+
+		if (zone < 1 || zone > 60)
+			throw new IllegalArgumentException("UTM zone out of range: "
+					+ zone);
+		if (!(easting >= UTMminEasting && easting <= UTMmaxEasting))
+			throw new IllegalArgumentException("UTM easting out of range: "
+					+ easting);
+		if (!(northing >= 0 && northing <= UTMmaxNorthing))
+			throw new IllegalArgumentException("UTM northing out of range: "
+					+ northing);
+
+		// back out the scale factor and the false easting and northing
+		x = (easting - UTMeastingOrigin) / ptScaleFactorUTM;
+		y = northing;
+		if (isSouthern(band))
+			y -= UTMfalseNorthing;
+		y /= ptScaleFactorUTM;
+
+		// footpoint latitude from the rectifying latitude mu
+		mu = y / (a * A0);
+		phi1 = mu + FP2 * trig.sin(2 * mu) + FP4 * trig.sin(4 * mu) + FP6
+				* trig.sin(6 * mu) + FP8 * trig.sin(8 * mu);
+
+		// radii of curvature and the series terms at the footpoint
+		sinPhi = trig.sin(phi1);
+		cosPhi = trig.cos(phi1);
+		t = trig.tan(phi1);
+		c = epsilonP2 * cosPhi * cosPhi;
+		w = 1 - epsilon * epsilon * sinPhi * sinPhi;
+		nu = a / Math.sqrt(w);
+		rho = nu * (1 - epsilon * epsilon) / w;
+		d = x / nu;
+		d2 = d * d;
+		t2 = t * t;
+
+		lat = phi1 - (nu * t / rho) * d2
+				* (1 / 2d - d2 / 24
+						* (5 + 3 * t2 + 10 * c - 4 * c * c - 9 * epsilonP2)
+						+ d2 * d2 / 720
+						* (61 + 90 * t2 + 298 * c + 45 * t2 * t2 - 252
+								* epsilonP2 - 3 * c * c));
+		lambda = d
+				* (1 - d2 / 6 * (1 + 2 * t2 + c) + d2 * d2 / 120
+						* (5 - 2 * c + 28 * t2 - 3 * c * c + 8 * epsilonP2
+								+ 24 * t2 * t2)) / cosPhi;
+
+		// the two series truncate differently, by up to a couple of
+		// millimeters at the zone edges; project the estimate forward and
+		// take out the residual, turned through the grid convergence into
+		// north and east, so the result round-trips with convertLLtoUTM
+		getTransverseMercator(lat, lambda, trig, tm);
+		dx = x - tm.easting;
+		dy = y - tm.northing;
+		gamma = lambda * trig.sin(lat);
+		sinGamma = trig.sin(gamma);
+		cosGamma = trig.cos(gamma);
+		lat += (dy * cosGamma - dx * sinGamma) / rho;
+		lambda += (dx * cosGamma + dy * sinGamma) / (nu * trig.cos(lat));
+
+		lon = Math.toDegrees(getCentralMeridian(zone) + lambda);
+		outLL[0] = Math.toDegrees(lat);
+		outLL[1] = lon - 360 * Math.floor((lon + 180) / 360);
+	}
+
+	private static double getMeridionalArc(double lat, TrigProvider trig) {
 		return a
-				* (A0 * lat - A2 * Math.sin(2 * lat) + A4 * Math.sin(4 * lat)
-						- A6 * Math.sin(6 * lat) + A8 * Math.sin(8 * lat));
+				* (A0 * lat - A2 * trig.sin(2 * lat) + A4 * trig.sin(4 * lat)
+						- A6 * trig.sin(6 * lat) + A8 * trig.sin(8 * lat));
 	}
 
-	@SuppressWarnings("unused")
-	private static int getLatZoneDegree(String letter) {
-		char ltr = letter.charAt(0);
+	private static int getLatZoneDegree(char ltr) {
 		for (int i = 0; i < latZoneLetters.length; i++) {
 			if (latZoneLetters[i] == ltr) {
 				return latZoneDegrees[i];
@@ -268,9 +1161,71 @@ public class DatumTransform {
 		return -100;
 	}
 
-	private static String getLatZone(double latitude) {
+	/**
+	 * @return true if the latitude zone letter is south of the equator
+	 */
+	private static boolean isSouthern(char letter) {
+		char ltr = Character.toUpperCase(letter);
+		for (int i = 0; i < latZoneLetters.length; i++) {
+			if (latZoneLetters[i] == ltr) {
+				return ltr < 'N';
+			}
+		}
+		throw new IllegalArgumentException("not a latitude zone: " + letter);
+	}
+
+	/**
+	 * @return the longitude zone in the digits from start to end
+	 */
+	private static int parseZone(String s, int start, int end) {
+		// LOCALS
+		int rtnZone = 0;
+
+		if (end - start > 2)
+			throw new IllegalArgumentException("not a UTM zone: "
+					+ s.substring(start, end));
+		for (int i = start; i < end; i++) {
+			char ch = s.charAt(i);
+			if (ch < '0' || ch > '9')
+				throw new IllegalArgumentException("not a UTM zone: "
+						+ s.substring(start, end));
+			rtnZone = 10 * rtnZone + (ch - '0');
+		}
+		return rtnZone;
+	}
+
+	/**
+	 * @return the decimal number of meters from start to end, digits with
+	 *         an optional fraction
+	 */
+	private static double parseMeters(String s, int start, int end) {
+		// LOCALS
+		double rtnMeters = 0;
+		double scale = 1;
+		boolean fraction = false;
+
+		for (int i = start; i < end; i++) {
+			char ch = s.charAt(i);
+			if (ch == '.' && !fraction) {
+				fraction = true;
+			} else if (ch >= '0' && ch <= '9') {
+				if (fraction) {
+					scale /= 10;
+					rtnMeters += (ch - '0') * scale;
+				} else {
+					rtnMeters = 10 * rtnMeters + (ch - '0');
+				}
+			} else {
+				throw new IllegalArgumentException("not a UTM coordinate: "
+						+ s.substring(start, end));
+			}
+		}
+		return rtnMeters;
+	}
+
+	private static char getLatZoneLetter(double latitude) {
 		int latIndex = -2;
-		int lat = (int) latitude;
+		int lat = (int) Math.floor(latitude);
 
 		if (lat >= 0) {
 			int len = latZonePosLetters.length;
@@ -311,12 +1266,12 @@ public class DatumTransform {
 			if (latIndex == -2) {
 				latIndex = latZonePosLetters.length - 1;
 			}
-			return String.valueOf(latZonePosLetters[latIndex]);
+			return latZonePosLetters[latIndex];
 		} else {
 			if (latIndex == -2) {
 				latIndex = latZoneNegLetters.length - 1;
 			}
-			return String.valueOf(latZoneNegLetters[latIndex]);
+			return latZoneNegLetters[latIndex];
 		}
 	}
 }
\ No newline at end of file
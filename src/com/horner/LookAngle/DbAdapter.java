@@ -26,6 +26,8 @@ public class DbAdapter {
 	public static final String KEY_NORAD_NBR = "norad_nbr";
 	/** SQLite table "longitude" column key */
 	public static final String KEY_LONGITUDE = "longitude";
+	/** SQLite table "inclination" column key */
+	public static final String KEY_INCLINATION = "inclination";
 	/** SQLite table "name" column key */
 	public static final String KEY_NAME = "name";
 	private static final String DATABASE_NAME = "satellites";
@@ -72,7 +74,9 @@ public class DbAdapter {
 		/**
 		 * Triggered when the database is created for the very first time. This
 		 * implementation not only creates the db, but also populates it using
-		 * CSV data in the res/raw directory.
+		 * CSV data in the res/raw directory. Each line holds name, NORAD
+		 * number and longitude, optionally followed by the inclination; when
+		 * that is missing the inclination column is left NULL.
 		 * 
 		 * @param db
 		 *            the {@link SQLiteDatabase} being created.
@@ -98,8 +102,9 @@ public class DbAdapter {
 					String[] s = line.split(",");
 					insertStatement = "INSERT INTO " + DATABASE_TABLE + " ("
 							+ KEY_NAME + "," + KEY_NORAD_NBR + ","
-							+ KEY_LONGITUDE + ") VALUES ('" + s[0] + "', "
-							+ s[1] + ", " + s[2] + ");";
+							+ KEY_LONGITUDE + "," + KEY_INCLINATION
+							+ ") VALUES ('" + s[0] + "', " + s[1] + ", " + s[2]
+							+ ", " + (s.length > 3 ? s[3] : "NULL") + ");";
 					db.execSQL(insertStatement);
 				}
 			} catch (IOException ioe) {
@@ -192,4 +197,40 @@ public class DbAdapter {
 		}
 		return mCursor;
 	}
+
+	/**
+	 * Loads every satellite in the database into a column-oriented
+	 * {@link SatCatalog}, ordered by longitude, for bulk calculations. An
+	 * inclination the ephemeris did not supply is loaded as NaN.
+	 * 
+	 * @return a {@link SatCatalog} holding the whole satellite table
+	 * @throws SQLException
+	 *             if the table could not be read
+	 */
+	public SatCatalog fetchCatalog() throws SQLException {
+		Cursor cur = mDb.query(DATABASE_TABLE, new String[] { KEY_ID,
+				KEY_NORAD_NBR, KEY_LONGITUDE, KEY_INCLINATION, KEY_NAME },
+				null, null, null, null, KEY_LONGITUDE);
+
+		try {
+			SatCatalog catalog = new SatCatalog(cur.getCount());
+			int colId = cur.getColumnIndex(KEY_ID);
+			int colNorad = cur.getColumnIndex(KEY_NORAD_NBR);
+			int colLon = cur.getColumnIndex(KEY_LONGITUDE);
+			int colIncl = cur.getColumnIndex(KEY_INCLINATION);
+			int colName = cur.getColumnIndex(KEY_NAME);
+
+			for (int i = 0; cur.moveToPosition(i); i++) {
+				catalog.ids[i] = cur.getLong(colId);
+				catalog.noradNbrs[i] = cur.getInt(colNorad);
+				catalog.longitudes[i] = cur.getDouble(colLon);
+				catalog.inclinations[i] = cur.isNull(colIncl) ? Double.NaN
+						: cur.getDouble(colIncl);
+				catalog.names[i] = cur.getString(colName);
+			}
+			return catalog;
+		} finally {
+			cur.close();
+		}
+	}
 }
\ No newline at end of file
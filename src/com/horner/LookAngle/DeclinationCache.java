@@ -0,0 +1,226 @@
+package com.horner.LookAngle;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches magnetic declination on a regular latitude/longitude grid so that a
+ * stream of position fixes does not pay for a full geomagnetic model
+ * evaluation each time.
+ * 
+ * The grid is split into square tiles of {@link #TILE_CELLS} cells. A tile's
+ * grid nodes are evaluated through the underlying {@link DeclinationModel}
+ * the first time a point inside it is requested, and values between nodes are
+ * bilinearly interpolated. Because the field drifts (secular variation), each
+ * tile remembers the epoch it was evaluated for and is rebuilt once the
+ * requested time falls into a later epoch of {@link #EPOCH_MILLIS}. At most
+ * <code>maxTiles</code> tiles are kept; the least recently used one is evicted
+ * first.
+ * 
+ * Grid nodes are evaluated at sea level: over the altitude range of ground
+ * antenna sites the change in declination is far below the interpolation
+ * error. Latitudes are clamped to {@link #MAX_LATITUDE} since declination is
+ * undefined at the poles. Methods are synchronized, so one cache may be shared
+ * between threads.
+ * 
+ * @author etchorner
+ * 
+ */
+public class DeclinationCache implements DeclinationModel {
+
+	// CONSTANTS
+	/** grid cells along each side of a tile */
+	static final int TILE_CELLS = 8;
+	/** length of a secular variation epoch (30 days, in milliseconds) */
+	static final long EPOCH_MILLIS = 30L * 24 * 60 * 60 * 1000;
+	/** latitudes beyond this are clamped (decimal degrees) */
+	static final double MAX_LATITUDE = 89;
+	/** default grid spacing (decimal degrees) */
+	public static final double DEFAULT_RESOLUTION = 0.5;
+	/** default number of tiles kept */
+	public static final int DEFAULT_MAX_TILES = 64;
+
+	// END CONSTANTS
+
+	// ATTRIBUTES
+	/** model evaluated at the grid nodes */
+	private final DeclinationModel mModel;
+	/** grid spacing (decimal degrees) */
+	private final double mResolution;
+	/** tiles by packed row/column, in least recently used order */
+	private final Map<Long, Tile> mTiles;
+	/** tile of the last lookup, checked before the map */
+	private Tile mLastTile;
+	/** number of tile evaluations, for diagnostics */
+	private int mTileMisses;
+
+	// END ATTRIBUTES
+
+	/**
+	 * One tile of grid nodes, (TILE_CELLS + 1) along each side.
+	 */
+	private static final class Tile {
+		final int row, col;
+		final long epoch;
+		final double[] nodes = new double[(TILE_CELLS + 1) * (TILE_CELLS + 1)];
+
+		Tile(int row, int col, long epoch) {
+			this.row = row;
+			this.col = col;
+			this.epoch = epoch;
+		}
+	}
+
+	/**
+	 * Creates a cache with the default resolution and size.
+	 * 
+	 * @param model
+	 *            the {@link DeclinationModel} evaluated at the grid nodes
+	 */
+	public DeclinationCache(DeclinationModel model) {
+		this(model, DEFAULT_RESOLUTION, DEFAULT_MAX_TILES);
+	}
+
+	/**
+	 * Creates a cache.
+	 * 
+	 * @param model
+	 *            the {@link DeclinationModel} evaluated at the grid nodes
+	 * @param resolution
+	 *            grid spacing in decimal degrees
+	 * @param maxTiles
+	 *            maximum number of tiles held in memory
+	 */
+	public DeclinationCache(DeclinationModel model, double resolution,
+			final int maxTiles) {
+		if (resolution <= 0 || maxTiles < 1)
+			throw new IllegalArgumentException(
+					"resolution and tile count must be positive");
+		mModel = model;
+		mResolution = resolution;
+		mTiles = new LinkedHashMap<Long, Tile>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Tile> eldest) {
+				return size() > maxTiles;
+			}
+		};
+	}
+
+	/**
+	 * Returns the interpolated magnetic declination. The altitude is ignored,
+	 * see the class description.
+	 */
+	public synchronized double getDeclination(double lat, double lon,
+			double alt, long timeMillis) {
+		// LOCALS
+		double y, x, fy, fx, d00, d01, d10, d11;
+		int cellRow, cellCol, iy, ix, w;
+		long epoch = timeMillis / EPOCH_MILLIS;
+		Tile tile;
+
+		lat = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat));
+		lon = lon % 360;
+		if (lon < -180)
+			lon += 360;
+		else if (lon >= 180)
+			lon -= 360;
+
+		// position in grid cells from the south-west corner
+		y = (lat + 90) / mResolution;
+		x = (lon + 180) / mResolution;
+		cellRow = (int) Math.floor(y);
+		cellCol = (int) Math.floor(x);
+		tile = getTile(cellRow / TILE_CELLS, cellCol / TILE_CELLS, epoch);
+
+		// bilinear interpolation inside the cell; near the magnetic poles the
+		// corners may straddle +-180, so unwrap them around the first one
+		iy = cellRow - tile.row * TILE_CELLS;
+		ix = cellCol - tile.col * TILE_CELLS;
+		fy = y - cellRow;
+		fx = x - cellCol;
+		w = TILE_CELLS + 1;
+		d00 = tile.nodes[iy * w + ix];
+		d01 = unwrap(tile.nodes[iy * w + ix + 1], d00);
+		d10 = unwrap(tile.nodes[(iy + 1) * w + ix], d00);
+		d11 = unwrap(tile.nodes[(iy + 1) * w + ix + 1], d00);
+		return wrap((1 - fy) * ((1 - fx) * d00 + fx * d01) + fy
+				* ((1 - fx) * d10 + fx * d11));
+	}
+
+	/** @return the number of tiles currently held */
+	public synchronized int getTileCount() {
+		return mTiles.size();
+	}
+
+	/** @return the number of tiles evaluated since the cache was created */
+	public synchronized int getTileMisses() {
+		return mTileMisses;
+	}
+
+	/** Drops every cached tile. */
+	public synchronized void clear() {
+		mTiles.clear();
+		mLastTile = null;
+	}
+
+	/**
+	 * Returns the tile at a tile row/column for an epoch, evaluating it if it
+	 * is missing or from an older epoch.
+	 */
+	private Tile getTile(int row, int col, long epoch) {
+		Tile tile = mLastTile;
+		Long key;
+
+		if (tile != null && tile.row == row && tile.col == col
+				&& tile.epoch == epoch)
+			return tile;
+
+		key = Long.valueOf(((long) row << 32) | (col & 0xffffffffL));
+		tile = mTiles.get(key);
+		if (tile == null || tile.epoch != epoch) {
+			tile = evaluateTile(row, col, epoch);
+			mTiles.put(key, tile);
+		}
+		mLastTile = tile;
+		return tile;
+	}
+
+	/** wraps an angle into -180..180 degrees */
+	private static double wrap(double angle) {
+		if (angle > 180)
+			return angle - 360;
+		if (angle <= -180)
+			return angle + 360;
+		return angle;
+	}
+
+	/** @return the angle congruent to value that lies within 180 of ref */
+	private static double unwrap(double value, double ref) {
+		if (value - ref > 180)
+			return value - 360;
+		if (value - ref < -180)
+			return value + 360;
+		return value;
+	}
+
+	/** evaluates every grid node of a tile at the middle of its epoch */
+	private Tile evaluateTile(int row, int col, long epoch) {
+		Tile tile = new Tile(row, col, epoch);
+		long time = epoch * EPOCH_MILLIS + EPOCH_MILLIS / 2;
+		int w = TILE_CELLS + 1;
+
+		for (int i = 0; i < w; i++) {
+			double lat = (row * TILE_CELLS + i) * mResolution - 90;
+			lat = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat));
+			for (int j = 0; j < w; j++) {
+				double lon = (col * TILE_CELLS + j) * mResolution - 180;
+				tile.nodes[i * w + j] = mModel.getDeclination(lat, lon, 0,
+						time);
+			}
+		}
+		mTileMisses++;
+		return tile;
+	}
+}
@@ -0,0 +1,28 @@
+package com.horner.LookAngle;
+
+/**
+ * Source of magnetic declination values, so that callers such as
+ * {@link DeclinationCache} can work with either the Android geomagnetic model
+ * or an alternative implementation.
+ * 
+ * @author etchorner
+ * 
+ */
+public interface DeclinationModel {
+
+	/**
+	 * Returns the magnetic declination at a point and time.
+	 * 
+	 * @param lat
+	 *            geodetic latitude (decimal degrees)
+	 * @param lon
+	 *            geodetic longitude (decimal degrees)
+	 * @param alt
+	 *            altitude (meters)
+	 * @param timeMillis
+	 *            time of interest, in milliseconds since January 1, 1970 UTC
+	 * @return the declination in decimal degrees. Positive value is east
+	 *         declination, negative is west declination.
+	 */
+	double getDeclination(double lat, double lon, double alt, long timeMillis);
+}
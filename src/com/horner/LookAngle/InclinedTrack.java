@@ -0,0 +1,319 @@
+package com.horner.LookAngle;
+
+/**
+ * The daily look-angle track of a geosynchronous satellite in inclined orbit
+ * as seen from one antenna site: the "figure-eight" a fixed dish drifts off
+ * of over the course of a day.
+ * 
+ * The orbit is modeled as circular at geostationary radius with the
+ * satellite's mean longitude, its inclination and the time it last crossed
+ * the ascending node. In the earth-fixed frame the sub-satellite point is
+ * then
+ * 
+ * <pre>
+ * lat = asin(sin(i) sin(u))
+ * lon = lon0 + atan2(cos(i) sin(u), cos(u)) - u
+ * </pre>
+ * 
+ * where <code>u</code> is the argument of latitude, advancing one turn per
+ * sidereal day. Eccentricity and drift are ignored, which is what the
+ * catalog columns allow. The inclination must be known: the bundled
+ * ephemeris carries none, so {@link SatCatalog#inclinations} is NaN unless
+ * the data supplies it, and such satellites are rejected rather than
+ * treated as geostationary.
+ * 
+ * Samples are spaced adaptively: each step is checked against the midpoint
+ * of the chord it spans and halved until the track deviates from the chord
+ * by less than the tolerance, then allowed to grow again on the straight
+ * parts of the eight. The tight turns at the ends of the eight get dense
+ * samples and the long legs get few.
+ * 
+ * @author etchorner
+ * 
+ */
+public final class InclinedTrack {
+
+	// CONSTANTS
+	/** length of the predicted track (minutes) */
+	public static final double TRACK_MINUTES = 24 * 60;
+	/** default chord deviation tolerance (decimal degrees) */
+	public static final double DEFAULT_TOLERANCE = 0.001;
+	/** length of a sidereal day (minutes) */
+	static final double SIDEREAL_MINUTES = 1436.0681797;
+	/** smallest step the adaptive stepper will take (minutes) */
+	private static final double MIN_STEP = 1d / 60;
+	/** largest step the adaptive stepper will take (minutes) */
+	private static final double MAX_STEP = 60;
+	/** first step tried (minutes) */
+	private static final double INITIAL_STEP = 10;
+	/** inclinations below this are treated as geostationary (degrees) */
+	private static final double MIN_INCLINATION = 1e-6;
+
+	// END CONSTANTS
+
+	// ATTRIBUTES
+	/** time of each sample (minutes after the start of the track) */
+	public final double[] minutes;
+	/** azimuth of each sample (decimal degrees) */
+	public final double[] azimuth;
+	/** elevation of each sample (decimal degrees) */
+	public final double[] elevation;
+	/** peak-to-peak azimuth excursion over the track (decimal degrees) */
+	public final double azimuthExcursion;
+	/** peak-to-peak elevation excursion over the track (decimal degrees) */
+	public final double elevationExcursion;
+
+	// END ATTRIBUTES
+
+	private InclinedTrack(int count, double azimuthExcursion,
+			double elevationExcursion) {
+		this.minutes = new double[count];
+		this.azimuth = new double[count];
+		this.elevation = new double[count];
+		this.azimuthExcursion = azimuthExcursion;
+		this.elevationExcursion = elevationExcursion;
+	}
+
+	/** @return the number of samples on the track */
+	public int size() {
+		return minutes.length;
+	}
+
+	/**
+	 * Predicts the 24 hour look-angle track of an inclined satellite.
+	 * 
+	 * @param frame
+	 *            the {@link SiteFrame} of the antenna site
+	 * @param satLon
+	 *            mean longitude of the satellite (decimal degrees)
+	 * @param inclination
+	 *            orbital inclination (decimal degrees)
+	 * @param nodeMillis
+	 *            time of an ascending node crossing (ms since the epoch)
+	 * @param startMillis
+	 *            start of the track (ms since the epoch)
+	 * @param tolerance
+	 *            maximum deviation of the track from the chord between two
+	 *            samples (decimal degrees)
+	 * @return the predicted track
+	 * @throws IllegalArgumentException
+	 *             if the inclination is unknown (NaN) or negative
+	 */
+	public static InclinedTrack predict(SiteFrame frame, double satLon,
+			double inclination, long nodeMillis, long startMillis,
+			double tolerance) {
+		// LOCALS
+		Stepper stepper;
+		/** scratch for the samples, grown as needed */
+		double[] t = new double[64];
+		double[] az = new double[64];
+		double[] el = new double[64];
+		int count = 0;
+		InclinedTrack rtnTrack;
+
+		if (!(inclination >= 0))
+			throw new IllegalArgumentException("inclination unknown: "
+					+ inclination);
+
+		stepper = new Stepper(frame, satLon, inclination,
+				(startMillis - nodeMillis) / 60000d, tolerance);
+		do {
+			if (count == t.length) {
+				t = grow(t);
+				az = grow(az);
+				el = grow(el);
+			}
+			t[count] = stepper.t;
+			az[count] = stepper.az;
+			el[count] = stepper.el;
+			count++;
+		} while (stepper.advance());
+
+		rtnTrack = new InclinedTrack(count, stepper.azMax - stepper.azMin,
+				stepper.elMax - stepper.elMin);
+		System.arraycopy(t, 0, rtnTrack.minutes, 0, count);
+		System.arraycopy(az, 0, rtnTrack.azimuth, 0, count);
+		System.arraycopy(el, 0, rtnTrack.elevation, 0, count);
+		return rtnTrack;
+	}
+
+	/**
+	 * Computes only the peak-to-peak excursions for a whole catalog, without
+	 * keeping the tracks. The excursion of a closed daily track does not
+	 * depend on where the satellite is on it, so no node time is needed.
+	 * 
+	 * @param frame
+	 *            the {@link SiteFrame} of the antenna site
+	 * @param satLon
+	 *            mean longitude of each satellite (decimal degrees)
+	 * @param inclination
+	 *            orbital inclination of each satellite (decimal degrees),
+	 *            NaN if unknown
+	 * @param tolerance
+	 *            maximum chord deviation (decimal degrees)
+	 * @param outAzimuth
+	 *            receives the peak-to-peak azimuth excursions
+	 * @param outElevation
+	 *            receives the peak-to-peak elevation excursions
+	 * @return the number of satellites with an unknown or negative
+	 *         inclination; their results are NaN
+	 */
+	public static int getExcursions(SiteFrame frame, double[] satLon,
+			double[] inclination, double tolerance, double[] outAzimuth,
+			double[] outElevation) {
+		// LOCALS
+		int rtnUnknown = 0;
+
+		for (int i = 0; i < satLon.length; i++) {
+			if (!(inclination[i] >= 0)) {
+				outAzimuth[i] = outElevation[i] = Double.NaN;
+				rtnUnknown++;
+				continue;
+			}
+			if (inclination[i] < MIN_INCLINATION) {
+				outAzimuth[i] = 0;
+				outElevation[i] = 0;
+				continue;
+			}
+			Stepper stepper = new Stepper(frame, satLon[i], inclination[i],
+					0, tolerance);
+			while (stepper.advance())
+				;
+			outAzimuth[i] = stepper.azMax - stepper.azMin;
+			outElevation[i] = stepper.elMax - stepper.elMin;
+		}
+		return rtnUnknown;
+	}
+
+	/** doubles the length of a sample array */
+	private static double[] grow(double[] a) {
+		double[] b = new double[a.length * 2];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	/**
+	 * Adaptive walk along one track. Holds the current sample, the step to
+	 * try next and the running extremes.
+	 */
+	private static final class Stepper {
+
+		// ATTRIBUTES
+		private final SiteFrame mFrame;
+		private final LookAngleResult mResult = new LookAngleResult();
+		private final double mLonRad;
+		private final double mSinInc;
+		private final double mCosInc;
+		/** minutes since the ascending node at the start of the track */
+		private final double mNodeOffset;
+		private final double mTolerance;
+		/** azimuth of the first sample; later azimuths unwrap around it */
+		private final double mAzRef;
+		private double mStep = INITIAL_STEP;
+
+		/** current sample */
+		double t, az, el;
+		/** extremes so far (azimuth unwrapped around the first sample) */
+		double azMin, azMax, elMin, elMax;
+
+		// END ATTRIBUTES
+
+		Stepper(SiteFrame frame, double satLon, double inclination,
+				double nodeOffset, double tolerance) {
+			double inc = Math.toRadians(inclination);
+			mFrame = frame;
+			mLonRad = Math.toRadians(satLon);
+			mSinInc = Math.sin(inc);
+			mCosInc = Math.cos(inc);
+			mNodeOffset = nodeOffset;
+			mTolerance = tolerance;
+
+			evaluate(0);
+			t = 0;
+			az = mResult.azimuth;
+			el = mResult.elevation;
+			mAzRef = az;
+			azMin = azMax = az;
+			elMin = elMax = el;
+		}
+
+		/**
+		 * Takes one step, shrinking it until the chord midpoint is within
+		 * tolerance of the track and growing it again after an easy step.
+		 * 
+		 * @return false once the end of the track has been reached
+		 */
+		boolean advance() {
+			// LOCALS
+			double h, azEnd, elEnd, azMid, elMid, dev;
+
+			if (t >= TRACK_MINUTES)
+				return false;
+
+			while (true) {
+				h = Math.min(mStep, TRACK_MINUTES - t);
+				evaluate(t + h);
+				azEnd = unwrap(mResult.azimuth);
+				elEnd = mResult.elevation;
+				evaluate(t + 0.5 * h);
+				azMid = unwrap(mResult.azimuth);
+				elMid = mResult.elevation;
+
+				dev = Math.max(Math.abs(azMid - 0.5 * (unwrap(az) + azEnd)),
+						Math.abs(elMid - 0.5 * (el + elEnd)));
+				if (dev <= mTolerance || mStep <= MIN_STEP)
+					break;
+				mStep = Math.max(0.5 * mStep, MIN_STEP);
+			}
+
+			// the midpoint was evaluated anyway, so count it in the extremes
+			extend(azMid, elMid);
+			extend(azEnd, elEnd);
+			t += h;
+			az = azEnd < 0 ? azEnd + 360 : azEnd >= 360 ? azEnd - 360 : azEnd;
+			el = elEnd;
+
+			if (dev < 0.25 * mTolerance)
+				mStep = Math.min(2 * mStep, MAX_STEP);
+			return true;
+		}
+
+		/** computes the look angle at a time into mResult */
+		private void evaluate(double minutes) {
+			// LOCALS
+			double u = 2 * Math.PI * (minutes + mNodeOffset)
+					/ SIDEREAL_MINUTES;
+			double sinU = Math.sin(u);
+			double cosU = Math.cos(u);
+			/** sub-satellite latitude and longitude (radians) */
+			double lat = Math.asin(mSinInc * sinU);
+			double lon = mLonRad + Math.atan2(mCosInc * sinU, cosU)
+					- Math.atan2(sinU, cosU);
+			double r = SatMathCore.GEO_RADIUS * Math.cos(lat);
+
+			mFrame.getLookAngle(r * Math.cos(lon), r * Math.sin(lon),
+					SatMathCore.GEO_RADIUS * Math.sin(lat), mResult);
+		}
+
+		/** brings an azimuth within half a turn of the first sample */
+		private double unwrap(double azimuth) {
+			double d = azimuth - mAzRef;
+			if (d > 180)
+				return azimuth - 360;
+			if (d < -180)
+				return azimuth + 360;
+			return azimuth;
+		}
+
+		private void extend(double azimuth, double elevation) {
+			if (azimuth < azMin)
+				azMin = azimuth;
+			if (azimuth > azMax)
+				azMax = azimuth;
+			if (elevation < elMin)
+				elMin = elevation;
+			if (elevation > elMax)
+				elMax = elevation;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package com.horner.LookAngle;
+
+/**
+ * Sorts arrays of indices by a primitive double key without boxing.
+ * 
+ * @author etchorner
+ * 
+ */
+final class IndexSort {
+
+	private IndexSort() {
+	}
+
+	/**
+	 * Sorts indices by ascending key (bottom-up merge sort, stable so equal
+	 * keys keep their original order).
+	 * 
+	 * @param index
+	 *            the indices to sort, in place
+	 * @param key
+	 *            the sort key of every index
+	 * @param descending
+	 *            true to sort from largest to smallest key instead
+	 */
+	static void sort(int[] index, double[] key, boolean descending) {
+		int n = index.length;
+		int[] src = index;
+		int[] dst = new int[n];
+
+		for (int width = 1; width < n; width *= 2) {
+			for (int lo = 0; lo < n; lo += 2 * width) {
+				int mid = Math.min(lo + width, n);
+				int hi = Math.min(lo + 2 * width, n);
+				int i = lo, j = mid, k = lo;
+				while (i < mid && j < hi) {
+					boolean takeRight = descending ? key[src[j]] > key[src[i]]
+							: key[src[j]] < key[src[i]];
+					if (takeRight)
+						dst[k++] = src[j++];
+					else
+						dst[k++] = src[i++];
+				}
+				while (i < mid)
+					dst[k++] = src[i++];
+				while (j < hi)
+					dst[k++] = src[j++];
+			}
+			int[] tmp = src;
+			src = dst;
+			dst = tmp;
+		}
+		if (src != index)
+			System.arraycopy(src, 0, index, 0, n);
+	}
+}
@@ -0,0 +1,143 @@
+package com.horner.LookAngle;
+
+/**
+ * Sorted index over satellite longitudes for nearest-neighbour lookup on the
+ * geostationary belt. Distances wrap around the antimeridian, so a query at
+ * 179.9 finds a satellite at -179.9 as 0.2 degrees away. Lookups are a binary
+ * search, cheap enough to run on every sensor update.
+ * 
+ * @author etchorner
+ * 
+ */
+public class LongitudeIndex {
+
+	// ATTRIBUTES
+	/** longitudes in ascending order, normalized to -180..180 */
+	private final double[] mSorted;
+	/** catalog index of each entry of {@link #mSorted} */
+	private final int[] mIndex;
+
+	// END ATTRIBUTES
+
+	/**
+	 * Builds the index over a set of satellite longitudes.
+	 * 
+	 * @param satLon
+	 *            longitudes of the satellites (decimal degrees), e.g.
+	 *            {@link SatCatalog#longitudes}; not modified
+	 */
+	public LongitudeIndex(double[] satLon) {
+		int n = satLon.length;
+		double[] norm = new double[n];
+		mIndex = new int[n];
+		mSorted = new double[n];
+
+		for (int i = 0; i < n; i++) {
+			norm[i] = normalize(satLon[i]);
+			mIndex[i] = i;
+		}
+		IndexSort.sort(mIndex, norm, false);
+		for (int i = 0; i < n; i++) {
+			mSorted[i] = norm[mIndex[i]];
+		}
+	}
+
+	/** @return the number of satellites in the index */
+	public int size() {
+		return mSorted.length;
+	}
+
+	/**
+	 * Finds the satellite closest in longitude.
+	 * 
+	 * @param lon
+	 *            longitude to look up (decimal degrees), e.g. from
+	 *            {@link SiteFrame#getSatelliteLongitude(double, double)}
+	 * @return catalog index of the nearest satellite, or -1 if the index is
+	 *         empty or lon is NaN or infinite (a pointing that missed the
+	 *         belt)
+	 */
+	public int nearest(double lon) {
+		int n = mSorted.length;
+		double target = normalize(lon);
+		int east, west;
+
+		if (n == 0 || Double.isNaN(target))
+			return -1;
+		// the nearest entry is one of the two around the insertion point
+		east = insertionPoint(target) % n;
+		west = (east - 1 + n) % n;
+		if (distance(target, mSorted[east]) <= distance(target, mSorted[west]))
+			return mIndex[east];
+		return mIndex[west];
+	}
+
+	/**
+	 * Finds the satellites closest in longitude, nearest first.
+	 * 
+	 * @param lon
+	 *            longitude to look up (decimal degrees)
+	 * @param outIndex
+	 *            receives the catalog indices; its length is the number of
+	 *            neighbours wanted
+	 * @return the number of indices written, the smaller of the array length
+	 *         and the index size, or 0 if lon is NaN or infinite
+	 */
+	public int nearest(double lon, int[] outIndex) {
+		int n = mSorted.length;
+		int k = Math.min(outIndex.length, n);
+		double target = normalize(lon);
+		/** first entry east of (or at) the target, walking outward */
+		int east = insertionPoint(target);
+		int west = east - 1;
+
+		if (Double.isNaN(target))
+			return 0;
+
+		for (int found = 0; found < k; found++) {
+			int e = east % n;
+			int w = (west + n) % n;
+			if (distance(target, mSorted[e]) <= distance(target, mSorted[w])) {
+				outIndex[found] = mIndex[e];
+				east++;
+			} else {
+				outIndex[found] = mIndex[w];
+				west--;
+			}
+		}
+		return k;
+	}
+
+	/**
+	 * Angular distance between two longitudes along the belt.
+	 * 
+	 * @return distance in decimal degrees, 0..180
+	 */
+	public static double distance(double lon1, double lon2) {
+		double d = Math.abs(lon1 - lon2) % 360;
+		return d > 180 ? 360 - d : d;
+	}
+
+	/** binary search for the first sorted entry not less than the target */
+	private int insertionPoint(double target) {
+		int lo = 0, hi = mSorted.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (mSorted[mid] < target)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/** wraps a longitude into -180..180 degrees */
+	private static double normalize(double lon) {
+		lon = lon % 360;
+		if (lon >= 180)
+			return lon - 360;
+		if (lon < -180)
+			return lon + 360;
+		return lon;
+	}
+}
@@ -1,8 +1,5 @@
 package com.horner.LookAngle;
 
-import java.text.NumberFormat;
-import java.util.Locale;
-
 import android.app.Activity;
 import android.content.Context;
 import android.database.Cursor;
@@ -42,9 +39,8 @@ import android.widget.Toast;
  * 
  */
 public class LookAngle extends Activity implements LocationListener,
-		OnItemSelectedListener {
+		OnItemSelectedListener, LookAngleWorker.Listener {
 	// CONSTANTS
-	private static final char SYM_DEGREE = '\u00b0'; // Unicode for degrees
 	private static final String TAG = "LookAngle"; // for DBG logging
 	private static final int OPT_DD_ID = 1; // for option menu
 	private static final int OPT_DMS_ID = 2; // ...ditto/.
@@ -53,15 +49,17 @@ public class LookAngle extends Activity implements LocationListener,
 	// ATTRIBUTES
 	/** handles the listener for the GPS (or other location) service */
 	private LocationManager mLocMgr;
-	/** {@link Location} object for target satellite. longitude used only now. */
-	private Location mSatellite;
+	/** longitude of the target satellite (decimal degrees). */
+	private double mSatLongitude;
 	/** {@link Location} object for antenna location. */
 	private Location mAntennaSite;
 	/**
-	 * {@link DbAdapter} object contains the ephemeris database handler and
-	 * methods
+	 * {@link LookAngleWorker} running the database and the look angle math
+	 * off the UI thread
 	 */
-	private DbAdapter mDbHelper;
+	private LookAngleWorker mWorker;
+	/** {@link SimpleCursorAdapter} feeding the satellite target selector. */
+	private SimpleCursorAdapter mSatAdapter;
 	/** {@link TextView} handle to the longitude UI field. */
 	private TextView mTxtPositionLong;
 	/** {@link TextView} handle to the latitude UI field */
@@ -83,8 +81,10 @@ public class LookAngle extends Activity implements LocationListener,
 	private Boolean flagGoodLocation = false;
 	/** {@link Boolean} flag to indicate display mode of lat/long */
 	private Boolean flagDMS = false;
-	/** {@link NumberFormat} object to describe the desired numerical fmting */
-	private NumberFormat mNumFmt;
+	/** {@link Boolean} flag set between onStart() and onStop() */
+	private Boolean flagStarted = false;
+	/** fix to display latency trace: count, total and worst (microseconds) */
+	private long mLatencyCount, mLatencyTotal, mLatencyMax;
 
 	// END ATTRIBUTES
 
@@ -95,10 +95,9 @@ public class LookAngle extends Activity implements LocationListener,
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.main);
 
-		// instantiate the satellite location - used in onItemSelected()
-		// method
-		mSatellite = new Location("gps");
+		// instantiate the antenna location and the background worker
 		mAntennaSite = new Location("gps");
+		mWorker = new LookAngleWorker(this, this);
 
 		// GET HANDLES TO UI FIELDS
 		mTxtPositionLat = (TextView) findViewById(R.id.txtPositionLat);
@@ -110,13 +109,9 @@ public class LookAngle extends Activity implements LocationListener,
 		mImgStatusGPS = (ImageView) findViewById(R.id.statusGPS);
 		mSpnSatPicker = (Spinner) findViewById(R.id.spnSatPicker);
 
-		// get handle to db
-		mDbHelper = new DbAdapter(this);
-
-		// set number Format handler
-		mNumFmt = NumberFormat.getInstance(Locale.ENGLISH);
-		mNumFmt.setMinimumFractionDigits(2);
-		mNumFmt.setMaximumFractionDigits(2);
+		// the satellite list arrives from the worker once the db is open
+		fillData();
+		mSpnSatPicker.setOnItemSelectedListener(this);
 
 		// get a location manager...only done at start to solve pause problems.
 		// TODO: see Issue #2 on the project site
@@ -129,20 +124,13 @@ public class LookAngle extends Activity implements LocationListener,
 		super.onRestart();
 	}
 
-	/** Called when starting activity, also after pause and restart */
+	/** Called when starting activity, also after restart */
 	@Override
 	public void onStart() {
-		// re-establish location listener after start or pause
-		mLocMgr.requestLocationUpdates(LocationManager.GPS_PROVIDER, 0, 0, this);
-
-		// open/create/fill satty db and populate w/ ephemeris
-		mDbHelper.open();
-
-		// populate the satellite target selection spinner
-		// with names (and _id) from the database, then set
-		// a listener on it.
-		fillData();
-		mSpnSatPicker.setOnItemSelectedListener(this);
+		// open/create/fill satty db and populate w/ ephemeris; the worker
+		// hands the satellite list to onSatellitesLoaded()
+		flagStarted = true;
+		mWorker.open();
 
 		super.onStart();
 	}
@@ -150,6 +138,9 @@ public class LookAngle extends Activity implements LocationListener,
 	/** called after a pause is interrupted */
 	@Override
 	public void onResume() {
+		// re-establish location listener after start or pause
+		mLocMgr.requestLocationUpdates(LocationManager.GPS_PROVIDER, 0, 0, this);
+
 		// the usual override call out
 		super.onResume();
 	}
@@ -160,24 +151,37 @@ public class LookAngle extends Activity implements LocationListener,
 		// unregister the location listener while in background
 		// (will be re-registered in onResume() method)
 		mLocMgr.removeUpdates(this);
-		mDbHelper.close();
+		if (mLatencyCount > 0)
+			Log.d(TAG, "fix to display latency: " + mLatencyCount
+					+ " displays, mean " + mLatencyTotal / mLatencyCount
+					+ " us, worst " + mLatencyMax + " us");
 		super.onPause();
 	}
 
+	/** called when the activity is no longer visible */
+	@Override
+	public void onStop() {
+		// release the spinner's cursor before the worker closes the db
+		flagStarted = false;
+		mSatAdapter.changeCursor(null);
+		mWorker.close();
+		super.onStop();
+	}
+
 	/**
 	 * Called when the app quits or is killed by the system; it's our final
 	 * opportunity to clean up handles and other memory leak sources.
 	 */
 	@Override
 	public void onDestroy() {
-		mDbHelper.close();
+		mWorker.quit();
 		super.onDestroy();
 	}
 
 	/** save state in case interruption never resumes and proc is killed... */
 	@Override
 	public void onSaveInstanceState(Bundle outState) {
-		outState.putDouble("sat_long", mSatellite.getLongitude());
+		outState.putDouble("sat_long", mSatLongitude);
 		outState.putBoolean("flag", flagGoodLocation);
 		if (flagGoodLocation) {
 			outState.putDouble("ant_lat", mAntennaSite.getLatitude());
@@ -191,11 +195,12 @@ public class LookAngle extends Activity implements LocationListener,
 	@Override
 	public void onRestoreInstanceState(Bundle inState) {
 		flagGoodLocation = inState.getBoolean("flag");
-		mSatellite.setLongitude(inState.getDouble("sat_long"));
+		mSatLongitude = inState.getDouble("sat_long");
 		if (flagGoodLocation) {
 			mAntennaSite.setLatitude(inState.getDouble("ant_lat"));
 			mAntennaSite.setLongitude(inState.getDouble("ant_long"));
 			mImgStatusGPS.setImageResource(R.drawable.status_good);
+			mWorker.postFix(new Location(mAntennaSite), flagDMS);
 		} else {
 			mImgStatusGPS.setImageResource(R.drawable.status_bad);
 		}
@@ -237,62 +242,53 @@ public class LookAngle extends Activity implements LocationListener,
 	 */
 	@Override
 	public void onLocationChanged(Location location) {
-		// locals
-		Cursor cur; // cursor to a 1 row result based on _id
-		float newLat;
-		float newLong;
-		String latOrdinal = "N";
-		String longOrdinal = "W";
-
 		// Store the updated antenna position data...
 		mAntennaSite = location;
 
-		// process the location
-		newLat = (float) location.getLatitude();
-		newLong = (float) location.getLongitude();
+		mImgStatusGPS.setImageResource(R.drawable.status_good);
+		flagGoodLocation = true;
+
+		// hand a copy to the worker, which formats the position, calculates
+		// the look angle and posts the results to onDisplay()
+		mWorker.postFix(new Location(location), flagDMS);
+	}
 
-		// create ordinals and discard negative signs
-		if (newLat >= 0)
-			latOrdinal = "N";
-		else
-			latOrdinal = "S";
-		newLat = Math.abs(newLat);
+	/**
+	 * Called by the {@link LookAngleWorker} with the results for a fix or a
+	 * change of target; only fields that changed are carried.
+	 * 
+	 * @param display
+	 *            the formatted texts to show
+	 */
+	public void onDisplay(LookAngleWorker.Display display) {
+		// locals
+		long latency;
 
-		if (newLong >= 0)
-			longOrdinal = "E";
-		else
-			longOrdinal = "W";
-		newLong = Math.abs(newLong);
-
-		// get the target satellite from the spinner and retrieve the database
-		// row for that bird (_id, name, norad_nbr, longitude)
-		cur = mDbHelper.fetchSatellite(mSpnSatPicker.getSelectedItemId());
-		startManagingCursor(cur);
-
-		// extract longitude only
-		mSatellite.setLongitude(cur.getDouble(cur
-				.getColumnIndex(DbAdapter.KEY_LONGITUDE)));
-
-		// update position displays and status flag
-		if (flagDMS) {
-			String strLat = Location.convert(newLat, Location.FORMAT_SECONDS);
-			String strLon = Location.convert(newLong, Location.FORMAT_SECONDS);
-			mTxtPositionLat.setText(strLat + latOrdinal);
-			mTxtPositionLong.setText(strLon + longOrdinal);
-		} else {
-			mTxtPositionLat.setText(mNumFmt.format(newLat) + SYM_DEGREE
-					+ latOrdinal);
-			mTxtPositionLong.setText(mNumFmt.format(newLong) + SYM_DEGREE
-					+ longOrdinal);
-		}
+		mTxtPositionLat.setText(display.latitude);
+		mTxtPositionLong.setText(display.longitude);
+		mTxtCEP.setText(display.accuracy);
+		mSatLongitude = display.satLongitude;
 
-		mImgStatusGPS.setImageResource(R.drawable.status_good);
-		mTxtCEP.setText(Double.toString(location.getAccuracy()) + 'm');
-		flagGoodLocation = true;
+		if (display.azimuth != null) {
+			// write into the look angle text view
+			mTxtAzimuth.setText(display.azimuth);
+			mTxtElevation.setText(display.elevation);
+
+			// warn if target is below horizon
+			if (display.outOfView) {
+				Toast.makeText(this, getString(R.string.out_of_view),
+						Toast.LENGTH_SHORT).show();
+			}
+		}
 
-		// send the target longitude to the method call that calculate look
-		// angle and updates the az/el display view.
-		updateLookAngleDisplay();
+		// trace the time from fix arrival to display
+		if (display.fixNanos != 0) {
+			latency = (System.nanoTime() - display.fixNanos) / 1000;
+			mLatencyCount++;
+			mLatencyTotal += latency;
+			mLatencyMax = Math.max(mLatencyMax, latency);
+			Log.v(TAG, "fix to display " + latency + " us");
+		}
 	}
 
 	/**
@@ -315,36 +311,43 @@ public class LookAngle extends Activity implements LocationListener,
 	}
 
 	/**
-	 * Fills the {@link Spinner} object handled by {@link #mSpnSatPicker} with
-	 * all of the satellite targets contained in the application database.
+	 * Attaches the adapter that fills the {@link Spinner} object handled by
+	 * {@link #mSpnSatPicker} with all of the satellite targets contained in
+	 * the application database. It starts out empty; the cursor is supplied
+	 * by {@link #onSatellitesLoaded(Cursor)}.
 	 */
 	private void fillData() {
-		Cursor curTarget = mDbHelper.fetchAllSatellites();
-
-		// avoid unclosed cursor at onDestroy()...let the Activity manage this
-		// problem
-		startManagingCursor(curTarget);
-		Log.d(TAG, "DB count of satellites: " + curTarget.getCount());
-
 		// create a simplecursoradapter to mangle the db into the spinner field
-		SimpleCursorAdapter adapter = new SimpleCursorAdapter(this, // current
+		mSatAdapter = new SimpleCursorAdapter(this, // current
 				android.R.layout.simple_spinner_item, // template view
-				curTarget, // this is the cursor into the list adapter from the
-				// db
+				null, // cursor into the list adapter, set once the db is open
 				new String[] { DbAdapter.KEY_NAME }, // from db columns
 				new int[] { android.R.id.text1 }); // ...to views in the UI
 
 		// set the adapter style/data onto the spinner object
-		mSpnSatPicker.setAdapter(adapter);
+		mSpnSatPicker.setAdapter(mSatAdapter);
+	}
+
+	/**
+	 * Called by the {@link LookAngleWorker} once the database is open, with
+	 * every satellite target in it.
+	 * 
+	 * @param satellites
+	 *            {@link Cursor} over the satellites; closed by the adapter
+	 */
+	public void onSatellitesLoaded(Cursor satellites) {
+		if (flagStarted)
+			mSatAdapter.changeCursor(satellites);
+		else
+			satellites.close();
 	}
 
 	/**
 	 * When the user selects a target in the {@link Spinner} handled by
 	 * {@link LookAngle#mSpnSatPicker mSpnSatPicker}, this method will trigger.
-	 * It will retrieve the ephemeris for the satellite in the db indicated by
-	 * the parameter 'id', which then calls the
-	 * {@link #updateLookAngleDisplay(double) updateLookAngleDisplay()} to
-	 * calculate and display the look angle to the target.
+	 * It asks the {@link LookAngleWorker} to retrieve the ephemeris for the
+	 * satellite in the db indicated by the parameter 'id', then calculate the
+	 * look angle to the target and post it to {@link #onDisplay}.
 	 * 
 	 * @param parent
 	 *            The {@link AdapterView} that owns the child {@link Spinner}
@@ -362,20 +365,13 @@ public class LookAngle extends Activity implements LocationListener,
 	@Override
 	public void onItemSelected(AdapterView<?> parent, View v, int position,
 			long id) {
-		// locals
-		Cursor cur; // cursor to a 1 row result based on _id
-
-		// get the satellite data (_id, name, norad_nbr, longitude)
-		cur = mDbHelper.fetchSatellite(id);
-		startManagingCursor(cur);
-
-		// extract longitude only and set it on the mSatellite Location object
-		mSatellite.setLongitude(cur.getDouble(cur
-				.getColumnIndex(DbAdapter.KEY_LONGITUDE)));
-
-		// pass the target longitude to the updateLookAngleDisplay() method for
-		// calculation and presentation
-		updateLookAngleDisplay();
+		if (!flagGoodLocation) {
+			Toast.makeText(
+					this,
+					"Antenna location unknown\nNo look angle available\nGPS down?",
+					Toast.LENGTH_SHORT).show();
+		}
+		mWorker.select(id);
 	}
 
 	/**
@@ -386,47 +382,6 @@ public class LookAngle extends Activity implements LocationListener,
 	public void onNothingSelected(AdapterView<?> arg0) {
 	}
 
-	/**
-	 * Method to execute an update of the look angle display. Performs
-	 * {@link SatMath#getAzimuth(Location, Location) azimuth} and
-	 * {@link SatMath#getElevation(Location, Location) elevation} calculations
-	 * on the parameter <code>longitude</code>. The {@link TextView} fields are
-	 * updated with the results.
-	 * 
-	 * @param longitude
-	 *            the longitude of the target satellite.
-	 */
-	private void updateLookAngleDisplay() {
-		// locals
-		double azimuth, elevation, magDecl;
-
-		// only update display if current position is known goodish
-		if (flagGoodLocation) {
-			magDecl = SatMath.getMagneticDeclination(mAntennaSite);
-
-			// calculate look angle, adjust az for magnetic decl (becomes 'TRUE' azimuth)
-			azimuth = SatMath.getAzimuth(mAntennaSite, mSatellite) - magDecl;
-			elevation = SatMath.getElevation(mAntennaSite, mSatellite);
-
-			// write into the look angle text view
-			mTxtAzimuth.setText(mNumFmt.format(azimuth) + SYM_DEGREE);
-			mTxtElevation.setText(mNumFmt.format(elevation) + SYM_DEGREE);
-
-			// warn if target is below horizon
-			if (elevation <= 0.0) {
-				Toast.makeText(this, getString(R.string.out_of_view),
-						Toast.LENGTH_SHORT).show();
-			}
-		} else {
-			Toast.makeText(
-					this,
-					"Antenna location unknown\nNo look angle available\nGPS down?",
-					Toast.LENGTH_SHORT).show();
-		}
-		// dbg line
-		SatMath.getSkew(mAntennaSite, mSatellite);
-	}
-
 	/**
 	 * Create the options menu when the user pushes the menu key.
 	 * 
@@ -0,0 +1,148 @@
+package com.horner.LookAngle;
+
+/**
+ * Bulk look angle kernel for evaluating one antenna site at a time against a
+ * fixed set of geostationary satellites. The satellite cartesian coordinates
+ * are computed once when the kernel is built.
+ * 
+ * Each evaluation runs in two passes over structure-of-arrays scratch
+ * buffers: the first pass is the straight-line vector difference and e,n,u
+ * projection (multiply/add only, no calls or branches, so the JIT is free to
+ * unroll and vectorize it), and the second pass applies the arc tangents with
+ * the hemisphere correction hoisted out of the loop. Results are identical to
+ * {@link SiteFrame#getLookAngle(double, LookAngleResult)} when both use the
+ * same {@link TrigProvider} tier.
+ * 
+ * Not thread-safe: the scratch buffers belong to the instance, so each thread
+ * should own its own kernel.
+ * 
+ * @author etchorner
+ * 
+ */
+public final class LookAngleKernel {
+
+	// ATTRIBUTES
+	/** source of the trigonometry */
+	private final TrigProvider mTrig;
+	/** number of satellites handled by this kernel */
+	private final int mCount;
+	/** Cartesian x coordinates of the satellites */
+	private final double[] mXSat;
+	/** Cartesian y coordinates of the satellites */
+	private final double[] mYSat;
+	/** scratch geodetic east components */
+	private final double[] mE;
+	/** scratch geodetic north components */
+	private final double[] mN;
+	/** scratch geodetic up components */
+	private final double[] mU;
+
+	// END ATTRIBUTES
+
+	/**
+	 * Builds a kernel for a set of geostationary satellites.
+	 * 
+	 * @param satLon
+	 *            longitudes of the satellites (decimal degrees)
+	 */
+	public LookAngleKernel(double[] satLon) {
+		this(satLon, TrigProvider.EXACT);
+	}
+
+	/**
+	 * Builds a kernel that takes its trigonometry from the given tier.
+	 * 
+	 * @param satLon
+	 *            longitudes of the satellites (decimal degrees)
+	 * @param trig
+	 *            the {@link TrigProvider} tier to use
+	 */
+	public LookAngleKernel(double[] satLon, TrigProvider trig) {
+		mTrig = trig;
+		mCount = satLon.length;
+		mXSat = new double[mCount];
+		mYSat = new double[mCount];
+		mE = new double[mCount];
+		mN = new double[mCount];
+		mU = new double[mCount];
+
+		for (int j = 0; j < mCount; j++) {
+			double lon = Math.toRadians(satLon[j]);
+			mXSat[j] = SatMathCore.GEO_RADIUS * trig.cos(lon);
+			mYSat[j] = SatMathCore.GEO_RADIUS * trig.sin(lon);
+		}
+	}
+
+	/** @return the number of satellites handled by this kernel */
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Computes the look angle from one site to every satellite of this
+	 * kernel.
+	 * 
+	 * @param frame
+	 *            the {@link SiteFrame} of the antenna site
+	 * @param outAz
+	 *            receives the azimuths (decimal degrees)
+	 * @param outEl
+	 *            receives the elevations (decimal degrees)
+	 * @param outRange
+	 *            receives the slant ranges (meters), may be null if not
+	 *            needed
+	 * @param offset
+	 *            index in the output arrays at which the first satellite's
+	 *            result is written
+	 */
+	public void evaluate(SiteFrame frame, double[] outAz, double[] outEl,
+			double[] outRange, int offset) {
+		// LOCALS
+		final double[] xSat = mXSat, ySat = mYSat;
+		final double[] e = mE, n = mN, u = mU;
+		final double xAnt = frame.xAnt, yAnt = frame.yAnt, zAnt = frame.zAnt;
+		final double ex = frame.ex, ey = frame.ey;
+		final double nx = frame.nx, ny = frame.ny, nz = frame.nz;
+		final double ux = frame.ux, uy = frame.uy, uz = frame.uz;
+		final double z = 0 - zAnt;
+		final int count = mCount;
+		final TrigProvider trig = mTrig;
+
+		// Pass 1: satellite components and e,n,u projection
+		for (int j = 0; j < count; j++) {
+			double x = xSat[j] - xAnt;
+			double y = ySat[j] - yAnt;
+			e[j] = ex * x + ey * y;
+			n[j] = nx * x - ny * y + nz * z;
+			u[j] = ux * x + uy * y + uz * z;
+		}
+
+		// Pass 2: look angles, hemisphere correction decided once per site
+		if (frame.latRad > 0) {
+			for (int j = 0; j < count; j++) {
+				double h = e[j] * e[j] + n[j] * n[j];
+				outAz[offset + j] = Math.toDegrees(trig.atan(e[j] / n[j])
+						+ Math.PI);
+				outEl[offset + j] = Math.toDegrees(trig.atan(u[j]
+						/ Math.sqrt(h)));
+			}
+		} else {
+			for (int j = 0; j < count; j++) {
+				double h = e[j] * e[j] + n[j] * n[j];
+				double alpha = trig.atan(e[j] / n[j]);
+				if (alpha < 0)
+					alpha = alpha + 2 * Math.PI;
+				outAz[offset + j] = Math.toDegrees(alpha);
+				outEl[offset + j] = Math.toDegrees(trig.atan(u[j]
+						/ Math.sqrt(h)));
+			}
+		}
+
+		if (outRange != null) {
+			for (int j = 0; j < count; j++) {
+				outRange[offset + j] = Math.sqrt(e[j] * e[j] + n[j] * n[j]
+						+ u[j] * u[j]);
+			}
+		}
+	}
+}
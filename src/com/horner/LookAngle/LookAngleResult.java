@@ -0,0 +1,44 @@
+package com.horner.LookAngle;
+
+/**
+ * Mutable holder for the output of a look angle computation. Instances are
+ * meant to be created once and reused across calls to
+ * {@link SatMathCore#getLookAngle(double, double, double, double, LookAngleResult)
+ * getLookAngle()} so that a tracking loop does not allocate.
+ * 
+ * Not thread-safe: each thread should own its own instance.
+ * 
+ * @author etchorner
+ * 
+ */
+public final class LookAngleResult {
+
+	// ATTRIBUTES
+	/** azimuth from antenna to satellite (decimal degrees, true north) */
+	public double azimuth;
+	/** elevation (vertical angle) from antenna to satellite (decimal degrees) */
+	public double elevation;
+	/** slant range from antenna to satellite (meters) */
+	public double range;
+
+	// END ATTRIBUTES
+
+	/**
+	 * Copies the values of another result into this one.
+	 * 
+	 * @param other
+	 *            the {@link LookAngleResult} to copy from
+	 * @return this (self reference, for chaining)
+	 */
+	public LookAngleResult set(LookAngleResult other) {
+		this.azimuth = other.azimuth;
+		this.elevation = other.elevation;
+		this.range = other.range;
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "az=" + azimuth + " el=" + elevation + " range=" + range;
+	}
+}
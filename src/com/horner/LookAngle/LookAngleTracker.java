@@ -0,0 +1,261 @@
+package com.horner.LookAngle;
+
+/**
+ * Keeps a look angle current for a stream of position fixes without paying
+ * for a full recomputation on every fix. Each full computation also measures
+ * how sensitive azimuth, elevation and range are to moving the site, as
+ * derivatives per meter north, east and up, by probing the site
+ * {@link #PROBE_DISTANCE} away in each direction. Later fixes are then
+ * handled by the first of these that applies:
+ * <ul>
+ * <li>{@link #SKIPPED}: the predicted look angle is within half the display
+ * resolution of the last one returned, so nothing visible would change;</li>
+ * <li>{@link #EXTRAPOLATED}: the fix is within the extrapolation range of
+ * the last full computation, so the linear prediction is returned;</li>
+ * <li>{@link #COMPUTED}: otherwise the look angle and its derivatives are
+ * computed again for the new fix.</li>
+ * </ul>
+ * Skipped and extrapolated fixes cost a handful of multiplications. A
+ * geostationary satellite's look angle moves by roughly 1e-5 degrees per
+ * meter of site motion, so at a display resolution of 0.01 degrees a fix
+ * has to wander hundreds of meters before anything is recomputed.
+ * 
+ * Not thread-safe: each thread should own its own instance.
+ * 
+ * @author etchorner
+ * 
+ */
+public final class LookAngleTracker {
+
+	// CONSTANTS
+	/** the look angle was computed in full for the fix */
+	public static final int COMPUTED = 0;
+	/** the look angle was extrapolated from the last full computation */
+	public static final int EXTRAPOLATED = 1;
+	/** the change was below the display resolution; nothing was updated */
+	public static final int SKIPPED = 2;
+	/** default largest move handled by extrapolation (meters) */
+	public static final double DEFAULT_EXTRAPOLATION_RANGE = 2000;
+	/** site offset used to measure the derivatives (meters) */
+	static final double PROBE_DISTANCE = 100;
+
+	// END CONSTANTS
+
+	// ATTRIBUTES
+	/** half the display resolution (decimal degrees) */
+	private final double mHalfStep;
+	/** largest move handled by extrapolation (meters) */
+	private final double mExtrapolationRange;
+	/** frame of the last full computation, and of its probes */
+	private final SiteFrame mFrame = new SiteFrame();
+	/** look angle at the last full computation */
+	private final LookAngleResult mReference = new LookAngleResult();
+	/** look angle last returned */
+	private final LookAngleResult mLast = new LookAngleResult();
+	/** scratch for the probes */
+	private final LookAngleResult mProbe = new LookAngleResult();
+	/** longitude of the satellite (decimal degrees) */
+	private double mSatLon = Double.NaN;
+	/** false until the next fix must be computed in full */
+	private boolean mValid;
+	/** site of the last full computation */
+	private double mRefLat, mRefLon, mRefAlt;
+	/** meters per radian of latitude and of longitude at that site */
+	private double mNorthScale, mEastScale;
+	/** derivatives per meter north, east and up (degrees, meters) */
+	private final double[] mAzRate = new double[3];
+	private final double[] mElRate = new double[3];
+	private final double[] mRangeRate = new double[3];
+	/** number of fixes handled each way, for diagnostics */
+	private int mComputed, mExtrapolated, mSkipped;
+
+	// END ATTRIBUTES
+
+	/**
+	 * Creates a tracker with the default extrapolation range.
+	 * 
+	 * @param resolution
+	 *            smallest change in azimuth or elevation that the display
+	 *            shows (decimal degrees)
+	 */
+	public LookAngleTracker(double resolution) {
+		this(resolution, DEFAULT_EXTRAPOLATION_RANGE);
+	}
+
+	/**
+	 * Creates a tracker.
+	 * 
+	 * @param resolution
+	 *            smallest change in azimuth or elevation that the display
+	 *            shows (decimal degrees)
+	 * @param extrapolationRange
+	 *            largest move from the last full computation that is
+	 *            extrapolated (meters); 0 to always recompute once the change
+	 *            is visible
+	 */
+	public LookAngleTracker(double resolution, double extrapolationRange) {
+		mHalfStep = resolution / 2;
+		mExtrapolationRange = extrapolationRange;
+	}
+
+	/**
+	 * Selects the satellite to track. The next fix is computed in full if the
+	 * satellite has changed.
+	 * 
+	 * @param satLon
+	 *            longitude of the geostationary satellite (decimal degrees)
+	 */
+	public void setSatellite(double satLon) {
+		if (satLon != mSatLon) {
+			mSatLon = satLon;
+			mValid = false;
+		}
+	}
+
+	/** Forces the next fix to be computed in full. */
+	public void invalidate() {
+		mValid = false;
+	}
+
+	/**
+	 * Brings the look angle up to date for a new fix.
+	 * 
+	 * @param lat
+	 *            geodetic latitude of the antenna site (decimal degrees)
+	 * @param lon
+	 *            geodetic longitude of the antenna site (decimal degrees)
+	 * @param alt
+	 *            altitude of the antenna site (meters)
+	 * @param out
+	 *            receives the look angle; for {@link #SKIPPED} this is the
+	 *            one returned last
+	 * @return {@link #COMPUTED}, {@link #EXTRAPOLATED} or {@link #SKIPPED}
+	 */
+	public int update(double lat, double lon, double alt, LookAngleResult out) {
+		// LOCALS
+		double dLon = lon - mRefLon;
+		double north, east, up, distance;
+		double azimuth, elevation;
+
+		if (!mValid) {
+			compute(lat, lon, alt);
+			out.set(mLast.set(mReference));
+			return COMPUTED;
+		}
+
+		// the move since the last full computation, in meters
+		dLon -= 360 * Math.rint(dLon / 360);
+		north = Math.toRadians(lat - mRefLat) * mNorthScale;
+		east = Math.toRadians(dLon) * mEastScale;
+		up = alt - mRefAlt;
+		distance = Math.sqrt(north * north + east * east + up * up);
+
+		azimuth = mReference.azimuth + mAzRate[0] * north + mAzRate[1] * east
+				+ mAzRate[2] * up;
+		elevation = mReference.elevation + mElRate[0] * north + mElRate[1]
+				* east + mElRate[2] * up;
+
+		if (Math.abs(wrap(azimuth - mLast.azimuth)) < mHalfStep
+				&& Math.abs(elevation - mLast.elevation) < mHalfStep) {
+			mSkipped++;
+			out.set(mLast);
+			return SKIPPED;
+		}
+		if (distance <= mExtrapolationRange) {
+			mExtrapolated++;
+			mLast.azimuth = azimuth - 360 * Math.floor(azimuth / 360);
+			mLast.elevation = elevation;
+			mLast.range = mReference.range + mRangeRate[0] * north
+					+ mRangeRate[1] * east + mRangeRate[2] * up;
+			out.set(mLast);
+			return EXTRAPOLATED;
+		}
+		compute(lat, lon, alt);
+		out.set(mLast.set(mReference));
+		return COMPUTED;
+	}
+
+	/**
+	 * Computes the look angle in full, and its derivatives by moving the site
+	 * {@link #PROBE_DISTANCE} north, east and up.
+	 */
+	private void compute(double lat, double lon, double alt) {
+		// LOCALS
+		double e2 = SatMathCore.WGS84_EPSILON * SatMathCore.WGS84_EPSILON;
+		double sinLat;
+
+		mFrame.set(lat, lon, alt);
+		mFrame.getLookAngle(mSatLon, mReference);
+		mRefLat = lat;
+		mRefLon = lon;
+		mRefAlt = alt;
+		mComputed++;
+
+		// meridional and prime vertical radii, at the site's height
+		sinLat = Math.sin(mFrame.latRad);
+		mNorthScale = mFrame.N * (1 - e2) / (1 - e2 * sinLat * sinLat) + alt;
+		mEastScale = (mFrame.N + alt) * Math.cos(mFrame.latRad);
+
+		probe(0, lat + Math.toDegrees(PROBE_DISTANCE / mNorthScale), lon, alt);
+		if (mEastScale > PROBE_DISTANCE) {
+			probe(1, lat, lon + Math.toDegrees(PROBE_DISTANCE / mEastScale),
+					alt);
+			mValid = true;
+		} else {
+			// at the pole every fix is computed in full
+			mValid = false;
+		}
+		probe(2, lat, lon, alt + PROBE_DISTANCE);
+	}
+
+	/** measures the derivatives along one axis */
+	private void probe(int axis, double lat, double lon, double alt) {
+		mFrame.set(lat, lon, alt);
+		mFrame.getLookAngle(mSatLon, mProbe);
+		mAzRate[axis] = wrap(mProbe.azimuth - mReference.azimuth)
+				/ PROBE_DISTANCE;
+		mElRate[axis] = (mProbe.elevation - mReference.elevation)
+				/ PROBE_DISTANCE;
+		mRangeRate[axis] = (mProbe.range - mReference.range) / PROBE_DISTANCE;
+	}
+
+	/** wraps an azimuth difference into -180 .. 180 */
+	private static double wrap(double dAz) {
+		return dAz - 360 * Math.rint(dAz / 360);
+	}
+
+	/**
+	 * @return the azimuth change per meter of site motion in the most
+	 *         sensitive direction, at the last full computation (decimal
+	 *         degrees per meter)
+	 */
+	public double getAzimuthRate() {
+		return Math.sqrt(mAzRate[0] * mAzRate[0] + mAzRate[1] * mAzRate[1]
+				+ mAzRate[2] * mAzRate[2]);
+	}
+
+	/**
+	 * @return the elevation change per meter of site motion in the most
+	 *         sensitive direction, at the last full computation (decimal
+	 *         degrees per meter)
+	 */
+	public double getElevationRate() {
+		return Math.sqrt(mElRate[0] * mElRate[0] + mElRate[1] * mElRate[1]
+				+ mElRate[2] * mElRate[2]);
+	}
+
+	/** @return the number of fixes computed in full */
+	public int getComputedCount() {
+		return mComputed;
+	}
+
+	/** @return the number of fixes answered by extrapolation */
+	public int getExtrapolatedCount() {
+		return mExtrapolated;
+	}
+
+	/** @return the number of fixes skipped as invisible on the display */
+	public int getSkippedCount() {
+		return mSkipped;
+	}
+}
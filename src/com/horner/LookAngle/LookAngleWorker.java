@@ -0,0 +1,377 @@
+package com.horner.LookAngle;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.location.Location;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Background execution layer for the {@link LookAngle} activity. A single
+ * {@link HandlerThread} owns the {@link DbAdapter} and every piece of look
+ * angle state, so the database (including the first-run import), the
+ * geomagnetic model and the look angle math never run on the UI thread and
+ * need no locking: the worker is their only writer.
+ * 
+ * Requests are coalesced: a fix that arrives while an earlier one is still
+ * waiting replaces it, and a satellite selection replaces any selection not
+ * yet handled, so a slow device works on the newest request instead of
+ * falling behind. Only finished, formatted text is posted back to the
+ * {@link Listener} on the UI thread, and only when it differs from what was
+ * posted last. Each result carries the time its fix arrived, so the
+ * activity can trace the latency from fix to display.
+ * 
+ * Methods other than the {@link Listener} callbacks are called from the UI
+ * thread.
+ * 
+ * @author etchorner
+ * 
+ */
+final class LookAngleWorker {
+
+	// CONSTANTS
+	private static final String TAG = "LookAngleWorker"; // for DBG logging
+	private static final int MSG_OPEN = 1;
+	private static final int MSG_CLOSE = 2;
+	private static final int MSG_QUIT = 3;
+	private static final int MSG_SELECT = 4;
+	private static final int MSG_FIX = 5;
+	private static final double REFRACTION_ALT_STEP = 100; // m, table rebuild
+	private static final int DISPLAY_DECIMALS = 2;
+	private static final double DISPLAY_RESOLUTION = 0.01; // deg, 2 places
+	private static final int DMS_DECIMALS = 5; // as Location.convert
+
+	// END CONSTANTS
+
+	/**
+	 * Receives the worker's results, on the UI thread.
+	 */
+	interface Listener {
+		/**
+		 * @param satellites
+		 *            {@link Cursor} over every satellite, for the target
+		 *            picker; the receiver takes ownership
+		 */
+		void onSatellitesLoaded(Cursor satellites);
+
+		/**
+		 * @param display
+		 *            the texts to show
+		 */
+		void onDisplay(Display display);
+	}
+
+	/**
+	 * Formatted texts for the activity's fields.
+	 */
+	static final class Display {
+		/** antenna position and fix accuracy */
+		String latitude, longitude, accuracy;
+		/** look angle, both null if unchanged since the last display */
+		String azimuth, elevation;
+		/** true if the target is below the horizon */
+		boolean outOfView;
+		/** longitude of the target satellite (decimal degrees) */
+		double satLongitude;
+		/** {@link System#nanoTime()} when the fix arrived, 0 if no new fix */
+		long fixNanos;
+	}
+
+	// ATTRIBUTES
+	/** the worker thread */
+	private final HandlerThread mThread;
+	/** handler running requests on the worker thread */
+	private final Handler mHandler;
+	/** handler posting results to the UI thread */
+	private final Handler mUiHandler;
+	/** receiver of the results */
+	private final Listener mListener;
+	/** database, touched only on the worker thread */
+	private final DbAdapter mDbHelper;
+	/** guards the pending fix fields below */
+	private final Object mFixLock = new Object();
+	/** newest fix not yet taken by the worker, null if none */
+	private Location mPendingFix;
+	/** display mode requested with the pending fix */
+	private boolean mPendingDms;
+	/** arrival time of the pending fix */
+	private long mPendingNanos;
+	/** fixes replaced before the worker reached them */
+	private int mCoalesced;
+	/** set by quit(); results still in flight are dropped */
+	private volatile boolean mQuit;
+
+	// worker thread only
+	/** true while the database is open */
+	private boolean mOpen;
+	/** fix being displayed, null until the first one */
+	private Location mFix;
+	/** display mode of lat/long */
+	private boolean mDms;
+	/** arrival time of mFix */
+	private long mFixNanos;
+	/** longitude of the target satellite (decimal degrees) */
+	private double mSatLongitude = Double.NaN;
+	/** {@link LookAngleTracker} skipping fixes that change nothing shown */
+	private final LookAngleTracker mTracker;
+	/** {@link LookAngleResult} reused by every look angle update */
+	private final LookAngleResult mLookAngle = new LookAngleResult();
+	/** {@link DeclinationCache} so fixes don't rebuild the magnetic model */
+	private final DeclinationCache mDeclCache;
+	/** {@link Refraction} table for the altitude in mRefractionAlt */
+	private Refraction mRefraction;
+	/** antenna altitude the refraction table was built for (meters) */
+	private double mRefractionAlt;
+	/** text buffer reused by every display update */
+	private final StringBuilder mText = new StringBuilder();
+	/** last display posted, null if none */
+	private Display mLast;
+
+	// END ATTRIBUTES
+
+	/**
+	 * Starts the worker thread.
+	 * 
+	 * @param ctx
+	 *            the Context the database is opened in
+	 * @param listener
+	 *            receiver of the results, called on the UI thread
+	 */
+	LookAngleWorker(Context ctx, Listener listener) {
+		mListener = listener;
+		mDbHelper = new DbAdapter(ctx);
+		mTracker = new LookAngleTracker(DISPLAY_RESOLUTION);
+		mDeclCache = new DeclinationCache(SatMath.GEOMAGNETIC_FIELD);
+
+		mThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+		mThread.start();
+		mHandler = new Handler(mThread.getLooper()) {
+			@Override
+			public void handleMessage(Message msg) {
+				dispatch(msg);
+			}
+		};
+		mUiHandler = new Handler(Looper.getMainLooper());
+	}
+
+	/** Opens the database and loads the satellite list. */
+	void open() {
+		mHandler.sendEmptyMessage(MSG_OPEN);
+	}
+
+	/** Closes the database. */
+	void close() {
+		mHandler.sendEmptyMessage(MSG_CLOSE);
+	}
+
+	/**
+	 * Closes the database and stops the worker thread once the requests
+	 * already queued have run. No results are delivered after this call.
+	 */
+	void quit() {
+		mQuit = true;
+		mUiHandler.removeCallbacksAndMessages(null);
+		mHandler.sendEmptyMessage(MSG_QUIT);
+	}
+
+	/**
+	 * Selects the target satellite, replacing any selection not yet handled.
+	 * 
+	 * @param id
+	 *            the {@link DbAdapter#KEY_ID _id} of the satellite
+	 */
+	void select(long id) {
+		mHandler.removeMessages(MSG_SELECT);
+		mHandler.sendMessage(mHandler.obtainMessage(MSG_SELECT,
+				Long.valueOf(id)));
+	}
+
+	/**
+	 * Hands over a new fix, replacing any fix not yet handled.
+	 * 
+	 * @param fix
+	 *            the antenna position; not modified afterwards by the caller
+	 * @param dms
+	 *            true to format the position in degrees, minutes, seconds
+	 */
+	void postFix(Location fix, boolean dms) {
+		synchronized (mFixLock) {
+			if (mPendingFix != null)
+				mCoalesced++;
+			else
+				mHandler.sendEmptyMessage(MSG_FIX);
+			mPendingFix = fix;
+			mPendingDms = dms;
+			mPendingNanos = System.nanoTime();
+		}
+	}
+
+	/** runs one request on the worker thread */
+	private void dispatch(Message msg) {
+		switch (msg.what) {
+		case MSG_OPEN:
+			if (!mOpen) {
+				mDbHelper.open();
+				mOpen = true;
+			}
+			final Cursor satellites = mDbHelper.fetchAllSatellites();
+			// fill the cursor window here rather than on the UI thread
+			Log.d(TAG, "DB count of satellites: " + satellites.getCount());
+			mUiHandler.post(new Runnable() {
+				public void run() {
+					if (mQuit)
+						satellites.close();
+					else
+						mListener.onSatellitesLoaded(satellites);
+				}
+			});
+			break;
+		case MSG_CLOSE:
+		case MSG_QUIT:
+			if (mOpen) {
+				mDbHelper.close();
+				mOpen = false;
+			}
+			synchronized (mFixLock) {
+				Log.d(TAG, "look angle fixes: " + mTracker.getComputedCount()
+						+ " computed, " + mTracker.getExtrapolatedCount()
+						+ " extrapolated, " + mTracker.getSkippedCount()
+						+ " skipped, " + mCoalesced + " coalesced");
+			}
+			if (msg.what == MSG_QUIT)
+				mThread.quit();
+			break;
+		case MSG_SELECT:
+			if (!mOpen)
+				break;
+			Cursor cur = mDbHelper.fetchSatellite(((Long) msg.obj)
+					.longValue());
+			try {
+				mSatLongitude = cur.getDouble(cur
+						.getColumnIndex(DbAdapter.KEY_LONGITUDE));
+			} finally {
+				cur.close();
+			}
+			update(false);
+			break;
+		case MSG_FIX:
+			synchronized (mFixLock) {
+				mFix = mPendingFix;
+				mDms = mPendingDms;
+				mFixNanos = mPendingNanos;
+				mPendingFix = null;
+			}
+			update(true);
+			break;
+		}
+	}
+
+	/**
+	 * Brings the display up to date with the current fix and target, and
+	 * posts it if anything visible changed.
+	 * 
+	 * @param newFix
+	 *            true if a new fix triggered the update, for the latency trace
+	 */
+	private void update(boolean newFix) {
+		// locals
+		final Display display = new Display();
+		double azimuth, elevation, magDecl, altitude;
+		boolean changed = false;
+
+		if (mFix == null)
+			return;
+		display.fixNanos = newFix ? mFixNanos : 0;
+		display.satLongitude = mSatLongitude;
+		formatPosition(display);
+
+		// calculate look angle unless the fix moved less than is shown
+		if (!Double.isNaN(mSatLongitude)) {
+			mTracker.setSatellite(mSatLongitude);
+			changed = mTracker.update(mFix.getLatitude(), mFix.getLongitude(),
+					mFix.getAltitude(), mLookAngle) != LookAngleTracker.SKIPPED;
+		}
+		if (changed) {
+			magDecl = mDeclCache.getDeclination(mFix.getLatitude(), mFix
+					.getLongitude(), mFix.getAltitude(), System
+					.currentTimeMillis());
+
+			// adjust az for magnetic decl (becomes 'TRUE' azimuth)
+			azimuth = mLookAngle.azimuth - magDecl;
+			// point at the refracted (apparent) elevation; the ITU table
+			// depends on site altitude, so rebuild it on a real change only
+			altitude = mFix.getAltitude();
+			if (mRefraction == null || Math.abs(altitude - mRefractionAlt)
+					> REFRACTION_ALT_STEP) {
+				mRefractionAlt = altitude;
+				mRefraction = Refraction.itu(mRefractionAlt);
+			}
+			elevation = mRefraction.getApparentElevation(mLookAngle.elevation);
+
+			display.azimuth = formatAngle(azimuth);
+			display.elevation = formatAngle(elevation);
+			display.outOfView = elevation <= 0.0;
+		} else if (mLast != null && display.latitude.equals(mLast.latitude)
+				&& display.longitude.equals(mLast.longitude)
+				&& display.accuracy.equals(mLast.accuracy)) {
+			// nothing visible changed
+			return;
+		}
+
+		mLast = display;
+		mUiHandler.post(new Runnable() {
+			public void run() {
+				if (!mQuit)
+					mListener.onDisplay(display);
+			}
+		});
+	}
+
+	/** formats the antenna position and accuracy of the current fix */
+	private void formatPosition(Display display) {
+		// locals
+		float newLat = (float) mFix.getLatitude();
+		float newLong = (float) mFix.getLongitude();
+		char latOrdinal;
+		char longOrdinal;
+
+		// create ordinals and discard negative signs
+		if (newLat >= 0)
+			latOrdinal = 'N';
+		else
+			latOrdinal = 'S';
+		newLat = Math.abs(newLat);
+
+		if (newLong >= 0)
+			longOrdinal = 'E';
+		else
+			longOrdinal = 'W';
+		newLong = Math.abs(newLong);
+
+		display.latitude = formatCoordinate(newLat, latOrdinal);
+		display.longitude = formatCoordinate(newLong, longOrdinal);
+		display.accuracy = Double.toString(mFix.getAccuracy()) + 'm';
+	}
+
+	/** formats a look angle to the display resolution */
+	private String formatAngle(double value) {
+		mText.setLength(0);
+		return CoordinateFormat.appendFixed(value, DISPLAY_DECIMALS, mText)
+				.append(CoordinateFormat.DEGREE).toString();
+	}
+
+	/** formats a latitude or longitude magnitude in the display mode */
+	private String formatCoordinate(double value, char ordinal) {
+		mText.setLength(0);
+		if (mDms)
+			CoordinateFormat.appendDms(value, DMS_DECIMALS, mText);
+		else
+			CoordinateFormat.appendFixed(value, DISPLAY_DECIMALS, mText)
+					.append(CoordinateFormat.DEGREE);
+		return mText.append(ordinal).toString();
+	}
+}
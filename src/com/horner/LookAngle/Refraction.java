@@ -0,0 +1,205 @@
+package com.horner.LookAngle;
+
+/**
+ * Atmospheric refraction correction for look angle elevations. Near the
+ * horizon the atmosphere bends the path to the satellite upward by tenths of
+ * a degree, so the antenna has to point above the geometric elevation that
+ * {@link SatMathCore} reports.
+ * 
+ * Two models are provided:
+ * <ul>
+ * <li>{@link #bennett(double, double) Bennett} (in Saemundsson's form, for a
+ * geometric rather than an apparent elevation), the optical refraction,
+ * scaled for surface pressure and temperature.</li>
+ * <li>{@link #itu(double) ITU-R P.834}, the radio refraction of a reference
+ * atmosphere, which depends on the altitude of the site.</li>
+ * </ul>
+ * Either model is evaluated once, when the instance is built, into a table
+ * over geometric elevation from {@link #MIN_ELEVATION} to 90 degrees at
+ * {@link #TABLE_STEP} spacing. A correction then costs one linear
+ * interpolation, so the live display and the batch paths pay the same small
+ * price. Interpolation error is about 2e-4 degrees at worst (under a second
+ * of arc), well inside the models' own accuracy; for ITU it is larger only
+ * in the one cell containing the tangent-ray limit, where the formula stops
+ * being valid anyway. Below the lowest elevation a model is valid for,
+ * {@link #MIN_ELEVATION} for Bennett and the tangent-ray limit for ITU, the
+ * correction is 0: the ray from the satellite no longer reaches the site
+ * through the atmosphere the formulas describe, and the geometric elevation
+ * is reported as it is.
+ * 
+ * Instances are immutable and thread-safe.
+ * 
+ * @author etchorner
+ * 
+ */
+public final class Refraction {
+
+	// CONSTANTS
+	/** lowest geometric elevation in the table (decimal degrees) */
+	public static final double MIN_ELEVATION = -2;
+	/** spacing of the table (decimal degrees) */
+	public static final double TABLE_STEP = 0.05;
+	/** standard surface pressure (millibars) */
+	public static final double STANDARD_PRESSURE = 1010;
+	/** standard surface temperature (degrees Celsius) */
+	public static final double STANDARD_TEMPERATURE = 10;
+	/** highest site the ITU-R P.834 formula covers (meters) */
+	public static final double ITU_MAX_ALTITUDE = 3000;
+
+	private static final int TABLE_SIZE = (int) Math.round((90 - MIN_ELEVATION)
+			/ TABLE_STEP) + 1;
+	private static final double SCALE = 1 / TABLE_STEP;
+
+	/** Bennett refraction at standard pressure and temperature */
+	public static final Refraction STANDARD = bennett(STANDARD_PRESSURE,
+			STANDARD_TEMPERATURE);
+
+	// END CONSTANTS
+
+	// ATTRIBUTES
+	/** correction at each table elevation (decimal degrees) */
+	private final double[] mTable = new double[TABLE_SIZE];
+	/** lowest elevation the model is valid for (decimal degrees) */
+	private final double mMinElevation;
+
+	// END ATTRIBUTES
+
+	private Refraction(double minElevation) {
+		mMinElevation = minElevation;
+	}
+
+	/**
+	 * Builds the Bennett (Saemundsson) optical refraction table:
+	 * 
+	 * <pre>
+	 * R = 1.02 / tan(h + 10.3 / (h + 5.11)) arc minutes
+	 * </pre>
+	 * 
+	 * for geometric elevation <code>h</code>, offset to zero at the zenith and
+	 * scaled by <code>P / 1010 * 283 / (273 + T)</code>. Below
+	 * {@link #MIN_ELEVATION} the correction is 0.
+	 * 
+	 * @param pressure
+	 *            surface pressure (millibars)
+	 * @param temperature
+	 *            surface temperature (degrees Celsius)
+	 * @return the refraction table
+	 */
+	public static Refraction bennett(double pressure, double temperature) {
+		// LOCALS
+		Refraction rtnRefraction = new Refraction(MIN_ELEVATION);
+		double scale = pressure / STANDARD_PRESSURE
+				* (273 + STANDARD_TEMPERATURE) / (273 + temperature);
+
+		for (int i = 0; i < TABLE_SIZE; i++) {
+			double h = MIN_ELEVATION + i * TABLE_STEP;
+			double r = 1.02 / Math.tan(Math.toRadians(h + 10.3 / (h + 5.11)))
+					+ 0.0019279;
+			rtnRefraction.mTable[i] = scale * r / 60;
+		}
+		return rtnRefraction;
+	}
+
+	/**
+	 * Builds the ITU-R P.834 radio refraction table for a site:
+	 * 
+	 * <pre>
+	 * tau = 1 / (1.314 + 0.6437 t + 0.02869 t^2
+	 *     + h (0.2305 + 0.09428 t + 0.01096 t^2) + 0.008583 h^2) degrees
+	 * </pre>
+	 * 
+	 * for geometric elevation <code>t</code> (degrees) and site altitude
+	 * <code>h</code> (km), valid down to the elevation of a ray tangent to the
+	 * earth, <code>-0.875 sqrt(h)</code>. Below that limit the correction is
+	 * 0.
+	 * 
+	 * @param altitude
+	 *            altitude of the antenna site (meters), clamped to 0 ..
+	 *            {@link #ITU_MAX_ALTITUDE}
+	 * @return the refraction table
+	 */
+	public static Refraction itu(double altitude) {
+		// LOCALS
+		double h = Math.min(Math.max(altitude, 0), ITU_MAX_ALTITUDE) / 1000;
+		double tMin = -0.875 * Math.sqrt(h);
+		Refraction rtnRefraction = new Refraction(tMin);
+
+		for (int i = 0; i < TABLE_SIZE; i++) {
+			double t = Math.max(MIN_ELEVATION + i * TABLE_STEP, tMin);
+			rtnRefraction.mTable[i] = 1 / (1.314 + 0.6437 * t + 0.02869 * t * t
+					+ h * (0.2305 + 0.09428 * t + 0.01096 * t * t)
+					+ 0.008583 * h * h);
+		}
+		return rtnRefraction;
+	}
+
+	/**
+	 * Looks up the refraction at a geometric elevation.
+	 * 
+	 * @param elevation
+	 *            geometric elevation (decimal degrees)
+	 * @return the amount the apparent elevation exceeds the geometric one
+	 *         (decimal degrees), 0 below the lowest elevation the model is
+	 *         valid for
+	 */
+	public double getCorrection(double elevation) {
+		// LOCALS
+		double x = (elevation - MIN_ELEVATION) * SCALE;
+		int i;
+
+		if (!(elevation >= mMinElevation))
+			return 0;
+		if (!(x > 0))
+			return mTable[0];
+		if (x >= TABLE_SIZE - 1)
+			return mTable[TABLE_SIZE - 1];
+		i = (int) x;
+		return mTable[i] + (x - i) * (mTable[i + 1] - mTable[i]);
+	}
+
+	/**
+	 * @param elevation
+	 *            geometric elevation (decimal degrees)
+	 * @return the refracted (apparent) elevation to point the antenna at
+	 *         (decimal degrees)
+	 */
+	public double getApparentElevation(double elevation) {
+		return elevation + getCorrection(elevation);
+	}
+
+	/**
+	 * Batch form of {@link #getApparentElevation(double)}: corrects a run of
+	 * geometric elevations in place, such as the output of
+	 * {@link SatMathCore#getLookAngles(double[], double[], double[], double[], double[], double[], double[])
+	 * getLookAngles()}.
+	 * 
+	 * @param elevation
+	 *            elevations (decimal degrees), replaced by apparent ones
+	 * @param offset
+	 *            index of the first elevation to correct
+	 * @param count
+	 *            number of elevations to correct
+	 */
+	public void apply(double[] elevation, int offset, int count) {
+		// LOCALS
+		final double[] table = mTable;
+		final double min = mMinElevation;
+		final int last = TABLE_SIZE - 1;
+
+		for (int k = offset; k < offset + count; k++) {
+			double x = (elevation[k] - MIN_ELEVATION) * SCALE;
+			double c;
+			if (!(elevation[k] >= min)) {
+				c = 0;
+			} else if (!(x > 0)) {
+				c = table[0];
+			} else if (x >= last) {
+				c = table[last];
+			} else {
+				int i = (int) x;
+				c = table[i] + (x - i) * (table[i + 1] - table[i]);
+			}
+			elevation[k] += c;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package com.horner.LookAngle;
+
+/**
+ * Column-oriented snapshot of the satellite table, loaded once from the
+ * {@link DbAdapter} so that bulk calculations can run over primitive arrays
+ * rather than walking a {@link android.database.Cursor}. Element
+ * <code>i</code> of every array describes the same satellite.
+ * 
+ * @author etchorner
+ * 
+ */
+public final class SatCatalog {
+
+	// ATTRIBUTES
+	/** {@link DbAdapter#KEY_ID _id} of each satellite row */
+	public final long[] ids;
+	/** {@link DbAdapter#KEY_NORAD_NBR NORAD} catalog number of each satellite */
+	public final int[] noradNbrs;
+	/** longitude of each satellite (decimal degrees) */
+	public final double[] longitudes;
+	/** orbital inclination of each satellite (decimal degrees), NaN if none */
+	public final double[] inclinations;
+	/** display name of each satellite */
+	public final String[] names;
+
+	// END ATTRIBUTES
+
+	/**
+	 * Creates an empty catalog of the given size, to be filled in by the
+	 * loader.
+	 * 
+	 * @param size
+	 *            number of satellites
+	 */
+	SatCatalog(int size) {
+		ids = new long[size];
+		noradNbrs = new int[size];
+		longitudes = new double[size];
+		inclinations = new double[size];
+		names = new String[size];
+	}
+
+	/** @return the number of satellites in the catalog */
+	public int size() {
+		return ids.length;
+	}
+}
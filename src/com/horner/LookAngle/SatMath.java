@@ -5,7 +5,9 @@ import android.location.Location;
 
 /**
  * Container class for public static methods. Provides some spherical and
- * ellipsoidal geometry calculations.
+ * ellipsoidal geometry calculations on {@link Location} objects, and the
+ * Android geomagnetic model. These are thin wrappers; the math itself lives
+ * in the Android-independent {@link SatMathCore}.
  * 
  * @author etchorner
  * 
@@ -34,81 +36,10 @@ public class SatMath {
 	 *         and the 1st element is the elevation.
 	 */
 	public static double[] getLookAngle(Location site, Location sat) {
-		// LOCALS
-		/** return value array with azimut and elevation */
-		double[] rtnLookAngle = new double[2];
-		/** altitude of antenna site */
-		double siteAlt = site.getAltitude();
-		/** latitude of antenna site */
-		double siteLat = Math.toRadians(site.getLatitude());
-		/** longitude of antenna site */
-		double siteLon = Math.toRadians(site.getLongitude());
-		/** longitude of satellite (sub-satellite point) */
-		double satLon = Math.toRadians(sat.getLongitude());
-		/** Semi-major axis of WGS84 ellipsoid */
-		long a = 6378137;
-		/** Semi-minor axis of WGS84 ellipsoid */
-		double b = 6356752.3142d;
-		/** Eccentricity of WGS84 ellipsoid */
-		double epsilon = Math.sqrt((a * a - b * b) / (a * a));
-		/** Principal radius of curvature in the prime vertical */
-		double N = a / Math.sqrt(1 - Math.pow(epsilon * Math.sin(siteLat), 2));
-		/** Average satellite altitude above ellipsoid origin (in meters) */
-		long r = 42200000;
-		/** Cartesian coordinates of antenna site */
-		double x_ant, y_ant, z_ant;
-		/** Cartesion coordinates of satellite */
-		double x_sat, y_sat, z_sat;
-		/** Satellite terrestrial components */
-		double x, y, z;
-		/**
-		 * local (right handed) geodetic components, e-axis points to geodetic
-		 * east, n points to geodetic north and u points to geodetic zenith
-		 */
-		double e, n, u;
-		/** azimuth from antenna to satellite */
-		double alpha;
-		/** elevation (vertical angle) from antenna to satellite */
-		double nu;
-
-		// Step 1: Transform curvilinear to cartesian coordinates
-		// a. Antenna site
-		x_ant = (N + siteAlt) * Math.cos(siteLon) * Math.cos(siteLat);
-		y_ant = (N + siteAlt) * Math.sin(siteLon) * Math.cos(siteLat);
-		z_ant = (N * (1 - Math.pow(epsilon, 2)) + siteAlt) * Math.sin(siteLat);
-
-		// b. Satellite location
-		x_sat = r * Math.cos(satLon);
-		y_sat = r * Math.sin(satLon);
-		z_sat = 0;
-
-		// Step 2: Satellite components (x,y,z)
-		x = x_sat - x_ant;
-		y = y_sat - y_ant;
-		z = z_sat - z_ant;
-
-		// Step 3: Transform satellite components to geodetic e,n,u
-		e = -1 * Math.sin(siteLon) * x + Math.cos(siteLon) * y;
-		n = -1 * Math.sin(siteLat) * Math.cos(siteLon) * x - Math.sin(siteLat)
-				* Math.sin(siteLon) * y + Math.cos(siteLat) * z;
-		u = Math.cos(siteLat) * Math.cos(siteLon) * x + Math.cos(siteLat)
-				* Math.sin(siteLon) * y + Math.sin(siteLat) * z;
-
-		// Step 4: Calculate look angle
-		alpha = Math.atan(e / n);
-		nu = Math.atan(u / Math.sqrt(e * e + n * n));
-
-		// flip negative azimuth in the southern hemisphere
-		if (alpha < 0 && siteLat <= 0)
-			alpha = alpha + 2 * Math.PI;
-
-		// add a half circle
-		if (siteLat > 0)
-			alpha = alpha + Math.PI;
-
-		rtnLookAngle[0] = Math.toDegrees(alpha);
-		rtnLookAngle[1] = Math.toDegrees(nu);
-		return rtnLookAngle;
+		LookAngleResult result = SatMathCore.getLookAngle(site.getLatitude(),
+				site.getLongitude(), site.getAltitude(), sat.getLongitude(),
+				new LookAngleResult());
+		return new double[] { result.azimuth, result.elevation };
 	}
 
 	/**
@@ -126,29 +57,8 @@ public class SatMath {
 	 * 
 	 */
 	public static double getAzimuth(Location site, Location sat) {
-		double azimuth = 0.0;
-		double beta = 0.0;
-		double siteLat = Math.toRadians(site.getLatitude());
-		double satLon = Math.toRadians(sat.getLongitude());
-		double siteLon = Math.toRadians(site.getLongitude());
-
-		// get the right spherical triangle beta angle
-		// from the antenna to the sub-satellite spot
-		beta = Math.tan(satLon - siteLon) / Math.sin(siteLat);
-
-		// azimuth is the supplement of the beta angle
-		if (Math.abs(beta) < Math.PI)
-			azimuth = Math.PI - Math.atan(beta);
-		else
-			azimuth = Math.PI + Math.atan(beta);
-
-		// manage N/S hemispheres
-		if (site.getLatitude() < 0.0)
-			azimuth = azimuth - Math.PI;
-		if (azimuth < 0.0)
-			azimuth = azimuth + 2 * Math.PI;
-
-		return Math.toDegrees(azimuth);
+		return SatMathCore.getAzimuth(site.getLatitude(),
+				site.getLongitude(), sat.getLongitude());
 	}
 
 	/**
@@ -166,19 +76,8 @@ public class SatMath {
 	 * 
 	 */
 	public static double getElevation(Location site, Location sat) {
-		double elev = 0.0f;
-		double siteLat = Math.toRadians(site.getLatitude());
-		double satLon = Math.toRadians(sat.getLongitude());
-		double siteLon = Math.toRadians(site.getLongitude());
-		double deltaLon = satLon - siteLon;
-
-		// TODO: Dispose of the magic number 0.1512 by converting
-		// to a constant (after I understand it's provenance)
-		elev = Math.atan((Math.cos(deltaLon) * Math.cos(siteLat) - 0.1512f)
-				/ Math.sqrt(1 - (Math.pow(Math.cos(deltaLon), 2) * Math.pow(
-						Math.cos(siteLat), 2))));
-
-		return Math.toDegrees(elev);
+		return SatMathCore.getElevation(site.getLatitude(),
+				site.getLongitude(), sat.getLongitude());
 	}
 
 	/**
@@ -194,11 +93,8 @@ public class SatMath {
 	 *            geostationary satellite target.
 	 */
 	public static double getSkew(Location site, Location sat) {
-		double longdiff = Math.toRadians(site.getLongitude()
-				- sat.getLongitude());
-		double latr = Math.toRadians(site.getLatitude());
-		double skew = (Math.atan(Math.sin(longdiff) / Math.tan(latr)));
-		return Math.toDegrees(skew);
+		return SatMathCore.getSkew(site.getLatitude(),
+				site.getLongitude(), sat.getLongitude());
 	}
 
 	/**
@@ -211,10 +107,41 @@ public class SatMath {
 	 *         is east declination, negative is west declination.
 	 */
 	public static double getMagneticDeclination(Location site) {
-		GeomagneticField mGeoMagFld = new GeomagneticField(
-				(float) site.getLatitude(), (float) site.getLongitude(),
-				(float) site.getAltitude(), System.currentTimeMillis());
+		return getMagneticDeclination(site.getLatitude(), site.getLongitude(),
+				site.getAltitude(), System.currentTimeMillis());
+	}
+
+	/**
+	 * Primitive form of {@link #getMagneticDeclination(Location)
+	 * getMagneticDeclination()} for an arbitrary time.
+	 * 
+	 * @param lat
+	 *            geodetic latitude (decimal degrees)
+	 * @param lon
+	 *            geodetic longitude (decimal degrees)
+	 * @param alt
+	 *            altitude (meters)
+	 * @param timeMillis
+	 *            time of interest, in milliseconds since January 1, 1970 UTC
+	 * @return the magnetic declination. Positive value is east declination,
+	 *         negative is west declination.
+	 */
+	public static double getMagneticDeclination(double lat, double lon,
+			double alt, long timeMillis) {
+		GeomagneticField mGeoMagFld = new GeomagneticField((float) lat,
+				(float) lon, (float) alt, timeMillis);
 
 		return mGeoMagFld.getDeclination();
 	}
+
+	/**
+	 * {@link DeclinationModel} backed by Android's
+	 * {@link GeomagneticField}, one field evaluation per call.
+	 */
+	public static final DeclinationModel GEOMAGNETIC_FIELD = new DeclinationModel() {
+		public double getDeclination(double lat, double lon, double alt,
+				long timeMillis) {
+			return getMagneticDeclination(lat, lon, alt, timeMillis);
+		}
+	};
 }
\ No newline at end of file
@@ -0,0 +1,359 @@
+package com.horner.LookAngle;
+
+/**
+ * Container class for the public static look angle methods on primitive
+ * coordinates. Has no Android dependencies, so the same math runs in the
+ * application (through the {@link android.location.Location} wrappers in
+ * {@link SatMath}) and on a plain JVM for batch work and benchmarks.
+ * 
+ * @author etchorner
+ * 
+ */
+public final class SatMathCore {
+
+	// CONSTANTS
+	/** Semi-major axis of WGS84 ellipsoid */
+	static final long WGS84_A = 6378137;
+	/** Semi-minor axis of WGS84 ellipsoid */
+	static final double WGS84_B = 6356752.3142d;
+	/** Eccentricity of WGS84 ellipsoid */
+	static final double WGS84_EPSILON = Math.sqrt((WGS84_A * WGS84_A - WGS84_B
+			* WGS84_B)
+			/ (WGS84_A * WGS84_A));
+	/** Average geostationary satellite altitude above ellipsoid origin (m) */
+	static final long GEO_RADIUS = 42200000;
+	/**
+	 * Largest geocentric latitude (decimal degrees) at which a line of sight
+	 * is taken to meet the geostationary belt, about the beamwidth of a small
+	 * dish
+	 */
+	static final double GEO_BELT_TOLERANCE = 1;
+
+	// END CONSTANTS
+
+	private SatMathCore() {
+	}
+
+	/**
+	 * Uses Soler's rigorous elliptical method to compute azimuth and vertical
+	 * angle to a geostationary satellite. Writes the azimuth, elevation and
+	 * slant range into the caller-supplied holder and allocates nothing, so it
+	 * is suitable for high-rate tracking loops.
+	 * 
+	 * Soler, et al. (1995)
+	 * <em>Determination of Look Angles to Geostationary Communication Satellites</em>
+	 * 
+	 * @param inSiteLat
+	 *            geodetic latitude of the antenna site (decimal degrees)
+	 * @param inSiteLon
+	 *            geodetic longitude of the antenna site (decimal degrees)
+	 * @param siteAlt
+	 *            altitude of the antenna site (meters)
+	 * @param inSatLon
+	 *            longitude of the geostationary satellite (decimal degrees)
+	 * @param out
+	 *            the {@link LookAngleResult} to fill in
+	 * @return the <code>out</code> parameter, for chaining
+	 */
+	public static LookAngleResult getLookAngle(double inSiteLat,
+			double inSiteLon, double siteAlt, double inSatLon,
+			LookAngleResult out) {
+		return getLookAngle(inSiteLat, inSiteLon, siteAlt, inSatLon, out,
+				TrigProvider.EXACT);
+	}
+
+	/**
+	 * {@link #getLookAngle(double, double, double, double, LookAngleResult)
+	 * getLookAngle()} with the trigonometry taken from the given tier.
+	 * 
+	 * @param inSiteLat
+	 *            geodetic latitude of the antenna site (decimal degrees)
+	 * @param inSiteLon
+	 *            geodetic longitude of the antenna site (decimal degrees)
+	 * @param siteAlt
+	 *            altitude of the antenna site (meters)
+	 * @param inSatLon
+	 *            longitude of the geostationary satellite (decimal degrees)
+	 * @param out
+	 *            the {@link LookAngleResult} to fill in
+	 * @param trig
+	 *            the {@link TrigProvider} tier to use
+	 * @return the <code>out</code> parameter, for chaining
+	 */
+	public static LookAngleResult getLookAngle(double inSiteLat,
+			double inSiteLon, double siteAlt, double inSatLon,
+			LookAngleResult out, TrigProvider trig) {
+		// LOCALS
+		/** latitude of antenna site */
+		double siteLat = Math.toRadians(inSiteLat);
+		/** longitude of antenna site */
+		double siteLon = Math.toRadians(inSiteLon);
+		/** longitude of satellite (sub-satellite point) */
+		double satLon = Math.toRadians(inSatLon);
+		/** Eccentricity of WGS84 ellipsoid */
+		double epsilon = WGS84_EPSILON;
+		/** Principal radius of curvature in the prime vertical */
+		double N = WGS84_A
+				/ Math.sqrt(1 - Math.pow(epsilon * trig.sin(siteLat), 2));
+		/** Average satellite altitude above ellipsoid origin (in meters) */
+		long r = GEO_RADIUS;
+		/** Cartesian coordinates of antenna site */
+		double x_ant, y_ant, z_ant;
+		/** Cartesion coordinates of satellite */
+		double x_sat, y_sat, z_sat;
+		/** Satellite terrestrial components */
+		double x, y, z;
+		/**
+		 * local (right handed) geodetic components, e-axis points to geodetic
+		 * east, n points to geodetic north and u points to geodetic zenith
+		 */
+		double e, n, u;
+		/** azimuth from antenna to satellite */
+		double alpha;
+		/** elevation (vertical angle) from antenna to satellite */
+		double nu;
+
+		// Step 1: Transform curvilinear to cartesian coordinates
+		// a. Antenna site
+		x_ant = (N + siteAlt) * trig.cos(siteLon) * trig.cos(siteLat);
+		y_ant = (N + siteAlt) * trig.sin(siteLon) * trig.cos(siteLat);
+		z_ant = (N * (1 - Math.pow(epsilon, 2)) + siteAlt) * trig.sin(siteLat);
+
+		// b. Satellite location
+		x_sat = r * trig.cos(satLon);
+		y_sat = r * trig.sin(satLon);
+		z_sat = 0;
+
+		// Step 2: Satellite components (x,y,z)
+		x = x_sat - x_ant;
+		y = y_sat - y_ant;
+		z = z_sat - z_ant;
+
+		// Step 3: Transform satellite components to geodetic e,n,u
+		e = -1 * trig.sin(siteLon) * x + trig.cos(siteLon) * y;
+		n = -1 * trig.sin(siteLat) * trig.cos(siteLon) * x - trig.sin(siteLat)
+				* trig.sin(siteLon) * y + trig.cos(siteLat) * z;
+		u = trig.cos(siteLat) * trig.cos(siteLon) * x + trig.cos(siteLat)
+				* trig.sin(siteLon) * y + trig.sin(siteLat) * z;
+
+		// Step 4: Calculate look angle
+		alpha = trig.atan(e / n);
+		nu = trig.atan(u / Math.sqrt(e * e + n * n));
+
+		// flip negative azimuth in the southern hemisphere
+		if (alpha < 0 && siteLat <= 0)
+			alpha = alpha + 2 * Math.PI;
+
+		// add a half circle
+		if (siteLat > 0)
+			alpha = alpha + Math.PI;
+
+		out.azimuth = Math.toDegrees(alpha);
+		out.elevation = Math.toDegrees(nu);
+		out.range = Math.sqrt(e * e + n * n + u * u);
+		return out;
+	}
+
+	/**
+	 * Inverse of {@link #getLookAngle(double, double, double, double, LookAngleResult)
+	 * getLookAngle()}: solves for the longitude of the geostationary satellite
+	 * an antenna is pointed at. See
+	 * {@link SiteFrame#getSatelliteLongitude(double, double)}.
+	 * 
+	 * @param siteLat
+	 *            geodetic latitude of the antenna site (decimal degrees)
+	 * @param siteLon
+	 *            geodetic longitude of the antenna site (decimal degrees)
+	 * @param siteAlt
+	 *            altitude of the antenna site (meters)
+	 * @param azimuth
+	 *            true azimuth of the antenna (decimal degrees)
+	 * @param elevation
+	 *            elevation of the antenna (decimal degrees)
+	 * @return longitude of the satellite (decimal degrees), or NaN if the
+	 *         antenna does not point at the geostationary belt
+	 */
+	public static double getSatelliteLongitude(double siteLat, double siteLon,
+			double siteAlt, double azimuth, double elevation) {
+		return new SiteFrame(siteLat, siteLon, siteAlt).getSatelliteLongitude(
+				azimuth, elevation);
+	}
+
+	/**
+	 * Batch form of
+	 * {@link #getLookAngle(double, double, double, double, LookAngleResult)
+	 * getLookAngle()} for many antenna sites against many geostationary satellites. Inputs
+	 * are parallel arrays (one element per site, one per satellite) and the
+	 * results are written into caller-owned arrays in site-major order, so
+	 * the result for site <code>i</code> and satellite <code>j</code> is at
+	 * index <code>i * satLon.length + j</code>.
+	 * 
+	 * The same Soler ellipsoidal math is used, with the site-only terms
+	 * hoisted into a single reused {@link SiteFrame} and the satellites
+	 * evaluated in bulk by a {@link LookAngleKernel}. Nothing is allocated
+	 * per pair; the satellite cartesian coordinates are computed once per
+	 * call.
+	 * 
+	 * @param siteLat
+	 *            geodetic latitudes of the antenna sites (decimal degrees)
+	 * @param siteLon
+	 *            geodetic longitudes of the antenna sites (decimal degrees)
+	 * @param siteAlt
+	 *            altitudes of the antenna sites (meters)
+	 * @param satLon
+	 *            longitudes of the geostationary satellites (decimal degrees)
+	 * @param outAz
+	 *            receives the azimuths (decimal degrees)
+	 * @param outEl
+	 *            receives the elevations (decimal degrees)
+	 * @param outRange
+	 *            receives the slant ranges (meters), may be null if not
+	 *            needed
+	 * @throws IllegalArgumentException
+	 *             if the site arrays differ in length or an output array is
+	 *             too short to hold every site/satellite pair
+	 */
+	public static void getLookAngles(double[] siteLat, double[] siteLon,
+			double[] siteAlt, double[] satLon, double[] outAz,
+			double[] outEl, double[] outRange) {
+		getLookAngles(siteLat, siteLon, siteAlt, satLon, outAz, outEl,
+				outRange, TrigProvider.EXACT);
+	}
+
+	/**
+	 * {@link #getLookAngles(double[], double[], double[], double[], double[], double[], double[])
+	 * getLookAngles()} with the trigonometry taken from the given tier, for
+	 * sweeps that can accept its documented error.
+	 * 
+	 * @param siteLat
+	 *            geodetic latitudes of the antenna sites (decimal degrees)
+	 * @param siteLon
+	 *            geodetic longitudes of the antenna sites (decimal degrees)
+	 * @param siteAlt
+	 *            altitudes of the antenna sites (meters)
+	 * @param satLon
+	 *            longitudes of the geostationary satellites (decimal degrees)
+	 * @param outAz
+	 *            receives the azimuths (decimal degrees)
+	 * @param outEl
+	 *            receives the elevations (decimal degrees)
+	 * @param outRange
+	 *            receives the slant ranges (meters), may be null if not
+	 *            needed
+	 * @param trig
+	 *            the {@link TrigProvider} tier to use
+	 */
+	public static void getLookAngles(double[] siteLat, double[] siteLon,
+			double[] siteAlt, double[] satLon, double[] outAz,
+			double[] outEl, double[] outRange, TrigProvider trig) {
+		// LOCALS
+		int nSites = siteLat.length;
+		int nSats = satLon.length;
+		int pairs = nSites * nSats;
+		/** reused per-site frame */
+		SiteFrame frame = new SiteFrame(trig);
+		/** satellite coordinates and scratch, computed once per call */
+		LookAngleKernel kernel;
+
+		if (siteLon.length != nSites || siteAlt.length != nSites)
+			throw new IllegalArgumentException("site arrays differ in length");
+		if (outAz.length < pairs || outEl.length < pairs
+				|| (outRange != null && outRange.length < pairs))
+			throw new IllegalArgumentException("output arrays shorter than "
+					+ pairs + " site/satellite pairs");
+
+		kernel = new LookAngleKernel(satLon, trig);
+		for (int i = 0; i < nSites; i++) {
+			frame.set(siteLat[i], siteLon[i], siteAlt[i]);
+			kernel.evaluate(frame, outAz, outEl, outRange, i * nSats);
+		}
+	}
+
+	/**
+	 * Calculates the antenna pointing azimuth to the target satellite on a
+	 * spherical earth.
+	 * 
+	 * @param inSiteLat
+	 *            latitude of the antenna site (decimal degrees)
+	 * @param inSiteLon
+	 *            longitude of the antenna site (decimal degrees)
+	 * @param inSatLon
+	 *            longitude of the geostationary satellite (decimal degrees)
+	 * @return the azimuth look angle in decimal degrees
+	 */
+	public static double getAzimuth(double inSiteLat, double inSiteLon,
+			double inSatLon) {
+		double azimuth = 0.0;
+		double beta = 0.0;
+		double siteLat = Math.toRadians(inSiteLat);
+		double satLon = Math.toRadians(inSatLon);
+		double siteLon = Math.toRadians(inSiteLon);
+
+		// get the right spherical triangle beta angle
+		// from the antenna to the sub-satellite spot
+		beta = Math.tan(satLon - siteLon) / Math.sin(siteLat);
+
+		// azimuth is the supplement of the beta angle
+		if (Math.abs(beta) < Math.PI)
+			azimuth = Math.PI - Math.atan(beta);
+		else
+			azimuth = Math.PI + Math.atan(beta);
+
+		// manage N/S hemispheres
+		if (inSiteLat < 0.0)
+			azimuth = azimuth - Math.PI;
+		if (azimuth < 0.0)
+			azimuth = azimuth + 2 * Math.PI;
+
+		return Math.toDegrees(azimuth);
+	}
+
+	/**
+	 * Calculates the antenna pointing elevation above the horizon to the
+	 * target satellite on a spherical earth.
+	 * 
+	 * @param inSiteLat
+	 *            latitude of the antenna site (decimal degrees)
+	 * @param inSiteLon
+	 *            longitude of the antenna site (decimal degrees)
+	 * @param inSatLon
+	 *            longitude of the geostationary satellite (decimal degrees)
+	 * @return the elevation look angle in decimal degrees
+	 */
+	public static double getElevation(double inSiteLat, double inSiteLon,
+			double inSatLon) {
+		double elev = 0.0f;
+		double siteLat = Math.toRadians(inSiteLat);
+		double satLon = Math.toRadians(inSatLon);
+		double siteLon = Math.toRadians(inSiteLon);
+		double deltaLon = satLon - siteLon;
+
+		// TODO: Dispose of the magic number 0.1512 by converting
+		// to a constant (after I understand it's provenance)
+		elev = Math.atan((Math.cos(deltaLon) * Math.cos(siteLat) - 0.1512f)
+				/ Math.sqrt(1 - (Math.pow(Math.cos(deltaLon), 2) * Math.pow(
+						Math.cos(siteLat), 2))));
+
+		return Math.toDegrees(elev);
+	}
+
+	/**
+	 * Calculates the LNB/dish skew angle
+	 * 
+	 * @param inSiteLat
+	 *            latitude of the antenna site (decimal degrees)
+	 * @param inSiteLon
+	 *            longitude of the antenna site (decimal degrees)
+	 * @param inSatLon
+	 *            longitude of the geostationary satellite (decimal degrees)
+	 * @return the skew angle in decimal degrees. Positive values are CW,
+	 *         negatives are CCW.
+	 */
+	public static double getSkew(double inSiteLat, double inSiteLon,
+			double inSatLon) {
+		double longdiff = Math.toRadians(inSiteLon - inSatLon);
+		double latr = Math.toRadians(inSiteLat);
+		double skew = (Math.atan(Math.sin(longdiff) / Math.tan(latr)));
+		return Math.toDegrees(skew);
+	}
+}
@@ -0,0 +1,1117 @@
+package com.horner.LookAngle;
+
+/**
+ * SGP4/SDP4 orbit propagator for NORAD two-line element sets, for pointing at
+ * targets that are not geostationary. Follows the revised reference
+ * implementation of Vallado, Crawford, Hujsak and Kelso (2006),
+ * <em>Revisiting Spacetrack Report #3</em>, with WGS-72 constants and the
+ * "improved" operation mode. Element sets with a period of 225 minutes or
+ * more use the deep space (SDP4) lunar-solar and resonance terms.
+ * 
+ * Everything that depends only on the element set is computed once by the
+ * constructor, so a propagation step is just the time-dependent part.
+ * Positions are produced in the TEME frame and rotated to earth-fixed
+ * coordinates by Greenwich mean sidereal time (polar motion neglected), then
+ * handed to the same {@link SiteFrame} e,n,u transform used for geostationary
+ * targets.
+ * 
+ * Not thread-safe: deep space resonant orbits carry integrator state between
+ * calls, so each thread should own its propagators.
+ * 
+ * @author etchorner
+ * 
+ */
+public class Sgp4Propagator {
+
+	// CONSTANTS
+	/** no error */
+	public static final int OK = 0;
+	/** mean eccentricity out of range */
+	public static final int ERR_ECCENTRICITY = 1;
+	/** mean motion became negative */
+	public static final int ERR_MEAN_MOTION = 2;
+	/** perturbed eccentricity out of range */
+	public static final int ERR_PERTURBED_ECCENTRICITY = 3;
+	/** semi-latus rectum became negative */
+	public static final int ERR_SEMI_LATUS_RECTUM = 4;
+	/** satellite has decayed below the earth's surface */
+	public static final int ERR_DECAYED = 6;
+
+	private static final double TWO_PI = 2 * Math.PI;
+	private static final double X2O3 = 2.0 / 3.0;
+	private static final double TEMP4 = 1.5e-12;
+	/** WGS-72 gravitational parameter (km^3/s^2) */
+	private static final double MU = 398600.8;
+	/** WGS-72 earth radius (km) */
+	private static final double RADIUS_EARTH_KM = 6378.135;
+	/** sqrt(mu) in earth radii^1.5 per minute */
+	private static final double XKE = 60.0 / Math.sqrt(RADIUS_EARTH_KM
+			* RADIUS_EARTH_KM * RADIUS_EARTH_KM / MU);
+	private static final double J2 = 0.001082616;
+	private static final double J3 = -0.00000253881;
+	private static final double J4 = -0.00000165597;
+	private static final double J3OJ2 = J3 / J2;
+	/** velocity unit (km/s per earth radii per minute) */
+	private static final double VKMPERSEC = RADIUS_EARTH_KM * XKE / 60.0;
+	/** Julian date of 1950 Jan 0.0, the propagator's internal epoch */
+	private static final double JD_1950 = 2433281.5;
+	/** Julian date of 1970 Jan 1.0, the Java time origin */
+	private static final double JD_UNIX = 2440587.5;
+	private static final double MILLIS_PER_DAY = 86400000.0;
+
+	// deep space constants
+	private static final double ZES = 0.01675;
+	private static final double ZEL = 0.05490;
+	private static final double ZNS = 1.19459e-5;
+	private static final double ZNL = 1.5835218e-4;
+	private static final double RPTIM = 4.37526908801129966e-3;
+
+	// END CONSTANTS
+
+	// ATTRIBUTES
+	/** the element set this propagator was built from */
+	private final TwoLineElements mElements;
+	/** error of the most recent propagation, or of initialization */
+	private int mError;
+
+	// mean elements (radians, radians/minute)
+	private final double ecco, inclo, nodeo, argpo, mo, bstar;
+	private double no;
+	private final double epoch;
+	private final boolean deepSpace;
+	private boolean isimp;
+
+	// near earth constants
+	private double aycof, con41, cc1, cc4, cc5, d2, d3, d4, delmo, eta,
+			argpdot, omgcof, sinmao, t2cof, t3cof, t4cof, t5cof, x1mth2,
+			x7thm1, mdot, nodedot, xlcof, xmcof, nodecf;
+
+	// deep space constants
+	private int irez;
+	private double d2201, d2211, d3210, d3222, d4410, d4422, d5220, d5232,
+			d5421, d5433, dedt, del1, del2, del3, didt, dmdt, dnodt, domdt,
+			e3, ee2, peo, pgho, pho, pinco, plo, se2, se3, sgh2, sgh3, sgh4,
+			sh2, sh3, si2, si3, sl2, sl3, sl4, gsto, xfact, xgh2, xgh3, xgh4,
+			xh2, xh3, xi2, xi3, xl2, xl3, xl4, xlamo, zmol, zmos;
+
+	// deep space resonance integrator state
+	private double atime, xli, xni;
+
+	/** results of dspace and dpper, reused by every propagation step */
+	private final double[] mDeepSpace = new double[6];
+
+	/** dscom outputs shared with dsinit during construction */
+	private double s1, s2, s3, s4, s5, ss1, ss2, ss3, ss4, ss5, sz1, sz3,
+			sz11, sz13, sz21, sz23, sz31, sz33, z1, z3, z11, z13, z21, z23,
+			z31, z33, dsEmsq, dsSinim, dsCosim;
+
+	// END ATTRIBUTES
+
+	/**
+	 * Builds a propagator, precomputing every element-set constant.
+	 * 
+	 * @param tle
+	 *            the {@link TwoLineElements} to propagate
+	 */
+	public Sgp4Propagator(TwoLineElements tle) {
+		// LOCALS
+		double ss = 78.0 / RADIUS_EARTH_KM + 1.0;
+		double qzms2t = Math.pow((120.0 - 78.0) / RADIUS_EARTH_KM, 4);
+		double eccsq, omeosq, rteosq, cosio, cosio2, ak, d1, del, adel, ao,
+				sinio, po, con42, posq, rp;
+
+		mElements = tle;
+		ecco = tle.eccentricity;
+		inclo = Math.toRadians(tle.inclination);
+		nodeo = Math.toRadians(tle.raan);
+		argpo = Math.toRadians(tle.argPerigee);
+		mo = Math.toRadians(tle.meanAnomaly);
+		bstar = tle.bstar;
+		no = tle.meanMotion * TWO_PI / 1440.0;
+		epoch = tle.epochJd - JD_1950;
+
+		// initl: un-Kozai the mean motion
+		eccsq = ecco * ecco;
+		omeosq = 1.0 - eccsq;
+		rteosq = Math.sqrt(omeosq);
+		cosio = Math.cos(inclo);
+		cosio2 = cosio * cosio;
+		ak = Math.pow(XKE / no, X2O3);
+		d1 = 0.75 * J2 * (3.0 * cosio2 - 1.0) / (rteosq * omeosq);
+		del = d1 / (ak * ak);
+		adel = ak
+				* (1.0 - del * del - del
+						* (1.0 / 3.0 + 134.0 * del * del / 81.0));
+		del = d1 / (adel * adel);
+		no = no / (1.0 + del);
+		ao = Math.pow(XKE / no, X2O3);
+		sinio = Math.sin(inclo);
+		po = ao * omeosq;
+		con42 = 1.0 - 5.0 * cosio2;
+		con41 = -con42 - cosio2 - cosio2;
+		posq = po * po;
+		rp = ao * (1.0 - ecco);
+		gsto = gmst(epoch + JD_1950);
+
+		deepSpace = TWO_PI / no >= 225.0;
+
+		if (omeosq >= 0.0 || no >= 0.0) {
+			double sfour = ss, qzms24 = qzms2t;
+			double perige = (rp - 1.0) * RADIUS_EARTH_KM;
+			double pinvsq, tsi, etasq, eeta, psisq, coef, coef1, cc2, cc3,
+					cosio4, temp1, temp2, temp3, xhdot1, xpidot;
+
+			isimp = rp < 220.0 / RADIUS_EARTH_KM + 1.0;
+
+			// for perigees below 156 km, s and qoms2t are altered
+			if (perige < 156.0) {
+				sfour = perige - 78.0;
+				if (perige < 98.0)
+					sfour = 20.0;
+				qzms24 = Math.pow((120.0 - sfour) / RADIUS_EARTH_KM, 4);
+				sfour = sfour / RADIUS_EARTH_KM + 1.0;
+			}
+			pinvsq = 1.0 / posq;
+
+			tsi = 1.0 / (ao - sfour);
+			eta = ao * ecco * tsi;
+			etasq = eta * eta;
+			eeta = ecco * eta;
+			psisq = Math.abs(1.0 - etasq);
+			coef = qzms24 * Math.pow(tsi, 4);
+			coef1 = coef / Math.pow(psisq, 3.5);
+			cc2 = coef1
+					* no
+					* (ao * (1.0 + 1.5 * etasq + eeta * (4.0 + etasq)) + 0.375
+							* J2 * tsi / psisq * con41
+							* (8.0 + 3.0 * etasq * (8.0 + etasq)));
+			cc1 = bstar * cc2;
+			cc3 = 0.0;
+			if (ecco > 1.0e-4)
+				cc3 = -2.0 * coef * tsi * J3OJ2 * no * sinio / ecco;
+			x1mth2 = 1.0 - cosio2;
+			cc4 = 2.0
+					* no
+					* coef1
+					* ao
+					* omeosq
+					* (eta * (2.0 + 0.5 * etasq) + ecco * (0.5 + 2.0 * etasq) - J2
+							* tsi
+							/ (ao * psisq)
+							* (-3.0 * con41
+									* (1.0 - 2.0 * eeta + etasq
+											* (1.5 - 0.5 * eeta)) + 0.75
+									* x1mth2 * (2.0 * etasq - eeta
+									* (1.0 + etasq)) * Math.cos(2.0 * argpo)));
+			cc5 = 2.0 * coef1 * ao * omeosq
+					* (1.0 + 2.75 * (etasq + eeta) + eeta * etasq);
+			cosio4 = cosio2 * cosio2;
+			temp1 = 1.5 * J2 * pinvsq * no;
+			temp2 = 0.5 * temp1 * J2 * pinvsq;
+			temp3 = -0.46875 * J4 * pinvsq * pinvsq * no;
+			mdot = no + 0.5 * temp1 * rteosq * con41 + 0.0625 * temp2
+					* rteosq * (13.0 - 78.0 * cosio2 + 137.0 * cosio4);
+			argpdot = -0.5 * temp1 * con42 + 0.0625 * temp2
+					* (7.0 - 114.0 * cosio2 + 395.0 * cosio4) + temp3
+					* (3.0 - 36.0 * cosio2 + 49.0 * cosio4);
+			xhdot1 = -temp1 * cosio;
+			nodedot = xhdot1
+					+ (0.5 * temp2 * (4.0 - 19.0 * cosio2) + 2.0 * temp3
+							* (3.0 - 7.0 * cosio2)) * cosio;
+			xpidot = argpdot + nodedot;
+			omgcof = bstar * cc3 * Math.cos(argpo);
+			xmcof = 0.0;
+			if (ecco > 1.0e-4)
+				xmcof = -X2O3 * coef * bstar / eeta;
+			nodecf = 3.5 * omeosq * xhdot1 * cc1;
+			t2cof = 1.5 * cc1;
+			if (Math.abs(cosio + 1.0) > TEMP4)
+				xlcof = -0.25 * J3OJ2 * sinio * (3.0 + 5.0 * cosio)
+						/ (1.0 + cosio);
+			else
+				xlcof = -0.25 * J3OJ2 * sinio * (3.0 + 5.0 * cosio) / TEMP4;
+			aycof = -0.5 * J3OJ2 * sinio;
+			delmo = Math.pow(1.0 + eta * Math.cos(mo), 3);
+			sinmao = Math.sin(mo);
+			x7thm1 = 7.0 * cosio2 - 1.0;
+
+			if (deepSpace) {
+				isimp = true;
+				dscom(0.0);
+				dsinit(eccsq, xpidot);
+			}
+
+			if (!isimp) {
+				double cc1sq = cc1 * cc1;
+				double temp;
+				d2 = 4.0 * ao * tsi * cc1sq;
+				temp = d2 * tsi * cc1 / 3.0;
+				d3 = (17.0 * ao + sfour) * temp;
+				d4 = 0.5 * temp * ao * tsi * (221.0 * ao + 31.0 * sfour) * cc1;
+				t3cof = d2 + 2.0 * cc1sq;
+				t4cof = 0.25 * (3.0 * d3 + cc1 * (12.0 * d2 + 10.0 * cc1sq));
+				t5cof = 0.2 * (3.0 * d4 + 12.0 * cc1 * d3 + 6.0 * d2 * d2 + 15.0
+						* cc1sq * (2.0 * d2 + cc1sq));
+			}
+		}
+
+		mError = propagate(0.0, new double[6]);
+	}
+
+	/** @return the element set this propagator was built from */
+	public TwoLineElements getElements() {
+		return mElements;
+	}
+
+	/** @return true if the deep space (SDP4) terms are in use */
+	public boolean isDeepSpace() {
+		return deepSpace;
+	}
+
+	/** @return the error code of the most recent propagation */
+	public int getError() {
+		return mError;
+	}
+
+	/**
+	 * Converts a Java time to minutes since the element set epoch.
+	 * 
+	 * @param timeMillis
+	 *            milliseconds since January 1, 1970 UTC
+	 * @return minutes since the epoch of the element set
+	 */
+	public double minutesSinceEpoch(long timeMillis) {
+		return (JD_UNIX + timeMillis / MILLIS_PER_DAY - mElements.epochJd) * 1440.0;
+	}
+
+	/**
+	 * Propagates to a time and returns the position and velocity in the
+	 * true-equator, mean-equinox (TEME) frame.
+	 * 
+	 * @param tsince
+	 *            minutes since the element set epoch
+	 * @param outRV
+	 *            receives x, y, z (km) and vx, vy, vz (km/s)
+	 * @return {@link #OK} or one of the <code>ERR_</code> codes
+	 */
+	public int propagate(double tsince, double[] outRV) {
+		// LOCALS
+		double t = tsince;
+		double xmdf, argpdf, nodedf, argpm, mm, t2, nodem, tempa, tempe,
+				templ, nm, em, inclm, am, xlm, emsq, temp, sinim, cosim, ep,
+				xincp, argpp, nodep, mp, sinip, cosip, axnl, aynl, xl, u, eo1,
+				tem5, sineo1 = 0, coseo1 = 0, ecose, esine, el2, pl, rl, rdotl,
+				rvdotl, betal, sinu, cosu, su, sin2u, cos2u, temp1, temp2,
+				mrt, xnode, xinc, mvt, rvdot, sinsu, cossu, snod, cnod, sini,
+				cosi, xmx, xmy, ux, uy, uz, vx, vy, vz;
+		double lcon41 = con41, lx1mth2 = x1mth2, lx7thm1 = x7thm1;
+		double laycof = aycof, lxlcof = xlcof;
+		double[] ds;
+
+		// update for secular gravity and atmospheric drag
+		xmdf = mo + mdot * t;
+		argpdf = argpo + argpdot * t;
+		nodedf = nodeo + nodedot * t;
+		argpm = argpdf;
+		mm = xmdf;
+		t2 = t * t;
+		nodem = nodedf + nodecf * t2;
+		tempa = 1.0 - cc1 * t;
+		tempe = bstar * cc4 * t;
+		templ = t2cof * t2;
+
+		if (!isimp) {
+			double delomg = omgcof * t;
+			double delm = xmcof
+					* (Math.pow(1.0 + eta * Math.cos(xmdf), 3) - delmo);
+			double t3, t4;
+			temp = delomg + delm;
+			mm = xmdf + temp;
+			argpm = argpdf - temp;
+			t3 = t2 * t;
+			t4 = t3 * t;
+			tempa = tempa - d2 * t2 - d3 * t3 - d4 * t4;
+			tempe = tempe + bstar * cc5 * (Math.sin(mm) - sinmao);
+			templ = templ + t3cof * t3 + t4 * (t4cof + t * t5cof);
+		}
+
+		nm = no;
+		em = ecco;
+		inclm = inclo;
+		if (deepSpace) {
+			ds = dspace(t, em, argpm, inclm, mm, nodem);
+			em = ds[0];
+			argpm = ds[1];
+			inclm = ds[2];
+			mm = ds[3];
+			nodem = ds[4];
+			nm = ds[5];
+		}
+
+		if (nm <= 0.0)
+			return mError = ERR_MEAN_MOTION;
+		am = Math.pow(XKE / nm, X2O3) * tempa * tempa;
+		nm = XKE / Math.pow(am, 1.5);
+		em = em - tempe;
+
+		if (em >= 1.0 || em < -0.001)
+			return mError = ERR_ECCENTRICITY;
+		if (em < 1.0e-6)
+			em = 1.0e-6;
+		mm = mm + no * templ;
+		xlm = mm + argpm + nodem;
+		emsq = em * em;
+		nodem = nodem % TWO_PI;
+		argpm = argpm % TWO_PI;
+		xlm = xlm % TWO_PI;
+		mm = (xlm - argpm - nodem) % TWO_PI;
+
+		sinim = Math.sin(inclm);
+		cosim = Math.cos(inclm);
+
+		// add lunar-solar periodics
+		ep = em;
+		xincp = inclm;
+		argpp = argpm;
+		nodep = nodem;
+		mp = mm;
+		sinip = sinim;
+		cosip = cosim;
+		if (deepSpace) {
+			ds = dpper(t, ep, xincp, nodep, argpp, mp);
+			ep = ds[0];
+			xincp = ds[1];
+			nodep = ds[2];
+			argpp = ds[3];
+			mp = ds[4];
+			if (xincp < 0.0) {
+				xincp = -xincp;
+				nodep = nodep + Math.PI;
+				argpp = argpp - Math.PI;
+			}
+			if (ep < 0.0 || ep > 1.0)
+				return mError = ERR_PERTURBED_ECCENTRICITY;
+
+			// long period periodics for the perturbed inclination
+			sinip = Math.sin(xincp);
+			cosip = Math.cos(xincp);
+			laycof = -0.5 * J3OJ2 * sinip;
+			if (Math.abs(cosip + 1.0) > TEMP4)
+				lxlcof = -0.25 * J3OJ2 * sinip * (3.0 + 5.0 * cosip)
+						/ (1.0 + cosip);
+			else
+				lxlcof = -0.25 * J3OJ2 * sinip * (3.0 + 5.0 * cosip) / TEMP4;
+		}
+
+		// long period periodics
+		axnl = ep * Math.cos(argpp);
+		temp = 1.0 / (am * (1.0 - ep * ep));
+		aynl = ep * Math.sin(argpp) + temp * laycof;
+		xl = mp + argpp + nodep + temp * lxlcof * axnl;
+
+		// solve kepler's equation
+		u = (xl - nodep) % TWO_PI;
+		eo1 = u;
+		tem5 = 9999.9;
+		for (int ktr = 1; Math.abs(tem5) >= 1.0e-12 && ktr <= 10; ktr++) {
+			sineo1 = Math.sin(eo1);
+			coseo1 = Math.cos(eo1);
+			tem5 = 1.0 - coseo1 * axnl - sineo1 * aynl;
+			tem5 = (u - aynl * coseo1 + axnl * sineo1 - eo1) / tem5;
+			if (Math.abs(tem5) >= 0.95)
+				tem5 = tem5 > 0.0 ? 0.95 : -0.95;
+			eo1 = eo1 + tem5;
+		}
+
+		// short period preliminary quantities
+		ecose = axnl * coseo1 + aynl * sineo1;
+		esine = axnl * sineo1 - aynl * coseo1;
+		el2 = axnl * axnl + aynl * aynl;
+		pl = am * (1.0 - el2);
+		if (pl < 0.0)
+			return mError = ERR_SEMI_LATUS_RECTUM;
+
+		rl = am * (1.0 - ecose);
+		rdotl = Math.sqrt(am) * esine / rl;
+		rvdotl = Math.sqrt(pl) / rl;
+		betal = Math.sqrt(1.0 - el2);
+		temp = esine / (1.0 + betal);
+		sinu = am / rl * (sineo1 - aynl - axnl * temp);
+		cosu = am / rl * (coseo1 - axnl + aynl * temp);
+		su = Math.atan2(sinu, cosu);
+		sin2u = (cosu + cosu) * sinu;
+		cos2u = 1.0 - 2.0 * sinu * sinu;
+		temp = 1.0 / pl;
+		temp1 = 0.5 * J2 * temp;
+		temp2 = temp1 * temp;
+
+		if (deepSpace) {
+			double cosisq = cosip * cosip;
+			lcon41 = 3.0 * cosisq - 1.0;
+			lx1mth2 = 1.0 - cosisq;
+			lx7thm1 = 7.0 * cosisq - 1.0;
+		}
+		mrt = rl * (1.0 - 1.5 * temp2 * betal * lcon41) + 0.5 * temp1
+				* lx1mth2 * cos2u;
+		su = su - 0.25 * temp2 * lx7thm1 * sin2u;
+		xnode = nodep + 1.5 * temp2 * cosip * sin2u;
+		xinc = xincp + 1.5 * temp2 * cosip * sinip * cos2u;
+		mvt = rdotl - nm * temp1 * lx1mth2 * sin2u / XKE;
+		rvdot = rvdotl + nm * temp1 * (lx1mth2 * cos2u + 1.5 * lcon41) / XKE;
+
+		// orientation vectors
+		sinsu = Math.sin(su);
+		cossu = Math.cos(su);
+		snod = Math.sin(xnode);
+		cnod = Math.cos(xnode);
+		sini = Math.sin(xinc);
+		cosi = Math.cos(xinc);
+		xmx = -snod * cosi;
+		xmy = cnod * cosi;
+		ux = xmx * sinsu + cnod * cossu;
+		uy = xmy * sinsu + snod * cossu;
+		uz = sini * sinsu;
+		vx = xmx * cossu - cnod * sinsu;
+		vy = xmy * cossu - snod * sinsu;
+		vz = sini * cossu;
+
+		// position and velocity (km and km/s)
+		outRV[0] = mrt * ux * RADIUS_EARTH_KM;
+		outRV[1] = mrt * uy * RADIUS_EARTH_KM;
+		outRV[2] = mrt * uz * RADIUS_EARTH_KM;
+		outRV[3] = (mvt * ux + rvdot * vx) * VKMPERSEC;
+		outRV[4] = (mvt * uy + rvdot * vy) * VKMPERSEC;
+		outRV[5] = (mvt * uz + rvdot * vz) * VKMPERSEC;
+
+		if (mrt < 1.0)
+			return mError = ERR_DECAYED;
+		return mError = OK;
+	}
+
+	/**
+	 * Propagates to a time and returns the earth-fixed cartesian position.
+	 * 
+	 * @param timeMillis
+	 *            milliseconds since January 1, 1970 UTC
+	 * @param outXYZ
+	 *            receives x, y, z in meters (earth-fixed)
+	 * @return {@link #OK} or one of the <code>ERR_</code> codes
+	 */
+	public int getPosition(long timeMillis, double[] outXYZ) {
+		double[] rv = new double[6];
+		double jd = JD_UNIX + timeMillis / MILLIS_PER_DAY;
+		int err = propagate(minutesSinceEpoch(timeMillis), rv);
+		double g = gmst(jd);
+		temeToEcef(rv, Math.cos(g), Math.sin(g), outXYZ, 0);
+		return err;
+	}
+
+	/**
+	 * Propagates a whole catalog to one time in a single pass and computes the
+	 * look angle of every element from an antenna site. Sidereal time and the
+	 * scratch arrays are shared by the whole pass.
+	 * 
+	 * @param satellites
+	 *            the propagators, one per satellite
+	 * @param timeMillis
+	 *            milliseconds since January 1, 1970 UTC
+	 * @param frame
+	 *            the {@link SiteFrame} of the antenna site
+	 * @param outAz
+	 *            receives the azimuths (decimal degrees)
+	 * @param outEl
+	 *            receives the elevations (decimal degrees)
+	 * @param outRange
+	 *            receives the slant ranges (meters), may be null
+	 * @return the number of satellites that failed to propagate; their
+	 *         results are NaN
+	 */
+	public static int getLookAngles(Sgp4Propagator[] satellites,
+			long timeMillis, SiteFrame frame, double[] outAz, double[] outEl,
+			double[] outRange) {
+		// LOCALS
+		double jd = JD_UNIX + timeMillis / MILLIS_PER_DAY;
+		double g = gmst(jd);
+		double cosG = Math.cos(g), sinG = Math.sin(g);
+		double[] rv = new double[6];
+		double[] xyz = new double[3];
+		LookAngleResult result = new LookAngleResult();
+		int failed = 0;
+
+		for (int i = 0; i < satellites.length; i++) {
+			Sgp4Propagator sat = satellites[i];
+			double tsince = (jd - sat.mElements.epochJd) * 1440.0;
+			if (sat.propagate(tsince, rv) != OK) {
+				outAz[i] = outEl[i] = Double.NaN;
+				if (outRange != null)
+					outRange[i] = Double.NaN;
+				failed++;
+				continue;
+			}
+			temeToEcef(rv, cosG, sinG, xyz, 0);
+			frame.getLookAngle(xyz[0], xyz[1], xyz[2], result);
+			outAz[i] = result.azimuth;
+			outEl[i] = result.elevation;
+			if (outRange != null)
+				outRange[i] = result.range;
+		}
+		return failed;
+	}
+
+	/**
+	 * Greenwich mean sidereal time (IAU 1982).
+	 * 
+	 * @param jdut1
+	 *            Julian date (UT1)
+	 * @return the sidereal angle in radians, 0 to 2 pi
+	 */
+	static double gmst(double jdut1) {
+		double tut1 = (jdut1 - 2451545.0) / 36525.0;
+		double temp = -6.2e-6 * tut1 * tut1 * tut1 + 0.093104 * tut1 * tut1
+				+ (876600.0 * 3600 + 8640184.812866) * tut1 + 67310.54841;
+		temp = (Math.toRadians(temp) / 240.0) % TWO_PI;
+		if (temp < 0.0)
+			temp += TWO_PI;
+		return temp;
+	}
+
+	/** rotates a TEME position (km) to earth-fixed meters */
+	private static void temeToEcef(double[] rv, double cosG, double sinG,
+			double[] outXYZ, int offset) {
+		outXYZ[offset] = 1000.0 * (cosG * rv[0] + sinG * rv[1]);
+		outXYZ[offset + 1] = 1000.0 * (-sinG * rv[0] + cosG * rv[1]);
+		outXYZ[offset + 2] = 1000.0 * rv[2];
+	}
+
+	/**
+	 * Deep space common terms (dscom): lunar and solar perturbation
+	 * coefficients for the element set.
+	 */
+	private void dscom(double tc) {
+		// LOCALS
+		final double c1ss = 2.9864797e-6, c1l = 4.7968065e-7;
+		final double zsinis = 0.39785416, zcosis = 0.91744867;
+		final double zcosgs = 0.1945905, zsings = -0.98088458;
+		double nm = no, em = ecco;
+		double snodm = Math.sin(nodeo), cnodm = Math.cos(nodeo);
+		double sinomm = Math.sin(argpo), cosomm = Math.cos(argpo);
+		double sinim = Math.sin(inclo), cosim = Math.cos(inclo);
+		double emsq = em * em, betasq = 1.0 - emsq;
+		double rtemsq = Math.sqrt(betasq);
+		double day, xnodce, stem, ctem, zcosil, zsinil, zsinhl, zcoshl, gam,
+				zx, zy, zcosgl, zsingl, zcosg, zsing, zcosi, zsini, zcosh,
+				zsinh, cc, xnoi;
+		double a1, a2, a3, a4, a5, a6, a7, a8, a9, a10, x1, x2, x3, x4, x5,
+				x6, x7, x8, z2, z12, z22, z32, s6, s7;
+		double ss6 = 0, ss7 = 0, sz2 = 0, sz12 = 0, sz22 = 0, sz32 = 0;
+
+		peo = 0.0;
+		pinco = 0.0;
+		plo = 0.0;
+		pgho = 0.0;
+		pho = 0.0;
+		day = epoch + 18261.5 + tc / 1440.0;
+		xnodce = (4.5236020 - 9.2422029e-4 * day) % TWO_PI;
+		stem = Math.sin(xnodce);
+		ctem = Math.cos(xnodce);
+		zcosil = 0.91375164 - 0.03568096 * ctem;
+		zsinil = Math.sqrt(1.0 - zcosil * zcosil);
+		zsinhl = 0.089683511 * stem / zsinil;
+		zcoshl = Math.sqrt(1.0 - zsinhl * zsinhl);
+		gam = 5.8351514 + 0.0019443680 * day;
+		zx = 0.39785416 * stem / zsinil;
+		zy = zcoshl * ctem + 0.91744867 * zsinhl * stem;
+		zx = Math.atan2(zx, zy);
+		zx = gam + zx - xnodce;
+		zcosgl = Math.cos(zx);
+		zsingl = Math.sin(zx);
+
+		// solar terms first, then lunar
+		zcosg = zcosgs;
+		zsing = zsings;
+		zcosi = zcosis;
+		zsini = zsinis;
+		zcosh = cnodm;
+		zsinh = snodm;
+		cc = c1ss;
+		xnoi = 1.0 / nm;
+
+		for (int lsflg = 1; lsflg <= 2; lsflg++) {
+			a1 = zcosg * zcosh + zsing * zcosi * zsinh;
+			a3 = -zsing * zcosh + zcosg * zcosi * zsinh;
+			a7 = -zcosg * zsinh + zsing * zcosi * zcosh;
+			a8 = zsing * zsini;
+			a9 = zsing * zsinh + zcosg * zcosi * zcosh;
+			a10 = zcosg * zsini;
+			a2 = cosim * a7 + sinim * a8;
+			a4 = cosim * a9 + sinim * a10;
+			a5 = -sinim * a7 + cosim * a8;
+			a6 = -sinim * a9 + cosim * a10;
+
+			x1 = a1 * cosomm + a2 * sinomm;
+			x2 = a3 * cosomm + a4 * sinomm;
+			x3 = -a1 * sinomm + a2 * cosomm;
+			x4 = -a3 * sinomm + a4 * cosomm;
+			x5 = a5 * sinomm;
+			x6 = a6 * sinomm;
+			x7 = a5 * cosomm;
+			x8 = a6 * cosomm;
+
+			z31 = 12.0 * x1 * x1 - 3.0 * x3 * x3;
+			z32 = 24.0 * x1 * x2 - 6.0 * x3 * x4;
+			z33 = 12.0 * x2 * x2 - 3.0 * x4 * x4;
+			z1 = 3.0 * (a1 * a1 + a2 * a2) + z31 * emsq;
+			z2 = 6.0 * (a1 * a3 + a2 * a4) + z32 * emsq;
+			z3 = 3.0 * (a3 * a3 + a4 * a4) + z33 * emsq;
+			z11 = -6.0 * a1 * a5 + emsq * (-24.0 * x1 * x7 - 6.0 * x3 * x5);
+			z12 = -6.0 * (a1 * a6 + a3 * a5) + emsq
+					* (-24.0 * (x2 * x7 + x1 * x8) - 6.0 * (x3 * x6 + x4 * x5));
+			z13 = -6.0 * a3 * a6 + emsq * (-24.0 * x2 * x8 - 6.0 * x4 * x6);
+			z21 = 6.0 * a2 * a5 + emsq * (24.0 * x1 * x5 - 6.0 * x3 * x7);
+			z22 = 6.0 * (a4 * a5 + a2 * a6) + emsq
+					* (24.0 * (x2 * x5 + x1 * x6) - 6.0 * (x4 * x7 + x3 * x8));
+			z23 = 6.0 * a4 * a6 + emsq * (24.0 * x2 * x6 - 6.0 * x4 * x8);
+			z1 = z1 + z1 + betasq * z31;
+			z2 = z2 + z2 + betasq * z32;
+			z3 = z3 + z3 + betasq * z33;
+			s3 = cc * xnoi;
+			s2 = -0.5 * s3 / rtemsq;
+			s4 = s3 * rtemsq;
+			s1 = -15.0 * em * s4;
+			s5 = x1 * x3 + x2 * x4;
+			s6 = x2 * x3 + x1 * x4;
+			s7 = x2 * x4 - x1 * x3;
+
+			if (lsflg == 1) {
+				// keep the solar terms, switch to the lunar geometry
+				ss1 = s1;
+				ss2 = s2;
+				ss3 = s3;
+				ss4 = s4;
+				ss5 = s5;
+				ss6 = s6;
+				ss7 = s7;
+				sz1 = z1;
+				sz2 = z2;
+				sz3 = z3;
+				sz11 = z11;
+				sz12 = z12;
+				sz13 = z13;
+				sz21 = z21;
+				sz22 = z22;
+				sz23 = z23;
+				sz31 = z31;
+				sz32 = z32;
+				sz33 = z33;
+				zcosg = zcosgl;
+				zsing = zsingl;
+				zcosi = zcosil;
+				zsini = zsinil;
+				zcosh = zcoshl * cnodm + zsinhl * snodm;
+				zsinh = snodm * zcoshl - cnodm * zsinhl;
+				cc = c1l;
+			} else {
+				// lunar terms
+				ee2 = 2.0 * s1 * s6;
+				e3 = 2.0 * s1 * s7;
+				xi2 = 2.0 * s2 * z12;
+				xi3 = 2.0 * s2 * (z13 - z11);
+				xl2 = -2.0 * s3 * z2;
+				xl3 = -2.0 * s3 * (z3 - z1);
+				xl4 = -2.0 * s3 * (-21.0 - 9.0 * emsq) * ZEL;
+				xgh2 = 2.0 * s4 * z32;
+				xgh3 = 2.0 * s4 * (z33 - z31);
+				xgh4 = -18.0 * s4 * ZEL;
+				xh2 = -2.0 * s2 * z22;
+				xh3 = -2.0 * s2 * (z23 - z21);
+			}
+		}
+
+		zmol = (4.7199672 + 0.22997150 * day - gam) % TWO_PI;
+		zmos = (6.2565837 + 0.017201977 * day) % TWO_PI;
+
+		// solar terms
+		se2 = 2.0 * ss1 * ss6;
+		se3 = 2.0 * ss1 * ss7;
+		si2 = 2.0 * ss2 * sz12;
+		si3 = 2.0 * ss2 * (sz13 - sz11);
+		sl2 = -2.0 * ss3 * sz2;
+		sl3 = -2.0 * ss3 * (sz3 - sz1);
+		sl4 = -2.0 * ss3 * (-21.0 - 9.0 * emsq) * ZES;
+		sgh2 = 2.0 * ss4 * sz32;
+		sgh3 = 2.0 * ss4 * (sz33 - sz31);
+		sgh4 = -18.0 * ss4 * ZES;
+		sh2 = -2.0 * ss2 * sz22;
+		sh3 = -2.0 * ss2 * (sz23 - sz21);
+
+		dsEmsq = emsq;
+		dsSinim = sinim;
+		dsCosim = cosim;
+	}
+
+	/**
+	 * Deep space initialization (dsinit): secular lunar-solar rates and the
+	 * resonance coefficients for 12 hour and synchronous orbits.
+	 */
+	private void dsinit(double eccsq, double xpidot) {
+		// LOCALS
+		final double q22 = 1.7891679e-6, q31 = 2.1460748e-6, q33 = 2.2123015e-7;
+		final double root22 = 1.7891679e-6, root44 = 7.3636953e-9;
+		final double root54 = 2.1765803e-9, root32 = 3.7393792e-7;
+		final double root52 = 1.1428639e-7;
+		double emsq = dsEmsq, sinim = dsSinim, cosim = dsCosim;
+		double nm = no, em = ecco, inclm = inclo;
+		double ses, sis, sls, sghs, shs, sgs, sghl, shll, theta, aonv;
+
+		irez = 0;
+		if (nm < 0.0052359877 && nm > 0.0034906585)
+			irez = 1;
+		if (nm >= 8.26e-3 && nm <= 9.24e-3 && em >= 0.5)
+			irez = 2;
+
+		// solar terms
+		ses = ss1 * ZNS * ss5;
+		sis = ss2 * ZNS * (sz11 + sz13);
+		sls = -ZNS * ss3 * (sz1 + sz3 - 14.0 - 6.0 * emsq);
+		sghs = ss4 * ZNS * (sz31 + sz33 - 6.0);
+		shs = -ZNS * ss2 * (sz21 + sz23);
+		if (inclm < 5.2359877e-2 || inclm > Math.PI - 5.2359877e-2)
+			shs = 0.0;
+		if (sinim != 0.0)
+			shs = shs / sinim;
+		sgs = sghs - cosim * shs;
+
+		// lunar terms
+		dedt = ses + s1 * ZNL * s5;
+		didt = sis + s2 * ZNL * (z11 + z13);
+		dmdt = sls - ZNL * s3 * (z1 + z3 - 14.0 - 6.0 * emsq);
+		sghl = s4 * ZNL * (z31 + z33 - 6.0);
+		shll = -ZNL * s2 * (z21 + z23);
+		if (inclm < 5.2359877e-2 || inclm > Math.PI - 5.2359877e-2)
+			shll = 0.0;
+		domdt = sgs + sghl;
+		dnodt = shs;
+		if (sinim != 0.0) {
+			domdt = domdt - cosim / sinim * shll;
+			dnodt = dnodt + shll / sinim;
+		}
+
+		// deep space resonance effects
+		theta = gsto % TWO_PI;
+		if (irez != 0) {
+			aonv = Math.pow(nm / XKE, X2O3);
+
+			if (irez == 2) {
+				// geopotential resonance for 12 hour orbits
+				double cosisq = cosim * cosim;
+				double emo = em, emsqo = emsq;
+				double eoc, g201, g211, g310, g322, g410, g422, g520, g533,
+						g521, g532, sini2, f220, f221, f321, f322, f441, f442,
+						f522, f523, f542, f543, xno2, ainv2, temp, temp1;
+				em = ecco;
+				emsq = eccsq;
+				eoc = em * emsq;
+				g201 = -0.306 - (em - 0.64) * 0.440;
+				if (em <= 0.65) {
+					g211 = 3.616 - 13.2470 * em + 16.2900 * emsq;
+					g310 = -19.302 + 117.3900 * em - 228.4190 * emsq
+							+ 156.5910 * eoc;
+					g322 = -18.9068 + 109.7927 * em - 214.6334 * emsq
+							+ 146.5816 * eoc;
+					g410 = -41.122 + 242.6940 * em - 471.0940 * emsq
+							+ 313.9530 * eoc;
+					g422 = -146.407 + 841.8800 * em - 1629.014 * emsq
+							+ 1083.4350 * eoc;
+					g520 = -532.114 + 3017.977 * em - 5740.032 * emsq
+							+ 3708.2760 * eoc;
+				} else {
+					g211 = -72.099 + 331.819 * em - 508.738 * emsq + 266.724
+							* eoc;
+					g310 = -346.844 + 1582.851 * em - 2415.925 * emsq
+							+ 1246.113 * eoc;
+					g322 = -342.585 + 1554.908 * em - 2366.899 * emsq
+							+ 1215.972 * eoc;
+					g410 = -1052.797 + 4758.686 * em - 7193.992 * emsq
+							+ 3651.957 * eoc;
+					g422 = -3581.690 + 16178.110 * em - 24462.770 * emsq
+							+ 12422.520 * eoc;
+					if (em > 0.715)
+						g520 = -5149.66 + 29936.92 * em - 54087.36 * emsq
+								+ 31324.56 * eoc;
+					else
+						g520 = 1464.74 - 4664.75 * em + 3763.64 * emsq;
+				}
+				if (em < 0.7) {
+					g533 = -919.22770 + 4988.6100 * em - 9064.7700 * emsq
+							+ 5542.21 * eoc;
+					g521 = -822.71072 + 4568.6173 * em - 8491.4146 * emsq
+							+ 5337.524 * eoc;
+					g532 = -853.66600 + 4690.2500 * em - 8624.7700 * emsq
+							+ 5341.4 * eoc;
+				} else {
+					g533 = -37995.780 + 161616.52 * em - 229838.20 * emsq
+							+ 109377.94 * eoc;
+					g521 = -51752.104 + 218913.95 * em - 309468.16 * emsq
+							+ 146349.42 * eoc;
+					g532 = -40023.880 + 170470.89 * em - 242699.48 * emsq
+							+ 115605.82 * eoc;
+				}
+
+				sini2 = sinim * sinim;
+				f220 = 0.75 * (1.0 + 2.0 * cosim + cosisq);
+				f221 = 1.5 * sini2;
+				f321 = 1.875 * sinim * (1.0 - 2.0 * cosim - 3.0 * cosisq);
+				f322 = -1.875 * sinim * (1.0 + 2.0 * cosim - 3.0 * cosisq);
+				f441 = 35.0 * sini2 * f220;
+				f442 = 39.3750 * sini2 * sini2;
+				f522 = 9.84375
+						* sinim
+						* (sini2 * (1.0 - 2.0 * cosim - 5.0 * cosisq) + 0.33333333 * (-2.0
+								+ 4.0 * cosim + 6.0 * cosisq));
+				f523 = sinim
+						* (4.92187512 * sini2
+								* (-2.0 - 4.0 * cosim + 10.0 * cosisq) + 6.56250012 * (1.0
+								+ 2.0 * cosim - 3.0 * cosisq));
+				f542 = 29.53125
+						* sinim
+						* (2.0 - 8.0 * cosim + cosisq
+								* (-12.0 + 8.0 * cosim + 10.0 * cosisq));
+				f543 = 29.53125
+						* sinim
+						* (-2.0 - 8.0 * cosim + cosisq
+								* (12.0 + 8.0 * cosim - 10.0 * cosisq));
+				xno2 = nm * nm;
+				ainv2 = aonv * aonv;
+				temp1 = 3.0 * xno2 * ainv2;
+				temp = temp1 * root22;
+				d2201 = temp * f220 * g201;
+				d2211 = temp * f221 * g211;
+				temp1 = temp1 * aonv;
+				temp = temp1 * root32;
+				d3210 = temp * f321 * g310;
+				d3222 = temp * f322 * g322;
+				temp1 = temp1 * aonv;
+				temp = 2.0 * temp1 * root44;
+				d4410 = temp * f441 * g410;
+				d4422 = temp * f442 * g422;
+				temp1 = temp1 * aonv;
+				temp = temp1 * root52;
+				d5220 = temp * f522 * g520;
+				d5232 = temp * f523 * g532;
+				temp = 2.0 * temp1 * root54;
+				d5421 = temp * f542 * g521;
+				d5433 = temp * f543 * g533;
+				xlamo = (mo + nodeo + nodeo - theta - theta) % TWO_PI;
+				xfact = mdot + dmdt + 2.0 * (nodedot + dnodt - RPTIM) - no;
+				em = emo;
+				emsq = emsqo;
+			}
+
+			if (irez == 1) {
+				// synchronous resonance terms
+				double g200 = 1.0 + emsq * (-2.5 + 0.8125 * emsq);
+				double g310 = 1.0 + 2.0 * emsq;
+				double g300 = 1.0 + emsq * (-6.0 + 6.60937 * emsq);
+				double f220 = 0.75 * (1.0 + cosim) * (1.0 + cosim);
+				double f311 = 0.9375 * sinim * sinim * (1.0 + 3.0 * cosim)
+						- 0.75 * (1.0 + cosim);
+				double f330 = 1.0 + cosim;
+				f330 = 1.875 * f330 * f330 * f330;
+				del1 = 3.0 * nm * nm * aonv * aonv;
+				del2 = 2.0 * del1 * f220 * g200 * q22;
+				del3 = 3.0 * del1 * f330 * g300 * q33 * aonv;
+				del1 = del1 * f311 * g310 * q31 * aonv;
+				xlamo = (mo + nodeo + argpo - theta) % TWO_PI;
+				xfact = mdot + xpidot - RPTIM + dmdt + domdt + dnodt - no;
+			}
+
+			// initialize the integrator
+			xli = xlamo;
+			xni = no;
+			atime = 0.0;
+		}
+	}
+
+	/**
+	 * Deep space secular effects (dspace), including the numerical
+	 * integration of the resonance terms.
+	 * 
+	 * @return em, argpm, inclm, mm, nodem, nm in {@link #mDeepSpace}
+	 */
+	private double[] dspace(double t, double em, double argpm, double inclm,
+			double mm, double nodem) {
+		// LOCALS
+		final double fasx2 = 0.13130908, fasx4 = 2.8843198, fasx6 = 0.37448087;
+		final double g22 = 5.7686396, g32 = 0.95240898, g44 = 1.8014998;
+		final double g52 = 1.0508330, g54 = 4.4108898;
+		final double stepp = 720.0, stepn = -720.0, step2 = 259200.0;
+		double theta = (gsto + t * RPTIM) % TWO_PI;
+		double nm = no, ft = 0.0, delt, xndt = 0, xldot = 0, xnddt = 0, xl;
+
+		em = em + dedt * t;
+		inclm = inclm + didt * t;
+		argpm = argpm + domdt * t;
+		nodem = nodem + dnodt * t;
+		mm = mm + dmdt * t;
+
+		if (irez != 0) {
+			// restart the integrator when going backwards or past the
+			// previous time
+			if (atime == 0.0 || t * atime <= 0.0
+					|| Math.abs(t) < Math.abs(atime)) {
+				atime = 0.0;
+				xni = no;
+				xli = xlamo;
+			}
+			delt = t > 0.0 ? stepp : stepn;
+
+			while (true) {
+				if (irez != 2) {
+					// near-synchronous resonance terms
+					xndt = del1 * Math.sin(xli - fasx2) + del2
+							* Math.sin(2.0 * (xli - fasx4)) + del3
+							* Math.sin(3.0 * (xli - fasx6));
+					xldot = xni + xfact;
+					xnddt = del1 * Math.cos(xli - fasx2) + 2.0 * del2
+							* Math.cos(2.0 * (xli - fasx4)) + 3.0 * del3
+							* Math.cos(3.0 * (xli - fasx6));
+					xnddt = xnddt * xldot;
+				} else {
+					// near-half-day resonance terms
+					double xomi = argpo + argpdot * atime;
+					double x2omi = xomi + xomi;
+					double x2li = xli + xli;
+					xndt = d2201 * Math.sin(x2omi + xli - g22) + d2211
+							* Math.sin(xli - g22) + d3210
+							* Math.sin(xomi + xli - g32) + d3222
+							* Math.sin(-xomi + xli - g32) + d4410
+							* Math.sin(x2omi + x2li - g44) + d4422
+							* Math.sin(x2li - g44) + d5220
+							* Math.sin(xomi + xli - g52) + d5232
+							* Math.sin(-xomi + xli - g52) + d5421
+							* Math.sin(xomi + x2li - g54) + d5433
+							* Math.sin(-xomi + x2li - g54);
+					xldot = xni + xfact;
+					xnddt = d2201 * Math.cos(x2omi + xli - g22) + d2211
+							* Math.cos(xli - g22) + d3210
+							* Math.cos(xomi + xli - g32) + d3222
+							* Math.cos(-xomi + xli - g32) + d5220
+							* Math.cos(xomi + xli - g52) + d5232
+							* Math.cos(-xomi + xli - g52) + 2.0
+							* (d4410 * Math.cos(x2omi + x2li - g44) + d4422
+									* Math.cos(x2li - g44) + d5421
+									* Math.cos(xomi + x2li - g54) + d5433
+									* Math.cos(-xomi + x2li - g54));
+					xnddt = xnddt * xldot;
+				}
+
+				if (Math.abs(t - atime) >= stepp) {
+					xli = xli + xldot * delt + xndt * step2;
+					xni = xni + xndt * delt + xnddt * step2;
+					atime = atime + delt;
+				} else {
+					ft = t - atime;
+					break;
+				}
+			}
+
+			nm = xni + xndt * ft + xnddt * ft * ft * 0.5;
+			xl = xli + xldot * ft + xndt * ft * ft * 0.5;
+			if (irez != 1)
+				mm = xl - 2.0 * nodem + 2.0 * theta;
+			else
+				mm = xl - nodem - argpm + theta;
+			nm = no + (nm - no);
+		}
+		mDeepSpace[0] = em;
+		mDeepSpace[1] = argpm;
+		mDeepSpace[2] = inclm;
+		mDeepSpace[3] = mm;
+		mDeepSpace[4] = nodem;
+		mDeepSpace[5] = nm;
+		return mDeepSpace;
+	}
+
+	/**
+	 * Deep space long period periodics (dpper) applied to the elements.
+	 * 
+	 * @return ep, inclp, nodep, argpp, mp in {@link #mDeepSpace}
+	 */
+	private double[] dpper(double t, double ep, double inclp, double nodep,
+			double argpp, double mp) {
+		// LOCALS
+		double zm, zf, sinzf, f2, f3, ses, sis, sls, sghs, shs, sel, sil,
+				sll, sghl, shll, pe, pinc, pl, pgh, ph, sinip, cosip;
+
+		zm = zmos + ZNS * t;
+		zf = zm + 2.0 * ZES * Math.sin(zm);
+		sinzf = Math.sin(zf);
+		f2 = 0.5 * sinzf * sinzf - 0.25;
+		f3 = -0.5 * sinzf * Math.cos(zf);
+		ses = se2 * f2 + se3 * f3;
+		sis = si2 * f2 + si3 * f3;
+		sls = sl2 * f2 + sl3 * f3 + sl4 * sinzf;
+		sghs = sgh2 * f2 + sgh3 * f3 + sgh4 * sinzf;
+		shs = sh2 * f2 + sh3 * f3;
+
+		zm = zmol + ZNL * t;
+		zf = zm + 2.0 * ZEL * Math.sin(zm);
+		sinzf = Math.sin(zf);
+		f2 = 0.5 * sinzf * sinzf - 0.25;
+		f3 = -0.5 * sinzf * Math.cos(zf);
+		sel = ee2 * f2 + e3 * f3;
+		sil = xi2 * f2 + xi3 * f3;
+		sll = xl2 * f2 + xl3 * f3 + xl4 * sinzf;
+		sghl = xgh2 * f2 + xgh3 * f3 + xgh4 * sinzf;
+		shll = xh2 * f2 + xh3 * f3;
+
+		pe = ses + sel - peo;
+		pinc = sis + sil - pinco;
+		pl = sls + sll - plo;
+		pgh = sghs + sghl - pgho;
+		ph = shs + shll - pho;
+
+		inclp = inclp + pinc;
+		ep = ep + pe;
+		sinip = Math.sin(inclp);
+		cosip = Math.cos(inclp);
+
+		if (inclp >= 0.2) {
+			// apply periodics directly
+			ph = ph / sinip;
+			pgh = pgh - cosip * ph;
+			argpp = argpp + pgh;
+			nodep = nodep + ph;
+			mp = mp + pl;
+		} else {
+			// apply periodics with Lyddane modification
+			double sinop = Math.sin(nodep), cosop = Math.cos(nodep);
+			double alfdp = sinip * sinop, betdp = sinip * cosop;
+			double dalf = ph * cosop + pinc * cosip * sinop;
+			double dbet = -ph * sinop + pinc * cosip * cosop;
+			double xls, dls, xnoh;
+			alfdp = alfdp + dalf;
+			betdp = betdp + dbet;
+			nodep = nodep % TWO_PI;
+			xls = mp + argpp + cosip * nodep;
+			dls = pl + pgh - pinc * nodep * sinip;
+			xls = xls + dls;
+			xnoh = nodep;
+			nodep = Math.atan2(alfdp, betdp);
+			if (Math.abs(xnoh - nodep) > Math.PI) {
+				if (nodep < xnoh)
+					nodep = nodep + TWO_PI;
+				else
+					nodep = nodep - TWO_PI;
+			}
+			mp = mp + pl;
+			argpp = xls - mp - cosip * nodep;
+		}
+		mDeepSpace[0] = ep;
+		mDeepSpace[1] = inclp;
+		mDeepSpace[2] = nodep;
+		mDeepSpace[3] = argpp;
+		mDeepSpace[4] = mp;
+		return mDeepSpace;
+	}
+}
@@ -0,0 +1,303 @@
+package com.horner.LookAngle;
+
+/**
+ * Precomputed topocentric frame of an antenna site. Holds everything in
+ * Soler's look angle method that depends only on the site: the prime vertical
+ * radius of curvature, the site's cartesian (ECEF) coordinates, and the
+ * rotation from cartesian components into local geodetic east, north and up.
+ * 
+ * Once built, evaluating a satellite costs only the vector difference and the
+ * e,n,u projection. A frame may be moved with {@link #set(double, double, double)
+ * set()}, which skips the recomputation when the site has not changed, so a
+ * single instance can be kept for as long as the fix holds still.
+ * 
+ * The trigonometry comes from a {@link TrigProvider} chosen when the frame is
+ * built, so bulk callers can pick a faster tier; the default is
+ * {@link TrigProvider#EXACT}.
+ * 
+ * Not thread-safe: each thread should own its own instance.
+ * 
+ * @author etchorner
+ * 
+ */
+public final class SiteFrame {
+
+	// ATTRIBUTES
+	/** source of sin, cos and atan for this frame */
+	final TrigProvider trig;
+	/** latitude of antenna site (decimal degrees) */
+	private double mLatitude = Double.NaN;
+	/** longitude of antenna site (decimal degrees) */
+	private double mLongitude = Double.NaN;
+	/** altitude of antenna site (meters) */
+	private double mAltitude = Double.NaN;
+	/** latitude of antenna site (radians) */
+	double latRad;
+	/** Principal radius of curvature in the prime vertical */
+	double N;
+	/** Cartesian coordinates of antenna site */
+	double xAnt, yAnt, zAnt;
+	/** first row of the e,n,u rotation (geodetic east) */
+	double ex, ey;
+	/** second row of the e,n,u rotation (geodetic north) */
+	double nx, ny, nz;
+	/** third row of the e,n,u rotation (geodetic zenith) */
+	double ux, uy, uz;
+
+	// END ATTRIBUTES
+
+	/**
+	 * Creates an empty frame. {@link #set(double, double, double) set()} must
+	 * be called before the frame is used.
+	 */
+	public SiteFrame() {
+		this(TrigProvider.EXACT);
+	}
+
+	/**
+	 * Creates an empty frame that uses the given trigonometry tier.
+	 * {@link #set(double, double, double) set()} must be called before the
+	 * frame is used.
+	 * 
+	 * @param trig
+	 *            the {@link TrigProvider} tier for this frame
+	 */
+	public SiteFrame(TrigProvider trig) {
+		this.trig = trig;
+	}
+
+	/**
+	 * Builds the frame for an antenna site.
+	 * 
+	 * @param lat
+	 *            geodetic latitude of the antenna site (decimal degrees)
+	 * @param lon
+	 *            geodetic longitude of the antenna site (decimal degrees)
+	 * @param alt
+	 *            altitude of the antenna site (meters)
+	 */
+	public SiteFrame(double lat, double lon, double alt) {
+		this(TrigProvider.EXACT);
+		set(lat, lon, alt);
+	}
+
+	/**
+	 * Moves the frame to a new antenna site. Nothing is recomputed if the
+	 * site is unchanged.
+	 * 
+	 * @param lat
+	 *            geodetic latitude of the antenna site (decimal degrees)
+	 * @param lon
+	 *            geodetic longitude of the antenna site (decimal degrees)
+	 * @param alt
+	 *            altitude of the antenna site (meters)
+	 * @return true if the frame was recomputed, false if the site had not
+	 *         moved
+	 */
+	public boolean set(double lat, double lon, double alt) {
+		if (isAt(lat, lon, alt))
+			return false;
+
+		double siteLat = Math.toRadians(lat);
+		double siteLon = Math.toRadians(lon);
+		double sinLat = trig.sin(siteLat);
+		double cosLat = trig.cos(siteLat);
+		double sinLon = trig.sin(siteLon);
+		double cosLon = trig.cos(siteLon);
+
+		N = SatMathCore.WGS84_A
+				/ Math.sqrt(1 - Math.pow(SatMathCore.WGS84_EPSILON * sinLat,
+						2));
+
+		// Step 1a: Transform curvilinear to cartesian coordinates
+		xAnt = (N + alt) * cosLon * cosLat;
+		yAnt = (N + alt) * sinLon * cosLat;
+		zAnt = (N * (1 - Math.pow(SatMathCore.WGS84_EPSILON, 2)) + alt)
+				* sinLat;
+
+		// Step 3 (site part): rows of the e,n,u rotation matrix
+		ex = -1 * sinLon;
+		ey = cosLon;
+		nx = -1 * sinLat * cosLon;
+		ny = sinLat * sinLon;
+		nz = cosLat;
+		ux = cosLat * cosLon;
+		uy = cosLat * sinLon;
+		uz = sinLat;
+
+		latRad = siteLat;
+		mLatitude = lat;
+		mLongitude = lon;
+		mAltitude = alt;
+		return true;
+	}
+
+	/**
+	 * Tells whether this frame was built for the given site.
+	 * 
+	 * @param lat
+	 *            geodetic latitude (decimal degrees)
+	 * @param lon
+	 *            geodetic longitude (decimal degrees)
+	 * @param alt
+	 *            altitude (meters)
+	 * @return true if the frame describes exactly this site
+	 */
+	public boolean isAt(double lat, double lon, double alt) {
+		return lat == mLatitude && lon == mLongitude && alt == mAltitude;
+	}
+
+	/** @return latitude of the antenna site (decimal degrees) */
+	public double getLatitude() {
+		return mLatitude;
+	}
+
+	/** @return longitude of the antenna site (decimal degrees) */
+	public double getLongitude() {
+		return mLongitude;
+	}
+
+	/** @return altitude of the antenna site (meters) */
+	public double getAltitude() {
+		return mAltitude;
+	}
+
+	/**
+	 * Computes the look angle from this site to a geostationary satellite.
+	 * Gives the same answer as
+	 * {@link SatMathCore#getLookAngle(double, double, double, double, LookAngleResult)
+	 * SatMathCore.getLookAngle()}.
+	 * 
+	 * @param satLon
+	 *            longitude of the geostationary satellite (decimal degrees)
+	 * @param out
+	 *            the {@link LookAngleResult} to fill in
+	 * @return the <code>out</code> parameter, for chaining
+	 */
+	public LookAngleResult getLookAngle(double satLon, LookAngleResult out) {
+		double lon = Math.toRadians(satLon);
+		return getLookAngle(SatMathCore.GEO_RADIUS * trig.cos(lon),
+				SatMathCore.GEO_RADIUS * trig.sin(lon), 0, out, true);
+	}
+
+	/**
+	 * Computes the look angle from this site to a target given by its
+	 * cartesian (ECEF) coordinates. The target may lie anywhere, so unlike
+	 * the geostationary form the azimuth quadrant is taken from the signs of
+	 * the east and north components.
+	 * 
+	 * @param x_sat
+	 *            x coordinate of the target (meters)
+	 * @param y_sat
+	 *            y coordinate of the target (meters)
+	 * @param z_sat
+	 *            z coordinate of the target (meters)
+	 * @param out
+	 *            the {@link LookAngleResult} to fill in
+	 * @return the <code>out</code> parameter, for chaining
+	 */
+	public LookAngleResult getLookAngle(double x_sat, double y_sat,
+			double z_sat, LookAngleResult out) {
+		return getLookAngle(x_sat, y_sat, z_sat, out, false);
+	}
+
+	/**
+	 * Soler's steps 2 to 4 for a target in cartesian coordinates.
+	 * 
+	 * @param geo
+	 *            true to place the azimuth with Soler's hemisphere rule,
+	 *            which holds only for a geostationary target (toward the
+	 *            equator from the site); false to use the full quadrant of
+	 *            the east and north components
+	 */
+	private LookAngleResult getLookAngle(double x_sat, double y_sat,
+			double z_sat, LookAngleResult out, boolean geo) {
+		// Step 2: Satellite components (x,y,z)
+		double x = x_sat - xAnt;
+		double y = y_sat - yAnt;
+		double z = z_sat - zAnt;
+
+		// Step 3: Transform satellite components to geodetic e,n,u
+		double e = ex * x + ey * y;
+		double n = nx * x - ny * y + nz * z;
+		double u = ux * x + uy * y + uz * z;
+
+		// Step 4: Calculate look angle
+		double alpha = trig.atan(e / n);
+		double nu = trig.atan(u / Math.sqrt(e * e + n * n));
+
+		if (geo) {
+			// flip negative azimuth in the southern hemisphere
+			if (alpha < 0 && latRad <= 0)
+				alpha = alpha + 2 * Math.PI;
+
+			// add a half circle
+			if (latRad > 0)
+				alpha = alpha + Math.PI;
+		} else if (n < 0) {
+			// target south of the site: quadrants II and III
+			alpha = alpha + Math.PI;
+		} else if (e == 0 && n == 0) {
+			// target straight up or down: azimuth undefined, report north
+			alpha = 0;
+		} else if (alpha < 0) {
+			// north-west quadrant; a hair west of north rounds to a full turn
+			alpha = alpha + 2 * Math.PI;
+			if (alpha >= 2 * Math.PI)
+				alpha = 0;
+		}
+
+		out.azimuth = Math.toDegrees(alpha);
+		out.elevation = Math.toDegrees(nu);
+		out.range = Math.sqrt(e * e + n * n + u * u);
+		return out;
+	}
+
+	/**
+	 * Inverse of {@link #getLookAngle(double, LookAngleResult) getLookAngle()}:
+	 * finds the geostationary longitude the antenna is pointed at. The line of
+	 * sight is intersected with the sphere of geostationary radius and the
+	 * longitude of the intersection is returned, provided the intersection
+	 * lies on the belt, within {@link SatMathCore#GEO_BELT_TOLERANCE} of the
+	 * equatorial plane. Pointing away from the belt, at any other point of
+	 * the sphere, is a miss.
+	 * 
+	 * @param azimuth
+	 *            true azimuth of the antenna (decimal degrees)
+	 * @param elevation
+	 *            elevation of the antenna (decimal degrees)
+	 * @return longitude of the satellite (decimal degrees, -180..180), or NaN
+	 *         if the line of sight does not reach the geostationary belt
+	 */
+	public double getSatelliteLongitude(double azimuth, double elevation) {
+		double az = Math.toRadians(azimuth);
+		double el = Math.toRadians(elevation);
+		/** line of sight in geodetic e,n,u */
+		double e = Math.sin(az) * Math.cos(el);
+		double n = Math.cos(az) * Math.cos(el);
+		double u = Math.sin(el);
+		/** line of sight rotated back to cartesian (transpose of e,n,u) */
+		double dx = ex * e + nx * n + ux * u;
+		double dy = ey * e - ny * n + uy * u;
+		double dz = nz * n + uz * u;
+		/** |ant + t * d| = r, with |d| = 1 */
+		double b = xAnt * dx + yAnt * dy + zAnt * dz;
+		double c = xAnt * xAnt + yAnt * yAnt + zAnt * zAnt
+				- (double) SatMathCore.GEO_RADIUS * SatMathCore.GEO_RADIUS;
+		double disc = b * b - c;
+		double t, x, y, z;
+
+		if (disc < 0)
+			return Double.NaN;
+		t = -b + Math.sqrt(disc);
+		if (t <= 0)
+			return Double.NaN;
+		x = xAnt + t * dx;
+		y = yAnt + t * dy;
+		z = zAnt + t * dz;
+		if (!(Math.abs(Math.toDegrees(Math.atan2(z, Math.hypot(x, y))))
+				<= SatMathCore.GEO_BELT_TOLERANCE))
+			return Double.NaN;
+		return Math.toDegrees(Math.atan2(y, x));
+	}
+}
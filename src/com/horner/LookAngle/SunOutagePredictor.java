@@ -0,0 +1,384 @@
+package com.horner.LookAngle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Predicts sun outages at an antenna site: the times when the sun, seen from
+ * the site, passes within a beamwidth of a geostationary satellite and
+ * drowns its signal. This happens once a day for a few days around each
+ * equinox.
+ * 
+ * The sun comes from the low precision analytic ephemeris of the
+ * Astronomical Almanac (about 0.01 degrees between 1950 and 2050), made
+ * topocentric by subtracting the site. Nothing is stepped minute by minute:
+ * the satellite's direction is fixed in earth-fixed coordinates, so each day
+ * the sun's separation from it is smallest when the two directions share
+ * the same earth-fixed longitude, and that crossing is found by a few Newton
+ * steps from the previous day's. Days on which the sun's declination is too
+ * far from the satellite's are rejected at the cost of a single ephemeris
+ * evaluation; on the remaining days the beam entry and exit are bracketed
+ * around the peak and bisected to {@link #TIME_TOLERANCE}.
+ * 
+ * As in {@link VisibilityScanner}, small catalogs run on the calling thread
+ * and larger ones are split into contiguous chunks on the supplied
+ * {@link ExecutorService}.
+ * 
+ * @author etchorner
+ * 
+ */
+public class SunOutagePredictor {
+
+	// CONSTANTS
+	/** catalogs smaller than this are always predicted sequentially */
+	static final int SEQUENTIAL_THRESHOLD = 64;
+	/** angular radius of the sun's disc (decimal degrees) */
+	public static final double SUN_RADIUS = 0.267;
+	/** widest beam accepted (decimal degrees) */
+	public static final double MAX_BEAMWIDTH = 45;
+	/** precision of the predicted times (days, one millisecond) */
+	static final double TIME_TOLERANCE = 1 / 86400000.0;
+	/** Julian date of 1970 Jan 1.0, the Java time origin */
+	private static final double JD_UNIX = 2440587.5;
+	/** Julian date of the J2000.0 epoch */
+	private static final double JD_J2000 = 2451545.0;
+	private static final double MILLIS_PER_DAY = 86400000.0;
+	/** astronomical unit (meters) */
+	private static final double AU = 149597870700.0;
+	private static final double TWO_PI = 2 * Math.PI;
+	/** slack on the daily declination test (radians) */
+	private static final double CULL_MARGIN = Math.toRadians(0.1);
+	/** iteration cap for the daily peak search */
+	private static final int MAX_ITERATIONS = 10;
+
+	// END CONSTANTS
+
+	/**
+	 * One sun outage of one satellite.
+	 */
+	public static final class Outage {
+		/** catalog index of the satellite */
+		public final int satellite;
+		/** time the sun enters the beam (milliseconds since 1970 UTC) */
+		public final long start;
+		/** time of the closest approach (milliseconds since 1970 UTC) */
+		public final long peak;
+		/** time the sun leaves the beam (milliseconds since 1970 UTC) */
+		public final long end;
+		/** sun to satellite separation at the peak (decimal degrees) */
+		public final double separation;
+
+		Outage(int satellite, long start, long peak, long end,
+				double separation) {
+			this.satellite = satellite;
+			this.start = start;
+			this.peak = peak;
+			this.end = end;
+			this.separation = separation;
+		}
+	}
+
+	// ATTRIBUTES
+	/** longitudes of the satellites (decimal degrees) */
+	private final double[] mSatLon;
+	/** pool for parallel predictions, null to always run sequentially */
+	private final ExecutorService mExecutor;
+	/** number of chunks a parallel prediction is split into */
+	private final int mChunks;
+
+	// END ATTRIBUTES
+
+	/**
+	 * Creates a predictor that always runs on the calling thread.
+	 * 
+	 * @param satLon
+	 *            longitudes of the satellites (decimal degrees), e.g.
+	 *            {@link SatCatalog#longitudes}
+	 */
+	public SunOutagePredictor(double[] satLon) {
+		this(satLon, null, 1);
+	}
+
+	/**
+	 * Creates a predictor that splits large catalogs across an executor.
+	 * 
+	 * @param satLon
+	 *            longitudes of the satellites (decimal degrees), e.g.
+	 *            {@link SatCatalog#longitudes}
+	 * @param executor
+	 *            the {@link ExecutorService} running the chunks; it is not
+	 *            shut down by the predictor
+	 * @param parallelism
+	 *            number of chunks to split a large catalog into, usually the
+	 *            executor's thread count
+	 */
+	public SunOutagePredictor(double[] satLon, ExecutorService executor,
+			int parallelism) {
+		mSatLon = satLon;
+		mExecutor = executor;
+		mChunks = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Finds every outage of every satellite above the horizon of a site whose
+	 * peak falls in a time range.
+	 * 
+	 * @param lat
+	 *            geodetic latitude of the antenna site (decimal degrees)
+	 * @param lon
+	 *            geodetic longitude of the antenna site (decimal degrees)
+	 * @param alt
+	 *            altitude of the antenna site (meters)
+	 * @param fromMillis
+	 *            start of the range (milliseconds since 1970 UTC)
+	 * @param toMillis
+	 *            end of the range, exclusive (milliseconds since 1970 UTC)
+	 * @param beamwidth
+	 *            largest separation of the sun's centre from the satellite
+	 *            that causes an outage (decimal degrees); for a dish,
+	 *            usually half its 3 dB beamwidth plus {@link #SUN_RADIUS}
+	 * @return the outages in catalog order, each satellite's in time order
+	 */
+	public List<Outage> predict(double lat, double lon, double alt,
+			long fromMillis, long toMillis, double beamwidth) {
+		// LOCALS
+		int count = mSatLon.length;
+		double fromJd = JD_UNIX + fromMillis / MILLIS_PER_DAY;
+		double toJd = JD_UNIX + toMillis / MILLIS_PER_DAY;
+		double beam = Math.toRadians(beamwidth);
+
+		if (!(beamwidth > 0 && beamwidth <= MAX_BEAMWIDTH))
+			throw new IllegalArgumentException("beamwidth " + beamwidth
+					+ " outside 0 .. " + MAX_BEAMWIDTH);
+
+		if (mExecutor == null || mChunks == 1 || count < SEQUENTIAL_THRESHOLD)
+			return evaluate(lat, lon, alt, fromJd, toJd, beam, 0, count);
+		return evaluateParallel(lat, lon, alt, fromJd, toJd, beam);
+	}
+
+	/**
+	 * Predicts the outages of one contiguous range of the catalog.
+	 */
+	private List<Outage> evaluate(double lat, double lon, double alt,
+			double fromJd, double toJd, double beam, int from, int to) {
+		SiteFrame frame = new SiteFrame(lat, lon, alt);
+		List<Outage> rtnOutages = new ArrayList<Outage>();
+		double[] sat = new double[3];
+		double[] sun = new double[3];
+
+		for (int j = from; j < to; j++) {
+			double satLon = Math.toRadians(mSatLon[j]);
+			double x = SatMathCore.GEO_RADIUS * Math.cos(satLon) - frame.xAnt;
+			double y = SatMathCore.GEO_RADIUS * Math.sin(satLon) - frame.yAnt;
+			double z = -frame.zAnt;
+			double r = Math.sqrt(x * x + y * y + z * z);
+
+			sat[0] = x / r;
+			sat[1] = y / r;
+			sat[2] = z / r;
+			// the sun is never behind a satellite below the horizon
+			if (sat[0] * frame.ux + sat[1] * frame.uy + sat[2] * frame.uz > 0)
+				evaluate(frame, j, sat, fromJd, toJd, beam, sun, rtnOutages);
+		}
+		return rtnOutages;
+	}
+
+	/**
+	 * Walks one satellite through the range a day at a time.
+	 */
+	private static void evaluate(SiteFrame frame, int satellite, double[] sat,
+			double fromJd, double toJd, double beam, double[] sun,
+			List<Outage> outOutages) {
+		// LOCALS
+		double satLon = Math.atan2(sat[1], sat[0]);
+		double satDec = Math.asin(sat[2]);
+		double cosBeam = Math.cos(beam);
+		double jd;
+
+		// first crossing of the satellite's longitude by the sun, which
+		// moves west through earth-fixed longitude once a day
+		getSunDirection(frame, fromJd, sun);
+		jd = Math.atan2(sun[1], sun[0]) - satLon;
+		jd = fromJd + (jd - TWO_PI * Math.floor(jd / TWO_PI)) / TWO_PI;
+
+		for (;; jd += 1) {
+			getSunDirection(frame, jd, sun);
+			if (Math.abs(Math.asin(sun[2]) - satDec) > beam + CULL_MARGIN) {
+				if (jd >= toJd)
+					break;
+				continue;
+			}
+
+			jd = findPeak(frame, satLon, jd, sun);
+			if (jd >= toJd)
+				break;
+			if (jd < fromJd || dot(sun, sat) <= cosBeam)
+				continue;
+
+			// the sun sweeps past at about 360 cos(dec) degrees a day
+			double width = 2 * beam / (TWO_PI * Math.cos(satDec)) + 1 / 1440.0;
+			double start = findEdge(frame, sat, cosBeam, jd, -width, sun);
+			double end = findEdge(frame, sat, cosBeam, jd, width, sun);
+			getSunDirection(frame, jd, sun);
+			outOutages.add(new Outage(satellite, toMillis(start),
+					toMillis(jd), toMillis(end), Math.toDegrees(Math.acos(Math
+							.min(1, dot(sun, sat))))));
+		}
+	}
+
+	/**
+	 * Newton's method for the time the sun's earth-fixed longitude equals the
+	 * satellite's. The sun's longitude falls by very nearly 2 pi a day, which
+	 * serves as the derivative.
+	 * 
+	 * @param sun
+	 *            holds the sun's direction at <code>jd</code> on entry and at
+	 *            the returned time on exit
+	 * @return the Julian date of the peak
+	 */
+	private static double findPeak(SiteFrame frame, double satLon, double jd,
+			double[] sun) {
+		for (int k = 0; k < MAX_ITERATIONS; k++) {
+			double dLon = Math.atan2(sun[1], sun[0]) - satLon;
+			double step = (dLon - TWO_PI * Math.rint(dLon / TWO_PI)) / TWO_PI;
+			jd += step;
+			getSunDirection(frame, jd, sun);
+			if (Math.abs(step) < TIME_TOLERANCE)
+				break;
+		}
+		return jd;
+	}
+
+	/**
+	 * Brackets the beam edge on one side of a peak, widening the bracket
+	 * until the sun is outside the beam, then bisects it.
+	 * 
+	 * @param width
+	 *            initial bracket width (days), negative to search before the
+	 *            peak
+	 * @return the Julian date of the edge
+	 */
+	private static double findEdge(SiteFrame frame, double[] sat,
+			double cosBeam, double peak, double width, double[] sun) {
+		// LOCALS
+		double inside = peak;
+		double outside = peak + width;
+
+		getSunDirection(frame, outside, sun);
+		while (dot(sun, sat) > cosBeam && Math.abs(width) < 0.5) {
+			inside = outside;
+			width *= 2;
+			outside = peak + width;
+			getSunDirection(frame, outside, sun);
+		}
+		while (Math.abs(outside - inside) > TIME_TOLERANCE) {
+			double mid = 0.5 * (inside + outside);
+			getSunDirection(frame, mid, sun);
+			if (dot(sun, sat) > cosBeam)
+				inside = mid;
+			else
+				outside = mid;
+		}
+		return 0.5 * (inside + outside);
+	}
+
+	/**
+	 * Splits the catalog into {@link #mChunks} ranges and predicts them on
+	 * the executor, the last range on the calling thread.
+	 */
+	private List<Outage> evaluateParallel(final double lat, final double lon,
+			final double alt, final double fromJd, final double toJd,
+			final double beam) {
+		int count = mSatLon.length;
+		int chunk = (count + mChunks - 1) / mChunks;
+		List<Future<List<Outage>>> pending;
+		List<Outage> rtnOutages = new ArrayList<Outage>();
+		List<Outage> last;
+		int from = 0;
+
+		pending = new ArrayList<Future<List<Outage>>>(mChunks);
+		for (; from + chunk < count; from += chunk) {
+			final int start = from;
+			final int end = from + chunk;
+			pending.add(mExecutor.submit(new Callable<List<Outage>>() {
+				public List<Outage> call() {
+					return evaluate(lat, lon, alt, fromJd, toJd, beam, start,
+							end);
+				}
+			}));
+		}
+		last = evaluate(lat, lon, alt, fromJd, toJd, beam, from, count);
+
+		try {
+			for (Future<List<Outage>> f : pending) {
+				rtnOutages.addAll(f.get());
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("sun outage prediction interrupted",
+					ie);
+		} catch (ExecutionException ee) {
+			throw new IllegalStateException("sun outage prediction failed",
+					ee.getCause());
+		}
+		rtnOutages.addAll(last);
+		return rtnOutages;
+	}
+
+	/**
+	 * Low precision solar ephemeris (Astronomical Almanac), rotated into
+	 * earth-fixed coordinates by Greenwich mean sidereal time.
+	 * 
+	 * @param jd
+	 *            Julian date (UT)
+	 * @param outXYZ
+	 *            receives the sun's earth-fixed x, y, z (meters)
+	 */
+	static void getSunPosition(double jd, double[] outXYZ) {
+		// LOCALS
+		double n = jd - JD_J2000;
+		double meanLon = Math.toRadians((280.460 + 0.9856474 * n) % 360);
+		double anomaly = Math.toRadians((357.528 + 0.9856003 * n) % 360);
+		double eclLon = meanLon
+				+ Math.toRadians(1.915 * Math.sin(anomaly) + 0.020
+						* Math.sin(2 * anomaly));
+		double obliquity = Math.toRadians(23.439 - 0.0000004 * n);
+		double r = AU
+				* (1.00014 - 0.01671 * Math.cos(anomaly) - 0.00014 * Math
+						.cos(2 * anomaly));
+		double x = r * Math.cos(eclLon);
+		double y = r * Math.cos(obliquity) * Math.sin(eclLon);
+		double z = r * Math.sin(obliquity) * Math.sin(eclLon);
+		double gst = Sgp4Propagator.gmst(jd);
+		double cosG = Math.cos(gst), sinG = Math.sin(gst);
+
+		outXYZ[0] = cosG * x + sinG * y;
+		outXYZ[1] = -sinG * x + cosG * y;
+		outXYZ[2] = z;
+	}
+
+	/** unit vector from the site to the sun, earth-fixed */
+	private static void getSunDirection(SiteFrame frame, double jd,
+			double[] outDir) {
+		getSunPosition(jd, outDir);
+		double x = outDir[0] - frame.xAnt;
+		double y = outDir[1] - frame.yAnt;
+		double z = outDir[2] - frame.zAnt;
+		double r = Math.sqrt(x * x + y * y + z * z);
+		outDir[0] = x / r;
+		outDir[1] = y / r;
+		outDir[2] = z / r;
+	}
+
+	private static double dot(double[] a, double[] b) {
+		return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+	}
+
+	private static long toMillis(double jd) {
+		return Math.round((jd - JD_UNIX) * MILLIS_PER_DAY);
+	}
+}
@@ -0,0 +1,333 @@
+package com.horner.LookAngle;
+
+/**
+ * Source of the trigonometric functions used by the look angle and datum
+ * math, so that bulk work (coverage rasters, catalog sweeps) can trade a
+ * bounded amount of accuracy for speed while the display path stays exact.
+ * 
+ * Three tiers are provided, each with a documented maximum absolute error
+ * over its whole domain (sin/cos for |x| up to {@link #REDUCTION_LIMIT}, atan
+ * for every finite argument):
+ * <ul>
+ * <li>{@link #EXACT}: {@link java.lang.Math}, the reference.</li>
+ * <li>{@link #POLYNOMIAL}: range reduction to an octant plus short Horner
+ * polynomials; within 2e-11 rad, or about 1e-9 degrees.</li>
+ * <li>{@link #TABLE}: 1024 entry sine/cosine and 256 entry arc tangent tables
+ * with a small angle correction; within 1e-15 rad, and no transcendental
+ * calls.</li>
+ * </ul>
+ * Outside the reduction limit the fast tiers fall back to {@link Math}.
+ * Tangent is sin/cos from a single reduction, so its error is relative, as
+ * the result grows without bound near pi/2; it is reported by
+ * {@link #getMaxTanError()} next to {@link #getMaxError()}: within 2e-11 for
+ * {@link #POLYNOMIAL} and 1e-13 for {@link #TABLE} over -pi/2..pi/2. The
+ * bounds are checked by the <code>TrigErrorSweep</code> harness under
+ * <code>bench/</code>.
+ * 
+ * Implementations are stateless and thread-safe.
+ * 
+ * @author etchorner
+ * 
+ */
+public abstract class TrigProvider {
+
+	// CONSTANTS
+	/** largest |x| the fast tiers reduce themselves (radians) */
+	public static final double REDUCTION_LIMIT = 1e5;
+
+	/** java.lang.Math, the reference tier */
+	public static final TrigProvider EXACT = new TrigProvider(0, 0) {
+		@Override
+		public double sin(double x) {
+			return Math.sin(x);
+		}
+
+		@Override
+		public double cos(double x) {
+			return Math.cos(x);
+		}
+
+		@Override
+		public double tan(double x) {
+			return Math.tan(x);
+		}
+
+		@Override
+		public double atan(double x) {
+			return Math.atan(x);
+		}
+	};
+
+	/** octant reduction with Horner polynomials, max error 2e-11 rad */
+	public static final TrigProvider POLYNOMIAL = new Polynomial();
+
+	/** table lookup with small angle correction, max error 1e-15 rad */
+	public static final TrigProvider TABLE = new Table();
+
+	/** pi/2 split for Cody-Waite reduction; k * HI is exact for |k| < 2^21 */
+	private static final double PIO2_HI = 1.5707963267341256;
+	private static final double PIO2_LO = 6.077100506506192e-11;
+	private static final double TWO_OVER_PI = 2 / Math.PI;
+	private static final double PI_OVER_2 = Math.PI / 2;
+	private static final double PI_OVER_6 = Math.PI / 6;
+	private static final double SQRT3 = Math.sqrt(3);
+	/** tan(pi/12), the upper end of the atan polynomial's interval */
+	private static final double TAN_PI_12 = 2 - SQRT3;
+
+	// END CONSTANTS
+
+	// ATTRIBUTES
+	/** documented maximum absolute error of sin, cos and atan (radians) */
+	private final double mMaxError;
+	/** documented maximum relative error of tan */
+	private final double mMaxTanError;
+
+	// END ATTRIBUTES
+
+	private TrigProvider(double maxError, double maxTanError) {
+		mMaxError = maxError;
+		mMaxTanError = maxTanError;
+	}
+
+	/** @return the documented maximum absolute error (radians) */
+	public double getMaxError() {
+		return mMaxError;
+	}
+
+	/** @return the documented maximum relative error of tan */
+	public double getMaxTanError() {
+		return mMaxTanError;
+	}
+
+	/** @return sine of an angle in radians */
+	public abstract double sin(double x);
+
+	/** @return cosine of an angle in radians */
+	public abstract double cos(double x);
+
+	/** @return tangent of an angle in radians */
+	public abstract double tan(double x);
+
+	/** @return arc tangent in radians, -pi/2..pi/2 */
+	public abstract double atan(double x);
+
+	/**
+	 * Polynomial tier. Sine and cosine are Taylor polynomials to degree 11
+	 * and 12 on the reduced octant; arc tangent folds |x| > 1 to 1/x and
+	 * |x| > tan(pi/12) around pi/6, then sums its series to degree 15.
+	 */
+	private static final class Polynomial extends TrigProvider {
+
+		// CONSTANTS
+		private static final double S3 = -1d / 6, S5 = 1d / 120,
+				S7 = -1d / 5040, S9 = 1d / 362880, S11 = -1d / 39916800;
+		private static final double C2 = -1d / 2, C4 = 1d / 24,
+				C6 = -1d / 720, C8 = 1d / 40320, C10 = -1d / 3628800,
+				C12 = 1d / 479001600;
+		private static final double A3 = -1d / 3, A5 = 1d / 5, A7 = -1d / 7,
+				A9 = 1d / 9, A11 = -1d / 11, A13 = 1d / 13, A15 = -1d / 15;
+
+		// END CONSTANTS
+
+		Polynomial() {
+			super(2e-11, 2e-11);
+		}
+
+		@Override
+		public double sin(double x) {
+			if (!(Math.abs(x) <= REDUCTION_LIMIT))
+				return Math.sin(x);
+			double k = Math.rint(x * TWO_OVER_PI);
+			double r = (x - k * PIO2_HI) - k * PIO2_LO;
+			switch ((int) ((long) k & 3)) {
+			case 0:
+				return sinPoly(r);
+			case 1:
+				return cosPoly(r);
+			case 2:
+				return -sinPoly(r);
+			default:
+				return -cosPoly(r);
+			}
+		}
+
+		@Override
+		public double cos(double x) {
+			if (!(Math.abs(x) <= REDUCTION_LIMIT))
+				return Math.cos(x);
+			double k = Math.rint(x * TWO_OVER_PI);
+			double r = (x - k * PIO2_HI) - k * PIO2_LO;
+			switch ((int) ((long) k & 3)) {
+			case 0:
+				return cosPoly(r);
+			case 1:
+				return -sinPoly(r);
+			case 2:
+				return -cosPoly(r);
+			default:
+				return sinPoly(r);
+			}
+		}
+
+		@Override
+		public double tan(double x) {
+			if (!(Math.abs(x) <= REDUCTION_LIMIT))
+				return Math.tan(x);
+			double k = Math.rint(x * TWO_OVER_PI);
+			double r = (x - k * PIO2_HI) - k * PIO2_LO;
+			double s = sinPoly(r), c = cosPoly(r);
+			return ((long) k & 1) == 0 ? s / c : -c / s;
+		}
+
+		@Override
+		public double atan(double x) {
+			// LOCALS
+			boolean negative = x < 0;
+			boolean inverted = false;
+			boolean shifted = false;
+			double t = Math.abs(x);
+			double t2, result;
+
+			if (Double.isNaN(x))
+				return x;
+			if (t > 1) {
+				t = 1 / t;
+				inverted = true;
+			}
+			if (t > TAN_PI_12) {
+				t = (t * SQRT3 - 1) / (t + SQRT3);
+				shifted = true;
+			}
+			t2 = t * t;
+			result = t
+					+ t
+					* t2
+					* (A3 + t2
+							* (A5 + t2 * (A7 + t2 * (A9 + t2 * (A11 + t2
+									* (A13 + t2 * A15))))));
+			if (shifted)
+				result += PI_OVER_6;
+			if (inverted)
+				result = PI_OVER_2 - result;
+			return negative ? -result : result;
+		}
+
+		private static double sinPoly(double r) {
+			double r2 = r * r;
+			return r
+					+ r
+					* r2
+					* (S3 + r2 * (S5 + r2 * (S7 + r2 * (S9 + r2 * S11))));
+		}
+
+		private static double cosPoly(double r) {
+			double r2 = r * r;
+			return 1 + r2
+					* (C2 + r2 * (C4 + r2 * (C6 + r2 * (C8 + r2 * (C10 + r2
+							* C12)))));
+		}
+	}
+
+	/**
+	 * Table tier. sin(a + d) = sin(a) cos(d) + cos(a) sin(d) with a on a
+	 * 1024 point grid over the circle and |d| <= pi/1024, where the small
+	 * angle terms are short polynomials. The argument is reduced by pi/2
+	 * first, so the grid index never needs a large multiple of the step. Arc
+	 * tangent uses atan(x) = atan(a) + atan((x - a) / (1 + a x)) with a on a
+	 * 256 point grid over 0..1.
+	 */
+	private static final class Table extends TrigProvider {
+
+		// CONSTANTS
+		private static final int SIN_BITS = 10;
+		private static final int SIN_SIZE = 1 << SIN_BITS;
+		private static final int SIN_MASK = SIN_SIZE - 1;
+		/** 2 pi / SIN_SIZE, split like pi/2 */
+		private static final double STEP_HI = PIO2_HI / (SIN_SIZE / 4);
+		private static final double STEP_LO = PIO2_LO / (SIN_SIZE / 4);
+		private static final double SIN_SCALE = SIN_SIZE / (2 * Math.PI);
+		private static final int ATAN_SIZE = 256;
+		private static final double[] SIN = new double[SIN_SIZE];
+		private static final double[] COS = new double[SIN_SIZE];
+		private static final double[] ATAN = new double[ATAN_SIZE + 1];
+
+		// END CONSTANTS
+
+		static {
+			for (int i = 0; i < SIN_SIZE; i++) {
+				SIN[i] = Math.sin(i * STEP_HI + i * STEP_LO);
+				COS[i] = Math.cos(i * STEP_HI + i * STEP_LO);
+			}
+			for (int i = 0; i <= ATAN_SIZE; i++)
+				ATAN[i] = Math.atan((double) i / ATAN_SIZE);
+		}
+
+		Table() {
+			super(1e-15, 1e-13);
+		}
+
+		@Override
+		public double sin(double x) {
+			if (!(Math.abs(x) <= REDUCTION_LIMIT))
+				return Math.sin(x);
+			double k = Math.rint(x * TWO_OVER_PI);
+			double r = (x - k * PIO2_HI) - k * PIO2_LO;
+			double j = Math.rint(r * SIN_SCALE);
+			double d = (r - j * STEP_HI) - j * STEP_LO;
+			int i = (int) (((long) k * (SIN_SIZE / 4) + (long) j) & SIN_MASK);
+			double d2 = d * d;
+			return SIN[i] * (1 + d2 * (-0.5 + d2 / 24)) + COS[i] * d
+					* (1 + d2 * (-1d / 6 + d2 / 120));
+		}
+
+		@Override
+		public double cos(double x) {
+			if (!(Math.abs(x) <= REDUCTION_LIMIT))
+				return Math.cos(x);
+			double k = Math.rint(x * TWO_OVER_PI);
+			double r = (x - k * PIO2_HI) - k * PIO2_LO;
+			double j = Math.rint(r * SIN_SCALE);
+			double d = (r - j * STEP_HI) - j * STEP_LO;
+			int i = (int) (((long) k * (SIN_SIZE / 4) + (long) j) & SIN_MASK);
+			double d2 = d * d;
+			return COS[i] * (1 + d2 * (-0.5 + d2 / 24)) - SIN[i] * d
+					* (1 + d2 * (-1d / 6 + d2 / 120));
+		}
+
+		@Override
+		public double tan(double x) {
+			if (!(Math.abs(x) <= REDUCTION_LIMIT))
+				return Math.tan(x);
+			// reduce to the quadrant first, so that near a pole the small
+			// factor is a sine of a small angle, which keeps its precision
+			double k = Math.rint(x * TWO_OVER_PI);
+			double r = (x - k * PIO2_HI) - k * PIO2_LO;
+			return ((long) k & 1) == 0 ? sin(r) / cos(r) : -cos(r) / sin(r);
+		}
+
+		@Override
+		public double atan(double x) {
+			// LOCALS
+			boolean negative = x < 0;
+			boolean inverted = false;
+			double t = Math.abs(x);
+			double a, d, d2, result;
+			int i;
+
+			if (Double.isNaN(x))
+				return x;
+			if (t > 1) {
+				t = 1 / t;
+				inverted = true;
+			}
+			i = (int) (t * ATAN_SIZE + 0.5);
+			a = (double) i / ATAN_SIZE;
+			d = (t - a) / (1 + a * t);
+			d2 = d * d;
+			result = ATAN[i] + d * (1 + d2 * (-1d / 3 + d2 * (1d / 5)));
+			if (inverted)
+				result = PI_OVER_2 - result;
+			return negative ? -result : result;
+		}
+	}
+}
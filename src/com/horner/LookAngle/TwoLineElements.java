@@ -0,0 +1,153 @@
+package com.horner.LookAngle;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One NORAD two-line element set, parsed from the fixed column format.
+ * Angles are kept in decimal degrees and the mean motion in revolutions per
+ * day, as they appear in the element set; {@link Sgp4Propagator} converts
+ * them to its own units.
+ * 
+ * @author etchorner
+ * 
+ */
+public final class TwoLineElements {
+
+	// ATTRIBUTES
+	/** satellite name from the optional title line, or null */
+	public final String name;
+	/** NORAD catalog number */
+	public final int noradNbr;
+	/** epoch as a Julian date (UTC) */
+	public final double epochJd;
+	/** ballistic drag term B* (1 / earth radii) */
+	public final double bstar;
+	/** inclination (decimal degrees) */
+	public final double inclination;
+	/** right ascension of the ascending node (decimal degrees) */
+	public final double raan;
+	/** eccentricity */
+	public final double eccentricity;
+	/** argument of perigee (decimal degrees) */
+	public final double argPerigee;
+	/** mean anomaly (decimal degrees) */
+	public final double meanAnomaly;
+	/** mean motion (revolutions per day) */
+	public final double meanMotion;
+
+	// END ATTRIBUTES
+
+	/**
+	 * Parses one element set.
+	 * 
+	 * @param name
+	 *            satellite name (title line), may be null
+	 * @param line1
+	 *            first element line, starting with "1 "
+	 * @param line2
+	 *            second element line, starting with "2 "
+	 * @throws IllegalArgumentException
+	 *             if the lines are not a well formed element set
+	 */
+	public TwoLineElements(String name, String line1, String line2) {
+		if (line1.length() < 63 || line1.charAt(0) != '1'
+				|| line2.length() < 63 || line2.charAt(0) != '2')
+			throw new IllegalArgumentException("not a two-line element set: "
+					+ line1);
+
+		try {
+			int year = Integer.parseInt(line1.substring(18, 20).trim());
+			double days = Double.parseDouble(line1.substring(20, 32).trim());
+			year += year < 57 ? 2000 : 1900;
+
+			this.name = name == null ? null : name.trim();
+			this.noradNbr = Integer.parseInt(line1.substring(2, 7).trim());
+			this.epochJd = julianDate(year, 1, 1) + days - 1;
+			this.bstar = parseImpliedDecimal(line1.substring(53, 61));
+			this.inclination = Double.parseDouble(line2.substring(8, 16)
+					.trim());
+			this.raan = Double.parseDouble(line2.substring(17, 25).trim());
+			this.eccentricity = Double.parseDouble("0."
+					+ line2.substring(26, 33).trim());
+			this.argPerigee = Double.parseDouble(line2.substring(34, 42)
+					.trim());
+			this.meanAnomaly = Double.parseDouble(line2.substring(43, 51)
+					.trim());
+			this.meanMotion = Double.parseDouble(line2.substring(52, 63)
+					.trim());
+		} catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("malformed element set: "
+					+ line1 + " / " + line2, nfe);
+		}
+	}
+
+	/**
+	 * Reads every element set from a stream of two- or three-line sets
+	 * (title lines are optional; blank lines are skipped).
+	 * 
+	 * @param buf
+	 *            the element source
+	 * @return the element sets, in file order
+	 * @throws IOException
+	 *             if the source cannot be read
+	 * @throws IllegalArgumentException
+	 *             if an element set is malformed
+	 */
+	public static List<TwoLineElements> readAll(BufferedReader buf)
+			throws IOException {
+		List<TwoLineElements> rtnList = new ArrayList<TwoLineElements>();
+		String line, title = null, first = null;
+
+		while ((line = buf.readLine()) != null) {
+			if (line.trim().length() == 0)
+				continue;
+			if (line.startsWith("1 ") && first == null) {
+				first = line;
+			} else if (line.startsWith("2 ") && first != null) {
+				rtnList.add(new TwoLineElements(title, first, line));
+				title = null;
+				first = null;
+			} else {
+				title = line;
+				first = null;
+			}
+		}
+		return rtnList;
+	}
+
+	/**
+	 * Julian date of 0h UTC on a calendar date (valid 1900 to 2100).
+	 */
+	static double julianDate(int year, int month, int day) {
+		return 367.0 * year
+				- Math.floor((7 * (year + Math.floor((month + 9) / 12.0))) * 0.25)
+				+ Math.floor(275 * month / 9.0) + day + 1721013.5;
+	}
+
+	/**
+	 * Parses the element set notation for a decimal fraction with an implied
+	 * leading decimal point and a signed exponent, e.g. " 28098-4" is
+	 * 0.28098e-4.
+	 */
+	static double parseImpliedDecimal(String field) {
+		String s = field.trim();
+		int exp = Math.max(s.lastIndexOf('-'), s.lastIndexOf('+'));
+		double sign = 1;
+
+		if (s.length() == 0)
+			return 0;
+		if (s.charAt(0) == '-' || s.charAt(0) == '+') {
+			sign = s.charAt(0) == '-' ? -1 : 1;
+			s = s.substring(1);
+			exp--;
+		}
+		if (exp <= 0)
+			return sign * Double.parseDouble("0." + s);
+		return sign
+				* Double.parseDouble("0." + s.substring(0, exp).trim() + "e"
+						+ s.substring(exp));
+	}
+}
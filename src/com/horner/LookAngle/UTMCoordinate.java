@@ -0,0 +1,49 @@
+package com.horner.LookAngle;
+
+/**
+ * Mutable holder for a UTM coordinate as numbers rather than text. Instances
+ * are meant to be created once and reused across calls to
+ * {@link DatumTransform#convertLLtoUTM(double, double, UTMCoordinate)
+ * convertLLtoUTM()} so that a conversion loop neither allocates nor parses
+ * the String form back.
+ * 
+ * Not thread-safe: each thread should own its own instance.
+ * 
+ * @author etchorner
+ * 
+ */
+public final class UTMCoordinate {
+
+	// ATTRIBUTES
+	/** longitude zone, 1 to 60 */
+	public int zone;
+	/** latitude zone letter */
+	public char band;
+	/** easting, including the 500 km false easting (meters) */
+	public double easting;
+	/** northing, including the southern false northing (meters) */
+	public double northing;
+
+	// END ATTRIBUTES
+
+	/**
+	 * Copies the values of another coordinate into this one.
+	 * 
+	 * @param other
+	 *            the {@link UTMCoordinate} to copy from
+	 * @return this (self reference, for chaining)
+	 */
+	public UTMCoordinate set(UTMCoordinate other) {
+		this.zone = other.zone;
+		this.band = other.band;
+		this.easting = other.easting;
+		this.northing = other.northing;
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "zone=" + zone + " band=" + band + " easting=" + easting
+				+ " northing=" + northing;
+	}
+}
@@ -0,0 +1,168 @@
+package com.horner.LookAngle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Finds the satellites of a catalog that are visible from an antenna site,
+ * i.e. above a given elevation mask, ordered from highest to lowest elevation.
+ * 
+ * Small catalogs are scanned on the calling thread. Larger catalogs are split
+ * into contiguous chunks which are evaluated on the supplied
+ * {@link ExecutorService}; each chunk writes into its own range of the output
+ * array, so no locking is needed. (The fork-join framework is not available
+ * on the Android API level this application targets.)
+ * 
+ * @author etchorner
+ * 
+ */
+public class VisibilityScanner {
+
+	// CONSTANTS
+	/** catalogs smaller than this are always scanned sequentially */
+	static final int SEQUENTIAL_THRESHOLD = 2048;
+
+	// END CONSTANTS
+
+	// ATTRIBUTES
+	/** longitudes of the satellites to scan (decimal degrees) */
+	private final double[] mSatLon;
+	/** pool for parallel scans, null to always scan sequentially */
+	private final ExecutorService mExecutor;
+	/** number of chunks a parallel scan is split into */
+	private final int mChunks;
+
+	// END ATTRIBUTES
+
+	/**
+	 * Creates a scanner that always runs on the calling thread.
+	 * 
+	 * @param satLon
+	 *            longitudes of the satellites to scan (decimal degrees), e.g.
+	 *            {@link SatCatalog#longitudes}
+	 */
+	public VisibilityScanner(double[] satLon) {
+		this(satLon, null, 1);
+	}
+
+	/**
+	 * Creates a scanner that splits large catalogs across an executor.
+	 * 
+	 * @param satLon
+	 *            longitudes of the satellites to scan (decimal degrees), e.g.
+	 *            {@link SatCatalog#longitudes}
+	 * @param executor
+	 *            the {@link ExecutorService} running the chunks; it is not
+	 *            shut down by the scanner
+	 * @param parallelism
+	 *            number of chunks to split a large catalog into, usually the
+	 *            executor's thread count
+	 */
+	public VisibilityScanner(double[] satLon, ExecutorService executor,
+			int parallelism) {
+		mSatLon = satLon;
+		mExecutor = executor;
+		mChunks = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Scans the catalog from one antenna site.
+	 * 
+	 * @param lat
+	 *            geodetic latitude of the antenna site (decimal degrees)
+	 * @param lon
+	 *            geodetic longitude of the antenna site (decimal degrees)
+	 * @param alt
+	 *            altitude of the antenna site (meters)
+	 * @param elevationMask
+	 *            minimum elevation for a satellite to count as visible
+	 *            (decimal degrees)
+	 * @param outElevation
+	 *            receives the elevation of every satellite in catalog order,
+	 *            visible or not; must be at least as long as the catalog
+	 * @return catalog indices of the visible satellites, highest elevation
+	 *         first
+	 */
+	public int[] scan(double lat, double lon, double alt,
+			double elevationMask, double[] outElevation) {
+		// LOCALS
+		int count = mSatLon.length;
+		int visible = 0;
+		int[] rtnIndex;
+
+		if (outElevation.length < count)
+			throw new IllegalArgumentException("elevation array shorter than "
+					+ count + " satellites");
+
+		if (mExecutor == null || mChunks == 1 || count < SEQUENTIAL_THRESHOLD)
+			evaluate(lat, lon, alt, 0, count, outElevation);
+		else
+			evaluateParallel(lat, lon, alt, outElevation);
+
+		// collect and order the satellites above the mask
+		for (int j = 0; j < count; j++) {
+			if (outElevation[j] >= elevationMask)
+				visible++;
+		}
+		rtnIndex = new int[visible];
+		visible = 0;
+		for (int j = 0; j < count; j++) {
+			if (outElevation[j] >= elevationMask)
+				rtnIndex[visible++] = j;
+		}
+		IndexSort.sort(rtnIndex, outElevation, true);
+		return rtnIndex;
+	}
+
+	/**
+	 * Evaluates the elevation of one contiguous range of the catalog.
+	 */
+	private void evaluate(double lat, double lon, double alt, int from,
+			int to, double[] outElevation) {
+		SiteFrame frame = new SiteFrame(lat, lon, alt);
+		LookAngleResult result = new LookAngleResult();
+		for (int j = from; j < to; j++) {
+			outElevation[j] = frame.getLookAngle(mSatLon[j], result).elevation;
+		}
+	}
+
+	/**
+	 * Splits the catalog into {@link #mChunks} ranges and evaluates them on
+	 * the executor, the last range on the calling thread.
+	 */
+	private void evaluateParallel(final double lat, final double lon,
+			final double alt, final double[] outElevation) {
+		int count = mSatLon.length;
+		int chunk = (count + mChunks - 1) / mChunks;
+		List<Future<Void>> pending = new ArrayList<Future<Void>>(mChunks);
+		int from = 0;
+
+		for (; from + chunk < count; from += chunk) {
+			final int start = from;
+			final int end = from + chunk;
+			pending.add(mExecutor.submit(new Callable<Void>() {
+				public Void call() {
+					evaluate(lat, lon, alt, start, end, outElevation);
+					return null;
+				}
+			}));
+		}
+		evaluate(lat, lon, alt, from, count, outElevation);
+
+		try {
+			for (Future<Void> f : pending) {
+				f.get();
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("visibility scan interrupted", ie);
+		} catch (ExecutionException ee) {
+			throw new IllegalStateException("visibility scan failed",
+					ee.getCause());
+		}
+	}
+}
@@ -0,0 +1,388 @@
+package com.horner.LookAngle;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Pure Java evaluator of the World Magnetic Model (WMM), for use where
+ * {@link android.hardware.GeomagneticField} is not available such as server
+ * side batch jobs. Coefficients are read from a standard NOAA
+ * <code>WMM.COF</code> file, which is not bundled with this source and must
+ * be supplied by the caller.
+ * 
+ * Follows the spherical harmonic synthesis of the WMM technical report: the
+ * geodetic point is converted to geocentric spherical coordinates, the Gauss
+ * coefficients are advanced to the requested date with their secular
+ * variation, the field is summed over Schmidt semi-normalized associated
+ * Legendre functions and rotated back to the geodetic frame.
+ * 
+ * The time-adjusted coefficients are kept until the date changes, and the
+ * Legendre recursion, radius power and longitude harmonic scratch arrays are
+ * owned by the instance and reused; consecutive points on the same latitude
+ * and altitude skip the Legendre recursion altogether. Methods are
+ * synchronized because of that shared scratch state; give each thread its own
+ * instance to evaluate in parallel.
+ * 
+ * @author etchorner
+ * 
+ */
+public class WorldMagneticModel implements DeclinationModel {
+
+	// CONSTANTS
+	/** geomagnetic reference radius (km) */
+	private static final double REFERENCE_RADIUS_KM = 6371.2;
+	/** semi-major axis of WGS84 ellipsoid (km) */
+	private static final double A_KM = SatMathCore.WGS84_A / 1000d;
+	/** squared first eccentricity of WGS84 ellipsoid */
+	private static final double E2 = SatMathCore.WGS84_EPSILON
+			* SatMathCore.WGS84_EPSILON;
+	/** mean length of a Gregorian year (milliseconds) */
+	private static final double MILLIS_PER_YEAR = 365.2425 * 24 * 60 * 60
+			* 1000;
+	/** geocentric latitudes are kept this far from the poles (radians) */
+	private static final double POLE_GUARD = 1e-9;
+
+	// END CONSTANTS
+
+	// ATTRIBUTES
+	/** highest degree of the model */
+	private final int mMaxN;
+	/** base epoch of the coefficients (decimal year) */
+	private final double mEpoch;
+	/** main field coefficients, Schmidt factor applied, index n*(n+1)/2+m */
+	private final double[] mG, mH;
+	/** secular variation, Schmidt factor applied, per year */
+	private final double[] mDotG, mDotH;
+	/** coefficients advanced to {@link #mYear} */
+	private final double[] mGt, mHt;
+	/** decimal year the adjusted coefficients are valid for */
+	private double mYear = Double.NaN;
+	/** Legendre functions and their colatitude derivatives */
+	private final double[] mP, mDP;
+	/** (reference radius / r)^(n+2) */
+	private final double[] mRadiusPower;
+	/** cos and sin of m * longitude */
+	private final double[] mCosML, mSinML;
+	/** geodetic latitude and altitude the Legendre table was built for */
+	private double mTableLat = Double.NaN, mTableAlt = Double.NaN;
+	/** geocentric latitude (radians) for the current table */
+	private double mGcLat;
+
+	// END ATTRIBUTES
+
+	private WorldMagneticModel(int maxN, double epoch, double[] g, double[] h,
+			double[] dotG, double[] dotH) {
+		int size = g.length;
+		mMaxN = maxN;
+		mEpoch = epoch;
+		mG = g;
+		mH = h;
+		mDotG = dotG;
+		mDotH = dotH;
+		mGt = new double[size];
+		mHt = new double[size];
+		mP = new double[size];
+		mDP = new double[size];
+		mRadiusPower = new double[maxN + 3];
+		mCosML = new double[maxN + 1];
+		mSinML = new double[maxN + 1];
+		applySchmidtFactors();
+	}
+
+	/**
+	 * Reads a model from a NOAA <code>WMM.COF</code> coefficient file: one
+	 * header line with the epoch, then one line per coefficient pair
+	 * "n m g h dg dh", ended by a line of nines.
+	 * 
+	 * @param in
+	 *            the coefficient file; it is read to the end but not closed
+	 * @return the model
+	 * @throws IOException
+	 *             if the file cannot be read or is malformed
+	 */
+	public static WorldMagneticModel load(InputStream in) throws IOException {
+		// LOCALS
+		BufferedReader buf = new BufferedReader(new InputStreamReader(in,
+				"US-ASCII"));
+		String line = buf.readLine();
+		double epoch;
+		int maxN = 0, size;
+		double[][] rows = new double[200][];
+		int count = 0;
+		double[] g, h, dotG, dotH;
+
+		if (line == null)
+			throw new IOException("empty coefficient file");
+		try {
+			epoch = Double.parseDouble(line.trim().split("\\s+")[0]);
+			while ((line = buf.readLine()) != null) {
+				String[] s = line.trim().split("\\s+");
+				if (s.length < 6 || s[0].startsWith("9999"))
+					break;
+				double[] row = new double[6];
+				for (int i = 0; i < 6; i++) {
+					row[i] = Double.parseDouble(s[i]);
+				}
+				if (count == rows.length) {
+					double[][] grown = new double[count * 2][];
+					System.arraycopy(rows, 0, grown, 0, count);
+					rows = grown;
+				}
+				rows[count++] = row;
+				maxN = Math.max(maxN, (int) row[0]);
+			}
+		} catch (NumberFormatException nfe) {
+			throw new IOException("malformed coefficient file: "
+					+ nfe.getMessage());
+		}
+
+		size = (maxN + 1) * (maxN + 2) / 2;
+		g = new double[size];
+		h = new double[size];
+		dotG = new double[size];
+		dotH = new double[size];
+		for (int i = 0; i < count; i++) {
+			int n = (int) rows[i][0], m = (int) rows[i][1];
+			if (m > n || m < 0)
+				throw new IOException("bad degree/order " + n + "," + m);
+			int k = index(n, m);
+			g[k] = rows[i][2];
+			h[k] = rows[i][3];
+			dotG[k] = rows[i][4];
+			dotH[k] = rows[i][5];
+		}
+		return new WorldMagneticModel(maxN, epoch, g, h, dotG, dotH);
+	}
+
+	/**
+	 * Reads a model from a class path resource, e.g. a <code>WMM.COF</code>
+	 * deployed next to the batch job.
+	 * 
+	 * @param name
+	 *            resource name, as for {@link Class#getResourceAsStream(String)}
+	 * @return the model
+	 * @throws IOException
+	 *             if the resource is missing or malformed
+	 */
+	public static WorldMagneticModel loadResource(String name)
+			throws IOException {
+		InputStream in = WorldMagneticModel.class.getResourceAsStream(name);
+		if (in == null)
+			throw new IOException("coefficient resource not found: " + name);
+		try {
+			return load(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/** @return the base epoch of the coefficients (decimal year) */
+	public double getEpoch() {
+		return mEpoch;
+	}
+
+	/**
+	 * Converts a time to a decimal year, using the mean Gregorian year. This
+	 * differs from the calendar decimal year by less than a day, which is
+	 * negligible against the secular variation rates.
+	 * 
+	 * @param timeMillis
+	 *            milliseconds since January 1, 1970 UTC
+	 * @return the decimal year
+	 */
+	public static double toDecimalYear(long timeMillis) {
+		return 1970 + timeMillis / MILLIS_PER_YEAR;
+	}
+
+	public double getDeclination(double lat, double lon, double alt,
+			long timeMillis) {
+		return getDeclination(lat, lon, alt, toDecimalYear(timeMillis));
+	}
+
+	/**
+	 * Returns the magnetic declination at a point.
+	 * 
+	 * @param lat
+	 *            geodetic latitude (decimal degrees)
+	 * @param lon
+	 *            geodetic longitude (decimal degrees)
+	 * @param alt
+	 *            altitude above the ellipsoid (meters)
+	 * @param year
+	 *            date as a decimal year, e.g. 2021.5
+	 * @return the declination in decimal degrees, positive east
+	 */
+	public synchronized double getDeclination(double lat, double lon,
+			double alt, double year) {
+		setYear(year);
+		return declination(lat, lon, alt);
+	}
+
+	/**
+	 * Computes the magnetic declination for many points at one date. The
+	 * date adjustment is done once, and runs of points sharing a latitude and
+	 * altitude reuse one Legendre table, so sorting the input by latitude
+	 * makes this cheaper still.
+	 * 
+	 * @param lat
+	 *            geodetic latitudes (decimal degrees)
+	 * @param lon
+	 *            geodetic longitudes (decimal degrees)
+	 * @param alt
+	 *            altitudes above the ellipsoid (meters), or null for sea level
+	 * @param year
+	 *            date as a decimal year
+	 * @param outDecl
+	 *            receives the declinations (decimal degrees, positive east)
+	 */
+	public synchronized void getDeclinations(double[] lat, double[] lon,
+			double[] alt, double year, double[] outDecl) {
+		int n = lat.length;
+		if (lon.length != n || outDecl.length < n
+				|| (alt != null && alt.length != n))
+			throw new IllegalArgumentException("array lengths differ");
+
+		setYear(year);
+		for (int i = 0; i < n; i++) {
+			outDecl[i] = declination(lat[i], lon[i], alt == null ? 0 : alt[i]);
+		}
+	}
+
+	/** advances the coefficients to a decimal year, if not already there */
+	private void setYear(double year) {
+		if (year == mYear)
+			return;
+		double dt = year - mEpoch;
+		for (int k = 0; k < mG.length; k++) {
+			mGt[k] = mG[k] + dt * mDotG[k];
+			mHt[k] = mH[k] + dt * mDotH[k];
+		}
+		mYear = year;
+	}
+
+	/** the field synthesis for one point, on the current coefficients */
+	private double declination(double lat, double lon, double alt) {
+		// LOCALS
+		double lonRad = Math.toRadians(lon);
+		double x = 0, y = 0, z = 0;
+		double inverseCosLat, latDiff, northX;
+		double cosL = Math.cos(lonRad), sinL = Math.sin(lonRad);
+
+		if (lat != mTableLat || alt != mTableAlt)
+			buildTable(lat, alt);
+		inverseCosLat = 1 / Math.cos(mGcLat);
+
+		// cos/sin of m * lon by the angle addition recurrence
+		mCosML[0] = 1;
+		mSinML[0] = 0;
+		for (int m = 1; m <= mMaxN; m++) {
+			mCosML[m] = mCosML[m - 1] * cosL - mSinML[m - 1] * sinL;
+			mSinML[m] = mSinML[m - 1] * cosL + mCosML[m - 1] * sinL;
+		}
+
+		for (int n = 1; n <= mMaxN; n++) {
+			double rp = mRadiusPower[n + 2];
+			int k = index(n, 0);
+			for (int m = 0; m <= n; m++, k++) {
+				double gh = mGt[k] * mCosML[m] + mHt[k] * mSinML[m];
+				x += rp * gh * mDP[k];
+				y += rp * m * (mGt[k] * mSinML[m] - mHt[k] * mCosML[m])
+						* mP[k] * inverseCosLat;
+				z -= (n + 1) * rp * gh * mP[k];
+			}
+		}
+
+		// rotate the northward component from geocentric to geodetic
+		latDiff = Math.toRadians(lat) - mGcLat;
+		northX = x * Math.cos(latDiff) + z * Math.sin(latDiff);
+		return Math.toDegrees(Math.atan2(y, northX));
+	}
+
+	/**
+	 * Converts the geodetic point to geocentric spherical coordinates and
+	 * fills the radius powers and the Legendre table for it.
+	 */
+	private void buildTable(double lat, double alt) {
+		// LOCALS
+		double latRad = Math.toRadians(lat);
+		double h = alt / 1000;
+		double sinLat = Math.sin(latRad), cosLat = Math.cos(latRad);
+		double rc = A_KM / Math.sqrt(1 - E2 * sinLat * sinLat);
+		double p = (rc + h) * cosLat;
+		double zc = (rc * (1 - E2) + h) * sinLat;
+		double r = Math.sqrt(p * p + zc * zc);
+		double gcLat = Math.asin(zc / r);
+		double cosT, sinT;
+
+		gcLat = Math.max(-Math.PI / 2 + POLE_GUARD, Math.min(Math.PI / 2
+				- POLE_GUARD, gcLat));
+		// colatitude theta: cos(theta) = sin(gcLat), sin(theta) = cos(gcLat)
+		cosT = Math.sin(gcLat);
+		sinT = Math.cos(gcLat);
+
+		mRadiusPower[0] = 1;
+		mRadiusPower[1] = REFERENCE_RADIUS_KM / r;
+		for (int i = 2; i < mRadiusPower.length; i++) {
+			mRadiusPower[i] = mRadiusPower[i - 1] * mRadiusPower[1];
+		}
+
+		// Gauss-normalized associated Legendre functions and d/dtheta
+		mP[0] = 1;
+		mDP[0] = 0;
+		for (int n = 1; n <= mMaxN; n++) {
+			for (int m = 0; m <= n; m++) {
+				int k = index(n, m);
+				if (n == m) {
+					int km = index(n - 1, m - 1);
+					mP[k] = sinT * mP[km];
+					mDP[k] = cosT * mP[km] + sinT * mDP[km];
+				} else if (n == 1 || m == n - 1) {
+					int km = index(n - 1, m);
+					mP[k] = cosT * mP[km];
+					mDP[k] = -sinT * mP[km] + cosT * mDP[km];
+				} else {
+					int k1 = index(n - 1, m), k2 = index(n - 2, m);
+					double c = ((n - 1) * (n - 1) - m * m)
+							/ (double) ((2 * n - 1) * (2 * n - 3));
+					mP[k] = cosT * mP[k1] - c * mP[k2];
+					mDP[k] = -sinT * mP[k1] + cosT * mDP[k1] - c * mDP[k2];
+				}
+			}
+		}
+
+		mGcLat = gcLat;
+		mTableLat = lat;
+		mTableAlt = alt;
+	}
+
+	/**
+	 * Folds the Schmidt semi-normalization factors into the coefficients, so
+	 * the synthesis can use Gauss-normalized Legendre functions directly.
+	 */
+	private void applySchmidtFactors() {
+		double[] s = new double[mG.length];
+		s[0] = 1;
+		for (int n = 1; n <= mMaxN; n++) {
+			int k = index(n, 0);
+			s[k] = s[index(n - 1, 0)] * (2 * n - 1) / n;
+			for (int m = 1; m <= n; m++) {
+				s[k + m] = s[k + m - 1]
+						* Math.sqrt((n - m + 1) * (m == 1 ? 2 : 1)
+								/ (double) (n + m));
+			}
+		}
+		for (int k = 0; k < mG.length; k++) {
+			mG[k] *= s[k];
+			mH[k] *= s[k];
+			mDotG[k] *= s[k];
+			mDotH[k] *= s[k];
+		}
+	}
+
+	/** position of degree n, order m in the packed coefficient arrays */
+	private static int index(int n, int m) {
+		return n * (n + 1) / 2 + m;
+	}
+}